@@ -167,4 +167,27 @@ public final class KvListTest extends BaseClientTest {
         assertNull(kvObject.getValue());
     }
 
+    @Test
+    public void getListWithProjection() {
+        final String collection = collection();
+        final KvMetadata kvMetadata =
+                client.kv(collection, "key1")
+                      .put("{\"a\":1,\"b\":{\"c\":2,\"d\":3},\"e\":4}")
+                      .get();
+
+        final KvList<String> kvList =
+                client.listCollection(collection)
+                      .project("a", "b.c")
+                      .get(String.class)
+                      .get();
+
+        assertNotNull(kvMetadata);
+        assertNotNull(kvList);
+        assertTrue(kvList.iterator().hasNext());
+
+        final KvObject<String> kvObject = kvList.iterator().next();
+        assertEquals(kvMetadata.getRef(), kvObject.getRef());
+        assertEquals("{\"a\":1,\"b\":{\"c\":2}}", kvObject.getValue());
+    }
+
 }
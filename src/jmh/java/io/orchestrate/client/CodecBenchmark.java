@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a domain object through the generic mapper lookups, the
+ * cached {@code ObjectReader} and a hand-written {@link JsonCodec}.
+ *
+ * <p>Run with {@code gradle jmh}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    private static final byte[] JSON =
+            "{\"name\":\"Mittens\",\"age\":7,\"weight\":4.2,\"indoor\":true}"
+                    .getBytes(Charset.forName("UTF-8"));
+
+    private ObjectMapper mapper;
+    private CodecRegistry cached;
+    private CodecRegistry custom;
+    private Pet pet;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        cached = JacksonMapper.builder()
+                .preload(Pet.class)
+                .build()
+                .getCodecs();
+        custom = JacksonMapper.builder()
+                .codec(Pet.class, new PetCodec())
+                .build()
+                .getCodecs();
+        pet = mapper.readValue(JSON, Pet.class);
+    }
+
+    @Benchmark
+    public Pet readGeneric() throws IOException {
+        // the decode path used before the codec registry
+        final JsonNode node = mapper.readTree(JSON);
+        return node.traverse(mapper).readValueAs(Pet.class);
+    }
+
+    @Benchmark
+    public Pet readCachedReader() throws IOException {
+        return cached.read(JSON, 0, JSON.length, Pet.class);
+    }
+
+    @Benchmark
+    public Pet readCustomCodec() throws IOException {
+        return custom.read(JSON, 0, JSON.length, Pet.class);
+    }
+
+    @Benchmark
+    public byte[] writeGeneric() throws IOException {
+        return mapper.writeValueAsBytes(pet);
+    }
+
+    @Benchmark
+    public byte[] writeCachedWriter() throws IOException {
+        return cached.write(pet);
+    }
+
+    @Benchmark
+    public byte[] writeCustomCodec() throws IOException {
+        return custom.write(pet);
+    }
+
+    public static class Pet {
+        public String name;
+        public int age;
+        public double weight;
+        public boolean indoor;
+    }
+
+    static final class PetCodec implements JsonCodec<Pet> {
+
+        @Override
+        public Pet read(final JsonParser parser) throws IOException {
+            final Pet pet = new Pet();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    pet.name = parser.getText();
+                } else if ("age".equals(field)) {
+                    pet.age = parser.getIntValue();
+                } else if ("weight".equals(field)) {
+                    pet.weight = parser.getDoubleValue();
+                } else if ("indoor".equals(field)) {
+                    pet.indoor = parser.getBooleanValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return pet;
+        }
+
+        @Override
+        public void write(final Pet value, final JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", value.name);
+            generator.writeNumberField("age", value.age);
+            generator.writeNumberField("weight", value.weight);
+            generator.writeBooleanField("indoor", value.indoor);
+            generator.writeEndObject();
+        }
+
+    }
+
+}
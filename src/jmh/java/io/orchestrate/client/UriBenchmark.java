@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.util.UEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building request paths by encoding every segment against the
+ * encoded segment caches, with several threads building paths at once.
+ *
+ * <p>Run with {@code gradle jmh -Pjmh.include=UriBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UriBenchmark {
+
+    private static final String COLLECTION = "user profiles";
+    private static final int KEY_COUNT = 1024;
+
+    private static final ThreadLocal<UEncoder> ENCODER_HOLDER = new ThreadLocal<UEncoder>(){
+        @Override
+        protected UEncoder initialValue() {
+            return new UEncoder();
+        }
+    };
+
+    private String[] keys;
+    private OrchestrateClient client;
+    private OrchestrateClient keyCachingClient;
+
+    @Setup
+    public void setUp() {
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            // a mix of keys which need escaping and keys which don't
+            keys[i] = (i % 2 == 0) ? "user-" + i : "user #" + i;
+        }
+        client = OrchestrateClient.builder("apiKey").build();
+        keyCachingClient = OrchestrateClient.builder("apiKey")
+                .keyCacheSize(KEY_COUNT)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        keyCachingClient.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String key(final String[] keys) {
+            return keys[next++ & (KEY_COUNT - 1)];
+        }
+    }
+
+    @Benchmark
+    public String uriEncodeAll(final Cursor cursor) {
+        // the path building used before the segment caches
+        final UEncoder encoder = ENCODER_HOLDER.get();
+        return new StringBuilder("/v0")
+                .append('/').append(encoder.encodeURL(COLLECTION))
+                .append('/').append(encoder.encodeURL(cursor.key(keys)))
+                .toString();
+    }
+
+    @Benchmark
+    public String uriCachedCollections(final Cursor cursor) {
+        return client.uri(COLLECTION, cursor.key(keys));
+    }
+
+    @Benchmark
+    public String uriCachedKeys(final Cursor cursor) {
+        return keyCachingClient.uri(COLLECTION, cursor.key(keys));
+    }
+
+}
@@ -17,6 +17,7 @@ package io.orchestrate.client;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.utils.BufferInputStream;
@@ -33,6 +34,8 @@ abstract class BaseResource {
     protected final OrchestrateClient client;
     /** The object mapper used to deserialize JSON responses. */
     protected final ObjectMapper mapper;
+    /** The cached (de)serializers for domain objects. */
+    protected final CodecRegistry codecs;
 
     private static final Charset UTF8 = Charset.forName("UTF-8");
 
@@ -42,13 +45,14 @@ abstract class BaseResource {
 
         this.client = client;
         this.mapper = mapper.getMapper();
+        this.codecs = mapper.getCodecs();
     }
 
     protected byte[] toJsonBytes(Object value) {
         try {
             return (value instanceof String)
                     ? ((String) value).getBytes(UTF8)
-                    : mapper.writeValueAsBytes(value);
+                    : codecs.write(value);
         } catch (final Exception e) {
             throw new RuntimeException(e); // FIXME
         }
@@ -58,24 +62,33 @@ abstract class BaseResource {
         return mapper.readTree(new BufferInputStream(response.getContent()));
     }
 
-    protected <T> KvObject<T> toKvObject(JsonNode result, Class<T> clazz) throws IOException {
-        return ResponseConverterUtil.jsonToKvObject(mapper, result, clazz);
-    }
-
+    @SuppressWarnings("unchecked")
     protected <T> KvObject<T> toKvObject(HttpContent response, String collection, String key,
                                          Class<T> clazz) throws IOException {
-        final JsonNode valueNode = toJsonNode(response);
         final String ref = response.getHttpHeader().getHeader(Header.ETag)
                 .replace("\"", "")
                 .replaceFirst("-gzip$", "");
 
-        return ResponseConverterUtil.jsonToKvObject(mapper, valueNode, clazz, collection, key, ref);
+        // the response body is the raw value, decode it without building a tree
+        final Buffer content = response.getContent();
+        if (!content.hasRemaining()) {
+            // an empty body has no value
+            return new KvObject<T>(collection, key, ref, null, null);
+        }
+        final byte[] body = new byte[content.remaining()];
+        content.get(body);
+        final String rawValue = new String(body, UTF8);
+        final T value = (clazz == String.class)
+                ? (T) rawValue
+                : codecs.read(body, 0, body.length, clazz);
+
+        return new KvObject<T>(collection, key, ref, value, rawValue);
     }
 
     @SuppressWarnings("unchecked")
     protected <T> T toDomainObject(String rawValue, Class<T> clazz) throws IOException {
         return (clazz == String.class)
                 ? (T) rawValue
-                : mapper.readValue(rawValue, clazz);
+                : codecs.read(rawValue, clazz);
     }
 }
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * The resource for deleting many KV objects from a collection, with a window
+ * of requests in flight at the same time and an optional cap on the rate of
+ * requests.
+ *
+ * <p>The keys to delete are read from a list of the collection or from the
+ * results of a search query, each delete is sent as soon as its key is known
+ * so a large collection is never held in memory. The keys are read and the
+ * requests are paced on a thread of the operation, the requests themselves are
+ * handled by the threads of the client.
+ */
+public class BulkDeleteResource {
+
+    /** The default number of requests in flight at the same time. */
+    public static final int DEFAULT_WINDOW = 32;
+
+    /** The number of keys to read in each page of a list or search. */
+    private static final int PAGE_SIZE = 100;
+
+    private final OrchestrateClient client;
+    /** The collection to delete from. */
+    private final String collection;
+    /** The number of requests in flight at the same time. */
+    private int window;
+    /** The most requests to send per second, or zero for no limit. */
+    private double rateLimit;
+    /** Whether to purge the objects and their history. */
+    private boolean purge;
+
+    BulkDeleteResource(final OrchestrateClient client, final String collection) {
+        assert (client != null);
+        assert (collection != null);
+
+        this.client = client;
+        this.collection = collection;
+        this.window = DEFAULT_WINDOW;
+        this.rateLimit = 0;
+        this.purge = false;
+    }
+
+    /**
+     * Equivalent to {@code this.all(null)}.
+     *
+     * @return The bulk delete request.
+     * @see #all(DeleteListener)
+     */
+    public CompositeRequest<DeleteResult> all() {
+        return all(null);
+    }
+
+    /**
+     * Delete every object in the collection, one request per object. The
+     * collection is listed without values as it's deleted, so only the keys
+     * are read.
+     *
+     * <p>Unlike {@link Client#deleteCollection(String)} the collection itself
+     * is kept, and the progress of the delete can be followed and throttled.
+     * A failure to delete an object doesn't stop the rest of the objects from
+     * being deleted, the request completes with the keys that failed.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * DeleteResult result =
+     *         client.bulkDelete("someCollection")
+     *               .window(16)
+     *               .rateLimit(200)
+     *               .all()
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param listener The listener for the outcome of each key, may be
+     *                 {@code null}.
+     * @return The bulk delete request.
+     */
+    public CompositeRequest<DeleteResult> all(@Nullable final DeleteListener listener) {
+        final Paginator<KvList<String>> pages = client.listCollection(collection)
+                .limit(PAGE_SIZE)
+                .withValues(false)
+                .paginate(String.class, 2);
+        final Iterator<KvObject<String>> objects = new PagedIterator<KvObject<String>>(pages);
+        return new Run(listener) {
+            @Override
+            Iterator<String> keys() {
+                return new KeyIterator<String>(objects, null);
+            }
+
+            @Override
+            void close() {
+                pages.close();
+            }
+        }.start();
+    }
+
+    /**
+     * Equivalent to {@code this.matching(clazz, filter, null)}.
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param filter The filter for the objects to delete.
+     * @param <T> The type to deserialize the objects to.
+     * @return The bulk delete request.
+     * @see #matching(Class, KvFilter, DeleteListener)
+     */
+    public <T> CompositeRequest<DeleteResult> matching(final Class<T> clazz, final KvFilter<T> filter) {
+        return matching(clazz, filter, null);
+    }
+
+    /**
+     * Delete the objects in the collection that are accepted by the {@code
+     * filter}. The collection is listed with its values so that they can be
+     * tested, the filter is called from the thread of the operation.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * DeleteResult result =
+     *         client.bulkDelete("someCollection")
+     *               .matching(DomainObject.class, new KvFilter<DomainObject>() {
+     *                   &#64;Override
+     *                   public boolean accept(KvObject<DomainObject> kvObject) {
+     *                       return kvObject.getValue().isExpired();
+     *                   }
+     *               })
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param filter The filter for the objects to delete.
+     * @param listener The listener for the outcome of each key, may be
+     *                 {@code null}.
+     * @param <T> The type to deserialize the objects to.
+     * @return The bulk delete request.
+     * @see #all(DeleteListener)
+     */
+    public <T> CompositeRequest<DeleteResult> matching(
+            final @NonNull Class<T> clazz, final @NonNull KvFilter<T> filter,
+            @Nullable final DeleteListener listener) {
+        final Paginator<KvList<T>> pages = client.listCollection(collection)
+                .limit(PAGE_SIZE)
+                .paginate(clazz, 2);
+        final Iterator<KvObject<T>> objects = new PagedIterator<KvObject<T>>(pages);
+        return new Run(listener) {
+            @Override
+            Iterator<String> keys() {
+                return new KeyIterator<T>(objects, filter);
+            }
+
+            @Override
+            void close() {
+                pages.close();
+            }
+        }.start();
+    }
+
+    /**
+     * Equivalent to {@code this.search(luceneQuery, null)}.
+     *
+     * @param luceneQuery The lucene search query.
+     * @return The bulk delete request.
+     * @see #search(String, DeleteListener)
+     */
+    public CompositeRequest<DeleteResult> search(final String luceneQuery) {
+        return search(luceneQuery, null);
+    }
+
+    /**
+     * Delete the objects in the collection that match a search query.
+     *
+     * <p>The keys of all the results are collected before the first delete is
+     * sent, since the pages of a search are addressed by their offset and
+     * would shift as the objects are deleted. Objects written after the keys
+     * have been collected are not deleted.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * DeleteResult result =
+     *         client.bulkDelete("someCollection")
+     *               .search("value.status:expired")
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param luceneQuery The lucene search query.
+     * @param listener The listener for the outcome of each key, may be
+     *                 {@code null}.
+     * @return The bulk delete request.
+     */
+    public CompositeRequest<DeleteResult> search(
+            final String luceneQuery, @Nullable final DeleteListener listener) {
+        checkNotNullOrEmpty(luceneQuery, "luceneQuery");
+
+        final CompositeRequest<SearchResults<String>> results = client.searchCollection(collection)
+                .limit(PAGE_SIZE)
+                .withValues(false)
+                .getAll(String.class, luceneQuery);
+        return new Run(listener) {
+            @Override
+            Iterator<String> keys() {
+                final SearchResults<String> found = results.get();
+                final List<String> keys = new ArrayList<String>(found.getCount());
+                for (final Result<String> result : found) {
+                    keys.add(result.getKvObject().getKey());
+                }
+                return keys.iterator();
+            }
+
+            @Override
+            void close() {
+                results.cancel(false);
+            }
+        }.start();
+    }
+
+    /**
+     * Whether to purge the objects, permanently removing them and their "ref"
+     * history from Orchestrate.
+     *
+     * @param purge If {@code true} purge the objects.
+     * @return This resource.
+     * @see KvResource#delete(boolean)
+     */
+    public BulkDeleteResource purge(final boolean purge) {
+        this.purge = purge;
+        return this;
+    }
+
+    /**
+     * The most delete requests to send per second, the requests are spaced
+     * out evenly. Defaults to {@code 0}, for no limit other than the 'window'.
+     *
+     * @param perSecond The number of requests per second, or {@code 0}.
+     * @return This resource.
+     */
+    public BulkDeleteResource rateLimit(final double perSecond) {
+        checkArgument(perSecond >= 0, "'perSecond' cannot be negative.");
+
+        this.rateLimit = perSecond;
+        return this;
+    }
+
+    /**
+     * The number of requests to have in flight at the same time, defaults to
+     * {@link #DEFAULT_WINDOW}.
+     *
+     * @param window The number of requests in flight at the same time.
+     * @return This resource.
+     */
+    public BulkDeleteResource window(final int window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * The keys of the objects of a list, skipping the objects that aren't
+     * accepted by the filter.
+     */
+    private static final class KeyIterator<T> implements Iterator<String> {
+
+        private final Iterator<KvObject<T>> objects;
+        private final KvFilter<T> filter;
+        private String next;
+
+        KeyIterator(final Iterator<KvObject<T>> objects, @Nullable final KvFilter<T> filter) {
+            this.objects = objects;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && objects.hasNext()) {
+                final KvObject<T> kvObject = objects.next();
+                if (filter == null || filter.accept(kvObject)) {
+                    next = kvObject.getKey();
+                }
+            }
+            return (next != null);
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String key = next;
+            next = null;
+            return key;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Deletes the keys of a source on a thread of its own, with a bounded
+     * number of requests in flight.
+     */
+    private abstract class Run implements Runnable {
+
+        private final DeleteListener listener;
+        private final boolean purge;
+        private final int window;
+        /** The nanoseconds between two requests, or zero for no limit. */
+        private final long interval;
+        private final CompositeRequest<DeleteResult> result;
+        private final Semaphore permits;
+        private final AtomicLong deleted;
+        private final Map<String, Throwable> failed;
+
+        Run(@Nullable final DeleteListener listener) {
+            this.listener = listener;
+            this.purge = BulkDeleteResource.this.purge;
+            this.window = BulkDeleteResource.this.window;
+            final double rateLimit = BulkDeleteResource.this.rateLimit;
+            this.interval = (rateLimit > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit) : 0;
+            this.result = new CompositeRequest<DeleteResult>();
+            this.permits = new Semaphore(window);
+            this.deleted = new AtomicLong();
+            this.failed = new ConcurrentHashMap<String, Throwable>();
+        }
+
+        /**
+         * Returns the keys to delete, called from the thread of the operation
+         * so it may block.
+         */
+        abstract Iterator<String> keys();
+
+        /** Release the source of the keys. */
+        abstract void close();
+
+        CompositeRequest<DeleteResult> start() {
+            final Thread thread = new Thread(this, "BulkDelete-".concat(collection));
+            thread.setDaemon(true);
+            thread.start();
+            return result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final Iterator<String> keys = keys();
+                long nextSend = System.nanoTime();
+                while (!result.isDone() && keys.hasNext()) {
+                    final String key = keys.next();
+                    if (interval > 0) {
+                        final long wait = nextSend - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        nextSend = Math.max(nextSend, System.nanoTime() - interval) + interval;
+                    }
+                    if (!acquire(1)) {
+                        return;
+                    }
+                    send(key);
+                }
+                if (acquire(window) && !result.isDone()) {
+                    result.complete(new DeleteResult(deleted.get(), failed));
+                }
+            } catch (final InterruptedException e) {
+                result.fail(e);
+            } catch (final RuntimeException e) {
+                result.fail(e);
+            } finally {
+                close();
+            }
+        }
+
+        /** Wait for the permits, or until the operation has been cancelled. */
+        private boolean acquire(final int count) throws InterruptedException {
+            while (!permits.tryAcquire(count, 100, TimeUnit.MILLISECONDS)) {
+                if (result.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void send(final String key) {
+            final OrchestrateRequest<Boolean> request;
+            try {
+                request = client.kv(collection, key).delete(purge);
+            } catch (final RuntimeException e) {
+                done(key, e);
+                return;
+            }
+            if (!result.track(request)) {
+                permits.release();
+                return;
+            }
+            request.on(new ResponseListener<Boolean>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.untrack(request);
+                    done(key, error);
+                }
+
+                @Override
+                public void onSuccess(final Boolean ok) {
+                    result.untrack(request);
+                    done(key, ok ? null : new ClientException("The object was not deleted."));
+                }
+            });
+        }
+
+        private void done(final String key, @Nullable final Throwable error) {
+            try {
+                if (error == null) {
+                    deleted.incrementAndGet();
+                    if (listener != null) {
+                        listener.onDelete(key);
+                    }
+                } else {
+                    failed.put(key, error);
+                    if (listener != null) {
+                        listener.onFailure(key, error);
+                    }
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * The listener for the outcome of each item written in a bulk operation.
+ */
+public interface BulkListener {
+
+    /**
+     * Invoked when the item with the key in the {@code metadata} has been
+     * written.
+     *
+     * @param metadata The metadata of the item, with its new ref.
+     */
+    public void onSuccess(final KvMetadata metadata);
+
+    /**
+     * Invoked when the item with the {@code key} could not be written, the
+     * rest of the items are still written.
+     *
+     * @param key The key of the item.
+     * @param error The exception thrown.
+     */
+    public void onFailure(final String key, final Throwable error);
+
+}
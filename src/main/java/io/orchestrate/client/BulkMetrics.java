@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The throughput metrics of a bulk operation, the metrics are updated while
+ * the operation is in progress.
+ */
+@ToString
+public final class BulkMetrics {
+
+    /** The time the operation started, in nanoseconds. */
+    private final long startNanos;
+    /** The number of items submitted. */
+    private final AtomicLong submitted;
+    /** The number of items written. */
+    private final AtomicLong succeeded;
+    /** The number of items that failed. */
+    private final AtomicLong failed;
+    /** The number of bytes of the items sent. */
+    private final AtomicLong bytes;
+    /** The time the last item finished, in nanoseconds. */
+    private volatile long lastNanos;
+
+    BulkMetrics() {
+        this.startNanos = System.nanoTime();
+        this.submitted = new AtomicLong();
+        this.succeeded = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.bytes = new AtomicLong();
+        this.lastNanos = startNanos;
+    }
+
+    void submitted(final int length) {
+        submitted.incrementAndGet();
+        bytes.addAndGet(length);
+    }
+
+    void succeeded() {
+        succeeded.incrementAndGet();
+        lastNanos = System.nanoTime();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+        lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of items submitted to be written.
+     *
+     * @return The number of items submitted.
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * Returns the number of items written.
+     *
+     * @return The number of items written.
+     */
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    /**
+     * Returns the number of items that failed to be written.
+     *
+     * @return The number of items that failed.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of items submitted that haven't finished.
+     *
+     * @return The number of items in flight.
+     */
+    public long getInFlight() {
+        return getSubmitted() - getSucceeded() - getFailed();
+    }
+
+    /**
+     * Returns the number of bytes of the items sent.
+     *
+     * @return The number of bytes sent.
+     */
+    public long getBytesSent() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns the time from the start of the operation until the last item
+     * finished.
+     *
+     * @param unit The unit of time to return.
+     * @return The elapsed time.
+     */
+    public long getElapsed(final TimeUnit unit) {
+        return unit.convert(lastNanos - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of items finished (written or failed) per second.
+     *
+     * @return The throughput of the operation.
+     */
+    public double getItemsPerSecond() {
+        final long elapsed = lastNanos - startNanos;
+        if (elapsed <= 0) {
+            return 0.0;
+        }
+        return (getSucceeded() + getFailed()) / (elapsed / 1e9);
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNull;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * The resource for writing many KV objects to a collection, with a window of
+ * requests in flight at the same time.
+ */
+public class BulkResource {
+
+    /** The default number of requests in flight at the same time. */
+    public static final int DEFAULT_WINDOW = 32;
+
+    /** The template for the requests to the collection. */
+    private final PreparedRequest<Object> prepared;
+    /** The number of requests in flight at the same time. */
+    private int window;
+    /** Whether to store the objects only if no key already exists. */
+    private boolean ifAbsent;
+
+    BulkResource(final PreparedRequest<Object> prepared) {
+        assert (prepared != null);
+
+        this.prepared = prepared;
+        this.window = DEFAULT_WINDOW;
+        this.ifAbsent = false;
+    }
+
+    /**
+     * Store the objects by key to the collection, with up to the 'window' of
+     * requests in flight at the same time. The objects are serialized as the
+     * requests are sent, on the threads of the client.
+     *
+     * <p>A failure to write an object doesn't stop the rest of the objects from
+     * being written, the request completes with the outcome of each object.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * BulkResult result =
+     *         client.bulk("someCollection")
+     *               .window(64)
+     *               .putAll(objectsByKey)
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param items The objects to store, by key.
+     * @return The bulk put request.
+     */
+    public CompositeRequest<BulkResult> putAll(final @NonNull Map<String, ?> items) {
+        for (final String key : items.keySet()) {
+            checkNotNullOrEmpty(key, "key");
+        }
+
+        final CompositeRequest<BulkResult> result = new CompositeRequest<BulkResult>();
+        new PutAll(result, items, ifAbsent).start(window);
+        return result;
+    }
+
+    /**
+     * A writer to store objects to the collection one at a time, with up to
+     * the 'window' of requests in flight at the same time. The outcome of each
+     * object is handed to the {@code listener}.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * BulkWriter writer = client.bulk("someCollection").writer(listener);
+     * try {
+     *     for (DomainObject obj : objects) {
+     *         writer.put(obj.getId(), obj);
+     *     }
+     * } finally {
+     *     writer.close();
+     * }
+     * }
+     * </pre>
+     *
+     * @param listener The listener for the outcome of each object.
+     * @return The bulk writer.
+     */
+    public BulkWriter writer(final @NonNull BulkListener listener) {
+        return new BulkWriter(this, listener, window);
+    }
+
+    /**
+     * Equivalent to {@code this.ifAbsent(Boolean.TRUE)}.
+     *
+     * @return This bulk resource.
+     * @see #ifAbsent(boolean)
+     */
+    public BulkResource ifAbsent() {
+        return ifAbsent(Boolean.TRUE);
+    }
+
+    /**
+     * Whether to store the objects in {@link #putAll(Map)} only if their keys
+     * don't already exist.
+     *
+     * @param ifAbsent If {@code true} only store the objects for new keys.
+     * @return This bulk resource.
+     */
+    public BulkResource ifAbsent(final boolean ifAbsent) {
+        this.ifAbsent = ifAbsent;
+        return this;
+    }
+
+    /**
+     * The number of requests to have in flight at the same time, defaults to
+     * {@link #DEFAULT_WINDOW}.
+     *
+     * @param window The number of requests in flight at the same time.
+     * @return This bulk resource.
+     */
+    public BulkResource window(final int window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Writes the objects of a map with a bounded number of requests in flight,
+     * the objects are taken from a queue shared by the threads that complete
+     * the requests.
+     */
+    private final class PutAll implements BulkListener {
+
+        private final CompositeRequest<BulkResult> result;
+        private final Queue<Map.Entry<String, ?>> entries;
+        private final boolean ifAbsent;
+        private final BulkMetrics metrics;
+        private final Map<String, KvMetadata> succeeded;
+        private final Map<String, Throwable> failed;
+        /** The number of objects that haven't finished. */
+        private final AtomicInteger remaining;
+
+        PutAll(final CompositeRequest<BulkResult> result, final Map<String, ?> items, final boolean ifAbsent) {
+            this.result = result;
+            this.entries = new ConcurrentLinkedQueue<Map.Entry<String, ?>>(items.entrySet());
+            this.ifAbsent = ifAbsent;
+            this.metrics = new BulkMetrics();
+            this.succeeded = new ConcurrentHashMap<String, KvMetadata>();
+            this.failed = new ConcurrentHashMap<String, Throwable>();
+            this.remaining = new AtomicInteger(items.size());
+        }
+
+        void start(final int window) {
+            if (entries.isEmpty()) {
+                result.complete(new BulkResult(succeeded, failed, metrics));
+                return;
+            }
+            for (int i = 0; i < window && !entries.isEmpty(); i++) {
+                sendNext();
+            }
+        }
+
+        @Override
+        public void onSuccess(final KvMetadata metadata) {
+            succeeded.put(metadata.getKey(), metadata);
+            if (!finished()) {
+                sendNext();
+            }
+        }
+
+        @Override
+        public void onFailure(final String key, final Throwable error) {
+            failed.put(key, error);
+            if (!finished()) {
+                sendNext();
+            }
+        }
+
+        /**
+         * Send the next object that can be written. The objects that fail
+         * before they're sent are recorded here rather than through the
+         * listener, so that the stack doesn't grow with each of them.
+         */
+        private void sendNext() {
+            Map.Entry<String, ?> entry;
+            while (!result.isDone() && (entry = entries.poll()) != null) {
+                final Throwable error = submit(entry.getKey(), entry.getValue(), null, ifAbsent, metrics, this, result);
+                if (error == null) {
+                    return;
+                }
+                failed.put(entry.getKey(), error);
+                if (finished()) {
+                    return;
+                }
+            }
+        }
+
+        private boolean finished() {
+            if (remaining.decrementAndGet() == 0) {
+                result.complete(new BulkResult(succeeded, failed, metrics));
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    void write(final String key, final Object value, @Nullable final String ifMatch, final boolean ifAbsent,
+               final BulkMetrics metrics, final BulkListener listener, @Nullable final CompositeRequest<?> result) {
+        final Throwable error = submit(key, value, ifMatch, ifAbsent, metrics, listener, result);
+        if (error != null) {
+            listener.onFailure(key, error);
+        }
+    }
+
+    /**
+     * Send the request to store the object, whose outcome is handed to the
+     * {@code listener}.
+     *
+     * @return The error if the object couldn't be sent, which isn't handed to
+     *         the {@code listener}, or {@code null}.
+     */
+    @Nullable
+    private Throwable submit(final String key, final Object value, @Nullable final String ifMatch,
+                             final boolean ifAbsent, final BulkMetrics metrics, final BulkListener listener,
+                             @Nullable final CompositeRequest<?> result) {
+        final byte[] content;
+        final OrchestrateRequest<KvMetadata> request;
+        try {
+            checkNotNull(key, "key");
+            checkNotNull(value, "value");
+            content = prepared.toJsonBytes(value);
+            request = prepared.put(key, content, ifMatch, ifAbsent);
+        } catch (final RuntimeException e) {
+            metrics.submitted(0);
+            metrics.failed();
+            return e;
+        }
+
+        metrics.submitted(content.length);
+        if (result != null && !result.track(request)) {
+            return null;
+        }
+        request.on(new ResponseListener<KvMetadata>() {
+            @Override
+            public void onFailure(final Throwable error) {
+                if (result != null) {
+                    result.untrack(request);
+                }
+                metrics.failed();
+                listener.onFailure(key, error);
+            }
+
+            @Override
+            public void onSuccess(final KvMetadata metadata) {
+                if (result != null) {
+                    result.untrack(request);
+                }
+                if (metadata == null) {
+                    onFailure(new ClientException("The object was not stored."));
+                    return;
+                }
+                metrics.succeeded();
+                listener.onSuccess(metadata);
+            }
+        });
+        return null;
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a bulk operation, with the result of each item.
+ */
+@ToString
+public final class BulkResult {
+
+    /** The metadata of the items written, keyed by the key of the item. */
+    private final Map<String, KvMetadata> succeeded;
+    /** The errors of the items that failed, keyed by the key of the item. */
+    private final Map<String, Throwable> failed;
+    /** The throughput metrics of the operation. */
+    private final BulkMetrics metrics;
+
+    BulkResult(final Map<String, KvMetadata> succeeded,
+               final Map<String, Throwable> failed,
+               final BulkMetrics metrics) {
+        assert (succeeded != null);
+        assert (failed != null);
+        assert (metrics != null);
+
+        this.succeeded = Collections.unmodifiableMap(succeeded);
+        this.failed = Collections.unmodifiableMap(failed);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the metadata, with the new ref, of each item written.
+     *
+     * @return The metadata of the items written, by key.
+     */
+    public Map<String, KvMetadata> getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Returns the error of each item that failed to be written.
+     *
+     * @return The errors of the items that failed, by key.
+     */
+    public Map<String, Throwable> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Whether every item was written.
+     *
+     * @return {@code true} if no item failed.
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+    /**
+     * Returns the throughput metrics of the operation.
+     *
+     * @return The metrics of the operation.
+     */
+    public BulkMetrics getMetrics() {
+        return metrics;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.util.concurrent.Semaphore;
+
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * A writer that stores objects to a collection one at a time, with a window of
+ * requests in flight at the same time. A call to store an object waits while
+ * the window is full.
+ *
+ * <p>A writer is safe to share between threads, but it must not be used from
+ * a {@code ResponseListener} since waiting for the window there would stop
+ * the requests in flight from completing.
+ */
+public final class BulkWriter implements Closeable {
+
+    /** The bulk resource to make the requests with. */
+    private final BulkResource bulk;
+    /** The listener for the outcome of each object. */
+    private final BulkListener listener;
+    /** The number of requests in flight at the same time. */
+    private final int window;
+    /** The permits for the requests in flight. */
+    private final Semaphore permits;
+    /** The throughput metrics of the writer. */
+    private final BulkMetrics metrics;
+    private volatile boolean closed;
+
+    BulkWriter(final BulkResource bulk, final BulkListener listener, final int window) {
+        assert (bulk != null);
+        assert (listener != null);
+        assert (window > 0);
+
+        this.bulk = bulk;
+        this.listener = listener;
+        this.window = window;
+        this.permits = new Semaphore(window);
+        this.metrics = new BulkMetrics();
+        this.closed = false;
+    }
+
+    /**
+     * Store an object by key.
+     *
+     * @param key The key of the object.
+     * @param value The object to store.
+     */
+    public void put(final String key, final @NonNull Object value) {
+        write(key, value, null, false);
+    }
+
+    /**
+     * Store an object by key only if the key doesn't already exist.
+     *
+     * @param key The key of the object.
+     * @param value The object to store.
+     */
+    public void putIfAbsent(final String key, final @NonNull Object value) {
+        write(key, value, null, true);
+    }
+
+    /**
+     * Store an object by key only if the last known version of the stored
+     * object matches.
+     *
+     * @param key The key of the object.
+     * @param value The object to store.
+     * @param objectRef The last known version of the stored object.
+     */
+    public void putIfMatch(final String key, final @NonNull Object value, final String objectRef) {
+        checkNotNullOrEmpty(objectRef, "objectRef");
+
+        write(key, value, objectRef, false);
+    }
+
+    /**
+     * Wait for all the requests in flight to complete.
+     */
+    public void flush() {
+        acquire(window);
+        permits.release(window);
+    }
+
+    /**
+     * Wait for all the requests in flight to complete, the writer can't be
+     * used once it's closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+    }
+
+    /**
+     * Returns the throughput metrics of the writer, they're updated while
+     * objects are being written.
+     *
+     * @return The metrics of the writer.
+     */
+    public BulkMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void write(final String key, final Object value, final String ifMatch, final boolean ifAbsent) {
+        checkNotNullOrEmpty(key, "key");
+        if (closed) {
+            throw new IllegalStateException("The writer has been closed.");
+        }
+
+        acquire(1);
+        bulk.write(key, value, ifMatch, ifAbsent, metrics, new BulkListener() {
+            @Override
+            public void onSuccess(final KvMetadata metadata) {
+                try {
+                    listener.onSuccess(metadata);
+                } finally {
+                    permits.release();
+                }
+            }
+
+            @Override
+            public void onFailure(final String key, final Throwable error) {
+                try {
+                    listener.onFailure(key, error);
+                } finally {
+                    permits.release();
+                }
+            }
+        }, null);
+    }
+
+    private void acquire(final int count) {
+        try {
+            permits.acquire(count);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(e);
+        }
+    }
+
+}
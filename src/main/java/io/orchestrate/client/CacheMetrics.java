@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of the near cache of a client, the metrics are updated while
+ * the client is in use.
+ *
+ * @see OrchestrateClient.Builder#nearCache(int, long, java.util.concurrent.TimeUnit)
+ * @see OrchestrateClient.Builder#nearCacheOffHeap(long)
+ * @see OrchestrateClient.Builder#nearCacheOnDisk(java.nio.file.Path, long)
+ */
+@ToString
+public final class CacheMetrics {
+
+    /** The number of gets served by the cache without a request. */
+    private final AtomicLong hits;
+    /** The number of those hits served by the off-heap tier. */
+    private final AtomicLong offHeapHits;
+    /** The number of those hits served by the disk tier. */
+    private final AtomicLong diskHits;
+    /** The number of gets that made a request. */
+    private final AtomicLong misses;
+    /** The number of objects evicted from the off-heap tier. */
+    private final AtomicLong evictions;
+    /** The number of bytes in use in the off-heap tier. */
+    private final AtomicLong offHeapBytes;
+
+    CacheMetrics() {
+        this.hits = new AtomicLong();
+        this.offHeapHits = new AtomicLong();
+        this.diskHits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+        this.offHeapBytes = new AtomicLong();
+    }
+
+    void hit(final boolean offHeap) {
+        hits.incrementAndGet();
+        if (offHeap) {
+            offHeapHits.incrementAndGet();
+        }
+    }
+
+    void diskHit() {
+        hits.incrementAndGet();
+        diskHits.incrementAndGet();
+    }
+
+    void missed() {
+        misses.incrementAndGet();
+    }
+
+    void evicted() {
+        evictions.incrementAndGet();
+    }
+
+    void allocated(final long bytes) {
+        offHeapBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Returns the number of gets served from the cache without a request.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of gets served from the off-heap tier, these are
+     * included in the {@link #getHits() hits}.
+     *
+     * @return The number of off-heap hits.
+     */
+    public long getOffHeapHits() {
+        return offHeapHits.get();
+    }
+
+    /**
+     * Returns the number of gets served from the disk tier, these are
+     * included in the {@link #getHits() hits}. The objects served from disk are
+     * revalidated in the background.
+     *
+     * @return The number of disk hits.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of gets that made a request, either because the
+     * object wasn't cached or to revalidate an expired object.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of objects evicted from the off-heap tier to make
+     * room for newer objects.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of bytes of memory in use in the off-heap tier,
+     * including the objects that were invalidated but not yet evicted.
+     *
+     * @return The number of off-heap bytes in use.
+     */
+    public long getOffHeapBytes() {
+        return offHeapBytes.get();
+    }
+
+    /**
+     * Returns the fraction of the gets that were served from the cache.
+     *
+     * @return The hit ratio, between {@code 0.0} and {@code 1.0}.
+     */
+    public double getHitRatio() {
+        final long hits = getHits();
+        final long total = hits + getMisses();
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) hits / total;
+    }
+
+}
@@ -16,12 +16,70 @@
 package io.orchestrate.client;
 
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * A client used to read and write data to the Orchestrate.io service.
  */
 public interface Client {
 
+    /**
+     * The resource for writing many KV objects to a collection in the
+     * Orchestrate service, with a bounded number of requests in flight.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * BulkResult result =
+     *         client.bulk("someCollection")
+     *               .putAll(objectsByKey)
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @return The bulk resource.
+     */
+    public BulkResource bulk(final String collection);
+
+    /**
+     * The resource for deleting many KV objects from a collection, selected by
+     * a list of the collection, a filter or a search query, with a bounded
+     * number of requests in flight.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * DeleteResult result =
+     *         client.bulkDelete("someCollection")
+     *               .search("value.status:expired")
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @return The bulk delete resource.
+     */
+    public BulkDeleteResource bulkDelete(final String collection);
+
+    /**
+     * The resource for writing and purging many relations in the Orchestrate
+     * service, with a bounded number of requests in flight.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * EdgeResult result =
+     *         client.bulkRelations()
+     *               .putAll(edges)
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @return The bulk relation resource.
+     */
+    public RelationBulkResource bulkRelations();
+
     /**
      * Stops the thread pool and closes all connections in use by all the
      * operations.
@@ -54,6 +112,60 @@ public interface Client {
      */
     public EventResource event(final String collection, final String key);
 
+    /**
+     * The resource for exporting the objects of a collection to a snapshot
+     * file of newline delimited JSON.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * long count =
+     *         client.exportSnapshot("someCollection")
+     *               .writeTo(Paths.get("someCollection.ndjson"))
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @return The snapshot exporter.
+     */
+    public SnapshotExporter exportSnapshot(final String collection);
+
+    /**
+     * The resource for importing a snapshot file, as written by {@link
+     * #exportSnapshot(String)}, into a collection.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * BulkMetrics metrics =
+     *         client.importSnapshot("someCollection")
+     *               .readFrom(Paths.get("someCollection.ndjson"))
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @return The snapshot importer.
+     */
+    public SnapshotImporter importSnapshot(final String collection);
+
+    /**
+     * The resource for storing a high volume of events from many producers,
+     * with the events for each key and type stored in order.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * EventIngester ingester = client.ingestEvents().start(listener);
+     * ingester.put("someCollection", "someKey", "someType", obj);
+     * }
+     * </pre>
+     *
+     * @return The event ingest resource.
+     */
+    public EventIngestResource ingestEvents();
+
     /**
      * The resource for the KV features in the Orchestrate API.
      *
@@ -71,6 +183,52 @@ public interface Client {
      */
     public KvListResource listCollection(final String collection);
 
+    /**
+     * Create a local copy of a collection, which is brought up to date by
+     * fetching only the objects that have changed since it was last refreshed.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * CollectionMirror<DomainObject> mirror =
+     *         client.mirror("someCollection", DomainObject.class);
+     * mirror.refresh().get();
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param <T> The type to deserialize the values of the objects to.
+     * @return The empty mirror, to be refreshed.
+     */
+    public <T> CollectionMirror<T> mirror(final String collection, final Class<T> clazz);
+
+    /**
+     * Fetch the objects for many keys from a collection in the Orchestrate
+     * service, with a bounded number of requests in flight. Duplicate keys are
+     * fetched once, and the keys with no object are reported separately.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * MultiGetResult<DomainObject> result =
+     *         client.multiGet("someCollection", keys, DomainObject.class).get();
+     * for (KvObject<DomainObject> kvObject : result.getObjects().values()) {
+     *     ...
+     * }
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @param keys The keys of the objects.
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param <T> The type to deserialize the values of the objects to.
+     * @return The request for the objects.
+     * @see PreparedRequest#getAll(Collection, int)
+     */
+    public <T> CompositeRequest<MultiGetResult<T>> multiGet(
+            final String collection, final Collection<String> keys, final Class<T> clazz);
+
     /**
      * Health check that sends a ping to the Orchestrate service.
      *
@@ -84,6 +242,26 @@ public interface Client {
     @Deprecated
     public void ping(final String collection) throws IOException;
 
+    /**
+     * A reusable template for the KV requests to a collection, for code that
+     * issues many requests of the same shape.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * PreparedRequest<DomainObject> prepared =
+     *         client.prepare("someCollection", DomainObject.class);
+     * KvObject<DomainObject> object = prepared.get("someKey").get();
+     * }
+     * </pre>
+     *
+     * @param collection The name of the collection.
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param <T> The type to deserialize the values of the requests to.
+     * @return The prepared request template.
+     */
+    public <T> PreparedRequest<T> prepare(final String collection, final Class<T> clazz);
+
     /**
      * Store an object by value in the collection specified to the Orchestrate service
      * which will auto-generate a key for it.
@@ -41,11 +41,15 @@ final class ClientFilter extends BaseFilter {
 
     /** The name of the filter attribute for a HTTP response. */
     public static final String OIO_RESPONSE_FUTURE_ATTR = "httpResp";
+    /** The name of the filter attribute for the listener of a streamed response body. */
+    public static final String OIO_CONTENT_LISTENER_ATTR = "httpRespListener";
     /** The value for the user agent header. */
     private static final String BASE_USER_AGENT = buildBaseUserAgent();
 
     /** The attribute for the HTTP response. */
     private final Attribute<SafeFutureImpl<HttpContent>> httpResponseAttr;
+    /** The attribute for the listener of a streamed HTTP response body. */
+    private final Attribute<ContentListener> contentListenerAttr;
     /** The header value to authenticate with the Orchestrate.io service */
     private final String authHeaderValue;
     /** The header value to indicate the client and version queried with. */
@@ -62,6 +66,8 @@ final class ClientFilter extends BaseFilter {
 
         this.httpResponseAttr =
                 DEFAULT_ATTRIBUTE_BUILDER.createAttribute(OIO_RESPONSE_FUTURE_ATTR);
+        this.contentListenerAttr =
+                DEFAULT_ATTRIBUTE_BUILDER.createAttribute(OIO_CONTENT_LISTENER_ATTR);
         this.authHeaderValue =
                 "Basic ".concat(Base64Utils.encodeToString(apiKey.getBytes(), true));
         this.userAgentValue = (userAgent == null)
@@ -84,15 +90,27 @@ final class ClientFilter extends BaseFilter {
                 httpResponseAttr.get(ctx.getConnection().getAttributes());
         try {
             final HttpContent content = ctx.getMessage();
-            if (!content.isLast()) {
-                return ctx.getStopAction(content);
-            }
-
             final HttpHeader header = content.getHttpHeader();
             final int status = ((HttpResponsePacket) header).getStatus();
 
+            final ContentListener listener =
+                    contentListenerAttr.get(ctx.getConnection().getAttributes());
+            if (listener != null && status == 200) {
+                // hand each chunk of the body on as it arrives instead of
+                // accumulating the body until the response is complete
+                if (!future.isDone()) {
+                    listener.onContent(content.getContent());
+                }
+                if (!content.isLast()) {
+                    return ctx.getStopAction();
+                }
+            } else if (!content.isLast()) {
+                return ctx.getStopAction(content);
+            }
+
             ClientFilter.log.info("Received content: {}", header);
-            if (status == 200 || status == 201 || status == 204 || status == 404) {
+            // a 304 only answers a conditional get, to revalidate a cached object
+            if (status == 200 || status == 201 || status == 204 || status == 304 || status == 404) {
                 future.result(content);
             } else {
                 final String reqId = header.getHeader("x-orchestrate-req-id");
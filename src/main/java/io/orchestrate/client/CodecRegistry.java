@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of the (de)serializers for domain types, it resolves an {@code
+ * ObjectReader} and {@code ObjectWriter} once per type and prefers any
+ * hand-written {@link JsonCodec} registered for a type.
+ */
+final class CodecRegistry {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The configured JSON mapper. */
+    private final ObjectMapper mapper;
+    /** The hand-written codecs, keyed by the type they handle. */
+    private final Map<Class<?>, JsonCodec<?>> codecs;
+    /** The cached readers, keyed by the type they deserialize. */
+    private final ConcurrentMap<Class<?>, ObjectReader> readers;
+    /** The cached writers, keyed by the type they serialize. */
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers;
+
+    CodecRegistry(final ObjectMapper mapper, final Map<Class<?>, JsonCodec<?>> codecs) {
+        assert (mapper != null);
+        assert (codecs != null);
+
+        this.mapper = mapper;
+        this.codecs = Collections.unmodifiableMap(new HashMap<Class<?>, JsonCodec<?>>(codecs));
+        this.readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+        this.writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+    }
+
+    ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Resolve the reader and writer for the {@code clazz} ahead of the first
+     * request that uses it.
+     */
+    void preload(final Class<?> clazz) {
+        assert (clazz != null);
+
+        if (!codecs.containsKey(clazz)) {
+            reader(clazz);
+            writer(clazz);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T read(final JsonParser parser, final Class<T> clazz) throws IOException {
+        assert (parser != null);
+        assert (clazz != null);
+
+        if (parser.getCurrentToken() == null) {
+            parser.nextToken();
+        }
+        final JsonCodec<T> codec = (JsonCodec<T>) codecs.get(clazz);
+        if (codec != null) {
+            return codec.read(parser);
+        }
+        return reader(clazz).readValue(parser);
+    }
+
+    <T> T read(final JsonNode node, final Class<T> clazz) throws IOException {
+        assert (node != null);
+        assert (clazz != null);
+
+        if (!codecs.containsKey(clazz)) {
+            return reader(clazz).readValue(node);
+        }
+        final JsonParser parser = node.traverse(mapper);
+        try {
+            return read(parser, clazz);
+        } finally {
+            parser.close();
+        }
+    }
+
+    <T> T read(final byte[] json, final int offset, final int length, final Class<T> clazz)
+            throws IOException {
+        assert (json != null);
+        assert (clazz != null);
+
+        if (!codecs.containsKey(clazz)) {
+            return reader(clazz).readValue(json, offset, length);
+        }
+        final JsonParser parser = mapper.getFactory().createParser(json, offset, length);
+        try {
+            return read(parser, clazz);
+        } finally {
+            parser.close();
+        }
+    }
+
+    <T> T read(final String json, final Class<T> clazz) throws IOException {
+        final byte[] bytes = json.getBytes(UTF8);
+        return read(bytes, 0, bytes.length, clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    byte[] write(final Object value) throws IOException {
+        assert (value != null);
+
+        final Class<Object> clazz = (Class<Object>) value.getClass();
+        final JsonCodec<Object> codec = (JsonCodec<Object>) codecs.get(clazz);
+        if (codec == null) {
+            return writer(clazz).writeValueAsBytes(value);
+        }
+
+        final ByteArrayBuilder buffer = new ByteArrayBuilder();
+        final JsonGenerator generator = mapper.getFactory().createGenerator(buffer);
+        try {
+            codec.write(value, generator);
+        } finally {
+            generator.close();
+        }
+        final byte[] bytes = buffer.toByteArray();
+        buffer.release();
+        return bytes;
+    }
+
+    private ObjectReader reader(final Class<?> clazz) {
+        ObjectReader reader = readers.get(clazz);
+        if (reader == null) {
+            reader = mapper.reader(clazz);
+            final ObjectReader existing = readers.putIfAbsent(clazz, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+    private ObjectWriter writer(final Class<?> clazz) {
+        ObjectWriter writer = writers.get(clazz);
+        if (writer == null) {
+            writer = mapper.writerWithType(clazz);
+            final ObjectWriter existing = writers.putIfAbsent(clazz, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+
+/**
+ * A local copy of the objects of a collection, kept in sync by refreshes that
+ * only fetch the objects that have changed.
+ *
+ * <p>A refresh lists the keys and refs of the collection without their values,
+ * and fetches the objects whose ref differs from the ref of the local copy.
+ * Keys that are no longer listed are removed. The objects of a refresh are
+ * swapped in all at once when it completes, so reads always see the objects of
+ * a single refresh.
+ *
+ * <p>A mirror suits small, read-mostly collections (e.g. reference data) which
+ * can then be read at memory speed, the whole collection is held in memory.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * {@code
+ * CollectionMirror<DomainObject> mirror =
+ *         client.mirror("someCollection", DomainObject.class);
+ * mirror.refresh().get();
+ * KvObject<DomainObject> object = mirror.get("someKey");
+ * }
+ * </pre>
+ *
+ * @param <T> The type to deserialize the values of the objects to.
+ */
+public final class CollectionMirror<T> {
+
+    /** The default number of objects to fetch at the same time. */
+    public static final int DEFAULT_WINDOW = PreparedRequest.DEFAULT_WINDOW;
+
+    /** The number of keys to list in each page. */
+    private static final int PAGE_SIZE = 100;
+
+    private final OrchestrateClient client;
+    /** The requests to fetch the changed objects with. */
+    private final PreparedRequest<T> prepared;
+    /** The number of objects to fetch at the same time. */
+    private volatile int window;
+    /** The objects of the last refresh, by key. */
+    private volatile Map<String, KvObject<T>> objects;
+    /** The refresh in progress, or the last one. */
+    private final AtomicReference<CompositeRequest<RefreshResult>> refreshing;
+
+    CollectionMirror(final OrchestrateClient client, final PreparedRequest<T> prepared) {
+        assert (client != null);
+        assert (prepared != null);
+
+        this.client = client;
+        this.prepared = prepared;
+        this.window = DEFAULT_WINDOW;
+        this.objects = Collections.emptyMap();
+        this.refreshing = new AtomicReference<CompositeRequest<RefreshResult>>();
+    }
+
+    /**
+     * Returns the local copy of the object with the {@code key}.
+     *
+     * @param key The key of the object.
+     * @return The object, or {@code null} if the collection had no object with
+     *         the key at the last refresh.
+     */
+    @Nullable
+    public KvObject<T> get(final String key) {
+        return objects.get(key);
+    }
+
+    /**
+     * Returns the local copies of all the objects of the collection.
+     *
+     * @return The objects as of the last refresh, by key.
+     */
+    public Map<String, KvObject<T>> getAll() {
+        return objects;
+    }
+
+    /**
+     * Returns the collection that is mirrored.
+     *
+     * @return The name of the collection.
+     */
+    public String getCollection() {
+        return prepared.getCollection();
+    }
+
+    /**
+     * Returns the number of objects in the mirror.
+     *
+     * @return The number of objects as of the last refresh.
+     */
+    public int size() {
+        return objects.size();
+    }
+
+    /**
+     * Bring the mirror up to date with the collection. If a refresh is already
+     * in progress, its request is returned instead of starting another.
+     *
+     * <p>The request completes with the number of keys that were added,
+     * changed, removed and left alone. If the refresh fails, the mirror keeps
+     * the objects of the last refresh.
+     *
+     * @return The refresh request.
+     */
+    public CompositeRequest<RefreshResult> refresh() {
+        final CompositeRequest<RefreshResult> result = new CompositeRequest<RefreshResult>();
+        while (true) {
+            final CompositeRequest<RefreshResult> current = refreshing.get();
+            if (current != null && !current.isDone()) {
+                return current;
+            }
+            if (refreshing.compareAndSet(current, result)) {
+                break;
+            }
+        }
+        new Refresh(result).start();
+        return result;
+    }
+
+    /**
+     * The number of objects to fetch at the same time in a refresh, defaults
+     * to {@link #DEFAULT_WINDOW}.
+     *
+     * @param window The number of requests in flight at the same time.
+     * @return This mirror.
+     */
+    public CollectionMirror<T> window(final int window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Lists the keys of the collection a page at a time, and fetches the
+     * changed objects of each page before the next page is requested.
+     */
+    private final class Refresh {
+
+        private final CompositeRequest<RefreshResult> result;
+        private final Map<String, KvObject<T>> previous;
+        /** The objects of the refresh, only used by one thread at a time. */
+        private final Map<String, KvObject<T>> next;
+        private final int window;
+        private int added;
+        private int changed;
+        private int unchanged;
+
+        Refresh(final CompositeRequest<RefreshResult> result) {
+            this.result = result;
+            this.previous = objects;
+            this.next = new HashMap<String, KvObject<T>>(Math.max(16, previous.size() * 4 / 3));
+            this.window = CollectionMirror.this.window;
+        }
+
+        void start() {
+            final OrchestrateRequest<KvList<String>> first;
+            try {
+                first = client.listCollection(prepared.getCollection())
+                        .limit(PAGE_SIZE)
+                        .withValues(false)
+                        .get(String.class);
+            } catch (final RuntimeException e) {
+                result.fail(e);
+                return;
+            }
+            list(first);
+        }
+
+        private void list(final OrchestrateRequest<KvList<String>> request) {
+            if (!result.track(request)) {
+                return;
+            }
+            request.on(new ResponseListener<KvList<String>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final KvList<String> page) {
+                    result.untrack(request);
+                    compare(page);
+                }
+            }).getAsync();
+        }
+
+        private void compare(final KvList<String> page) {
+            final List<String> stale = new ArrayList<String>(page.getCount());
+            for (final KvObject<String> listed : page) {
+                final KvObject<T> copy = previous.get(listed.getKey());
+                if (copy != null && copy.getRef().equals(listed.getRef())) {
+                    next.put(copy.getKey(), copy);
+                    unchanged++;
+                } else {
+                    stale.add(listed.getKey());
+                }
+            }
+            if (stale.isEmpty()) {
+                advance(page);
+                return;
+            }
+
+            prepared.getAll(stale, window).on(new ResponseListener<MultiGetResult<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final MultiGetResult<T> fetched) {
+                    for (final KvObject<T> object : fetched.getObjects().values()) {
+                        // a key deleted since it was listed is left out
+                        if (previous.containsKey(object.getKey())) {
+                            changed++;
+                        } else {
+                            added++;
+                        }
+                        next.put(object.getKey(), object);
+                    }
+                    advance(page);
+                }
+            });
+        }
+
+        private void advance(final KvList<String> page) {
+            if (result.isDone()) {
+                return;
+            }
+            if (page.hasNext()) {
+                list(page.getNext());
+                return;
+            }
+
+            int removed = 0;
+            for (final String key : previous.keySet()) {
+                if (!next.containsKey(key)) {
+                    removed++;
+                }
+            }
+            objects = Collections.unmodifiableMap(next);
+            result.complete(new RefreshResult(added, changed, removed, unchanged));
+        }
+
+    }
+
+}
@@ -15,16 +15,18 @@
  */
 package io.orchestrate.client;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.Method;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static io.orchestrate.client.Preconditions.*;
 
@@ -43,6 +45,10 @@ public class CollectionSearchResource extends BaseResource {
     private boolean withValues;
     /** The fully-qualified names of fields to sort upon. */
     private String sortFields;
+    /** The fields of the values to read, or {@code null} to read all fields. */
+    private Projection projection;
+    /** The number of pages to request at the same time to get all results. */
+    private int parallelism;
 
     CollectionSearchResource(
             final OrchestrateClient client,
@@ -57,6 +63,7 @@ public class CollectionSearchResource extends BaseResource {
         this.offset = 0;
         this.withValues = true;
         this.sortFields = null;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
     }
 
     /**
@@ -86,14 +93,11 @@ public class CollectionSearchResource extends BaseResource {
         checkNotNull(clazz, "clazz");
         checkNotNullOrEmpty(luceneQuery, "luceneQuery");
 
-        String query = "query=".concat(client.encode(luceneQuery))
-                .concat("&limit=").concat(limit + "")
-                .concat("&offset=").concat(offset + "")
-                .concat("&values=").concat(Boolean.toString(withValues));
-        if (sortFields != null) {
-            query = query.concat("&sort=").concat(sortFields);
-        }
+        return search(clazz, query(luceneQuery, limit, offset, withValues, sortFields), projection, limit);
+    }
 
+    private <T> OrchestrateRequest<SearchResults<T>> search(
+            final Class<T> clazz, final String query, final Projection projection, final int limit) {
         final HttpContent packet = HttpRequestPacket.builder()
                 .method(Method.GET)
                 .uri(client.uri(collection))
@@ -108,32 +112,317 @@ public class CollectionSearchResource extends BaseResource {
                 final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
                 assert (status == 200);
 
-                final JsonNode jsonNode = toJsonNode(response);
+                final List<Result<T>> results = new ArrayList<Result<T>>(limit);
+                final ResponseConverterUtil.Page page = ResponseConverterUtil.readPage(
+                        codecs, response.getContent(), clazz, projection,
+                        new ResponseConverterUtil.ResultHandler<T>() {
+                            @Override
+                            public void handle(final Result<T> result) {
+                                results.add(result);
+                            }
+                        });
+
+                return new SearchResults<T>(results, page.totalCount);
+            }
+        });
+    }
+
+    /**
+     * Retrieve data from the Orchestrate service, and hand each search result
+     * to the {@code listener} as soon as it has been read from the response,
+     * before the rest of the results have arrived.
+     *
+     * <p>The results are never buffered, the {@code SearchResults} the request
+     * completes with contains no results but has the total count of results
+     * for the query.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * SearchResults<DomainObject> results =
+     *         client.searchCollection("someCollection")
+     *               .limit(100)
+     *               .get(DomainObject.class, "*", new ItemListener<Result<DomainObject>>() {
+     *                   public void onItem(Result<DomainObject> result) {
+     *                       ...
+     *                   }
+     *               })
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param luceneQuery The lucene search query.
+     * @param listener The listener for each search result.
+     * @param <T> The type to deserialize the results to.
+     * @return The prepared search request.
+     */
+    public <T> OrchestrateRequest<SearchResults<T>> get(
+            final Class<T> clazz, final String luceneQuery, final ItemListener<Result<T>> listener) {
+        checkNotNull(clazz, "clazz");
+        checkNotNullOrEmpty(luceneQuery, "luceneQuery");
+        checkNotNull(listener, "listener");
+
+        final HttpContent packet = HttpRequestPacket.builder()
+                .method(Method.GET)
+                .uri(client.uri(collection))
+                .query(query(luceneQuery, limit, offset, withValues, sortFields))
+                .build()
+                .httpContentBuilder()
+                .build();
+        final Projection projection = this.projection;
+
+        final ResultsSplitter splitter = new ResultsSplitter() {
+            @Override
+            void onResult(final byte[] json, final int length) throws IOException {
+                listener.onItem(ResponseConverterUtil.readResult(codecs, json, length, clazz, projection));
+            }
+        };
+
+        return new OrchestrateRequest<SearchResults<T>>(client, packet, new ResponseConverter<SearchResults<T>>() {
+            @Override
+            public SearchResults<T> from(final HttpContent response) throws IOException {
+                final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
+                assert (status == 200);
+
+                final ResponseConverterUtil.Page page = ResponseConverterUtil.readEnvelope(codecs, splitter);
+                return new SearchResults<T>(Collections.<Result<T>>emptyList(), page.totalCount);
+            }
+        }, splitter, true);
+    }
+
+    /**
+     * Retrieve all the results of a search query. The first page of results is
+     * requested at the 'offset', the pages after it are requested concurrently
+     * (up to the 'parallelism' at a time) once the total count of results is
+     * known, and the results are reassembled in the order of the query.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * SearchResults<DomainObject> results =
+     *         client.searchCollection("someCollection")
+     *               .limit(100)
+     *               .parallelism(8)
+     *               .getAll(DomainObject.class, "*")
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param luceneQuery The lucene search query.
+     * @param <T> The type to deserialize the results to.
+     * @return The request for all the search results.
+     */
+    public <T> CompositeRequest<SearchResults<T>> getAll(
+            final Class<T> clazz, final String luceneQuery) {
+        checkNotNull(clazz, "clazz");
+        checkNotNullOrEmpty(luceneQuery, "luceneQuery");
+        checkArgument(limit > 0, "'limit' must be greater than zero to get all results.");
+
+        final CompositeRequest<SearchResults<T>> result = new CompositeRequest<SearchResults<T>>();
+        new FetchAll<T>(result, clazz, luceneQuery) {
+            /** The results of each page, in the order of the pages. */
+            private volatile AtomicReferenceArray<List<Result<T>>> pages;
+
+            @Override
+            void start(final int pageCount) {
+                pages = new AtomicReferenceArray<List<Result<T>>>(pageCount);
+            }
+
+            @Override
+            void onPage(final int index, final SearchResults<T> page) {
+                pages.set(index, page.results());
+            }
+
+            @Override
+            void finish(final int totalCount) {
+                final List<Result<T>> results = new ArrayList<Result<T>>(Math.max(0, totalCount - offset));
+                for (int i = 0; i < pages.length(); i++) {
+                    results.addAll(pages.get(i));
+                }
+                result.complete(new SearchResults<T>(results, totalCount));
+            }
+        }.fetch();
+        return result;
+    }
 
-                final int totalCount = jsonNode.get("total_count").asInt();
-                final int count = jsonNode.get("count").asInt();
-                final List<Result<T>> results = new ArrayList<Result<T>>(count);
+    /**
+     * Retrieve all the results of a search query, and hand each search result
+     * to the {@code listener} as soon as its page has arrived. The pages after
+     * the first are requested concurrently (up to the 'parallelism' at a time)
+     * so the results are handed on in no particular order, and the listener is
+     * called from several threads at the same time.
+     *
+     * <p>The request completes with the number of results handed on.
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param luceneQuery The lucene search query.
+     * @param listener The listener for each search result.
+     * @param <T> The type to deserialize the results to.
+     * @return The request for all the search results.
+     * @see #getAll(Class, String)
+     */
+    public <T> CompositeRequest<Integer> getAll(
+            final Class<T> clazz, final String luceneQuery, final ItemListener<Result<T>> listener) {
+        checkNotNull(clazz, "clazz");
+        checkNotNullOrEmpty(luceneQuery, "luceneQuery");
+        checkNotNull(listener, "listener");
+        checkArgument(limit > 0, "'limit' must be greater than zero to get all results.");
 
-                final Iterator<JsonNode> iter = jsonNode.get("results").elements();
-                while (iter.hasNext()) {
-                    final JsonNode result = iter.next();
+        final CompositeRequest<Integer> result = new CompositeRequest<Integer>();
+        new FetchAll<T>(result, clazz, luceneQuery) {
+            private final AtomicInteger count = new AtomicInteger();
 
-                    // parse result structure (e.g.):
-                    // {"path":{...},"value":{},"score":1.0}
-                    final double score = (result.get("score") != null)
-                            ? result.get("score").asDouble(0)
-                            : 0.0;
-                    final Double distance = (result.get("distance") != null)
-                            ? result.get("distance").asDouble(0)
-                            : null;
-                    final KvObject<T> kvObject = toKvObject(result, clazz);
+            @Override
+            void start(final int pageCount) {
+            }
 
-                    results.add(new Result<T>(kvObject, score, distance));
+            @Override
+            void onPage(final int index, final SearchResults<T> page) {
+                for (final Result<T> item : page) {
+                    listener.onItem(item);
                 }
+                count.addAndGet(page.getCount());
+            }
 
-                return new SearchResults<T>(results, totalCount);
+            @Override
+            void finish(final int totalCount) {
+                result.complete(count.get());
             }
-        });
+        }.fetch();
+        return result;
+    }
+
+    /**
+     * Fetches the first page of a search query and then the rest of the pages
+     * with a bounded number of requests in flight.
+     */
+    private abstract class FetchAll<T> {
+
+        private final Class<T> clazz;
+        private final String luceneQuery;
+        private final Projection projection;
+        private final int limit;
+        private final int offset;
+        private final int parallelism;
+        private final boolean withValues;
+        private final String sortFields;
+        /** The index of the next page to request. */
+        private final AtomicInteger nextPage;
+        /** The number of pages that haven't arrived. */
+        private final AtomicInteger remaining;
+        private final CompositeRequest<?> result;
+        private volatile int pageCount;
+        private volatile int totalCount;
+
+        FetchAll(final CompositeRequest<?> result, final Class<T> clazz, final String luceneQuery) {
+            this.result = result;
+            this.clazz = clazz;
+            this.luceneQuery = luceneQuery;
+            this.projection = CollectionSearchResource.this.projection;
+            this.limit = CollectionSearchResource.this.limit;
+            this.offset = CollectionSearchResource.this.offset;
+            this.parallelism = CollectionSearchResource.this.parallelism;
+            this.withValues = CollectionSearchResource.this.withValues;
+            this.sortFields = CollectionSearchResource.this.sortFields;
+            this.nextPage = new AtomicInteger(1);
+            this.remaining = new AtomicInteger();
+        }
+
+        /** Invoked with the number of pages once the first page has arrived. */
+        abstract void start(final int pageCount);
+
+        /** Invoked from any thread with each page, by the index of the page. */
+        abstract void onPage(final int index, final SearchResults<T> page);
+
+        /** Invoked once all of the pages have been handled. */
+        abstract void finish(final int totalCount);
+
+        void fetch() {
+            request(0, offset, new ResponseListener<SearchResults<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final SearchResults<T> first) {
+                    totalCount = first.getTotalCount();
+                    final int rest = Math.max(0, totalCount - offset - limit);
+                    pageCount = 1 + (rest + limit - 1) / limit;
+                    remaining.set(pageCount);
+                    start(pageCount);
+                    done(0, first);
+                    for (int i = 0; i < parallelism; i++) {
+                        next();
+                    }
+                }
+            });
+        }
+
+        private void next() {
+            final int index = nextPage.getAndIncrement();
+            if (index >= pageCount) {
+                return;
+            }
+            request(index, offset + (index * limit), new ResponseListener<SearchResults<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final SearchResults<T> page) {
+                    done(index, page);
+                    next();
+                }
+            });
+        }
+
+        private void request(final int index, final int offset, final ResponseListener<SearchResults<T>> listener) {
+            final OrchestrateRequest<SearchResults<T>> request =
+                    search(clazz, query(luceneQuery, limit, offset, withValues, sortFields), projection, limit);
+            if (!result.track(request)) {
+                return;
+            }
+            request.on(new ResponseListener<SearchResults<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    listener.onFailure(error);
+                }
+
+                @Override
+                public void onSuccess(final SearchResults<T> page) {
+                    result.untrack(request);
+                    try {
+                        listener.onSuccess(page);
+                    } catch (final RuntimeException e) {
+                        result.fail(e);
+                    }
+                }
+            });
+        }
+
+        private void done(final int index, final SearchResults<T> page) {
+            onPage(index, page);
+            if (remaining.decrementAndGet() == 0) {
+                finish(totalCount);
+            }
+        }
+
+    }
+
+    private String query(final String luceneQuery, final int limit, final int offset,
+                         final boolean withValues, @Nullable final String sortFields) {
+        String query = "query=".concat(client.encode(luceneQuery))
+                .concat("&limit=").concat(limit + "")
+                .concat("&offset=").concat(offset + "")
+                .concat("&values=").concat(Boolean.toString(withValues));
+        if (sortFields != null) {
+            query = query.concat("&sort=").concat(sortFields);
+        }
+        return query;
     }
 
     /**
@@ -160,6 +449,38 @@ public class CollectionSearchResource extends BaseResource {
         return this;
     }
 
+    /**
+     * The number of pages of results to request at the same time when getting
+     * all the results of a query, defaults to {@link
+     * Runtime#availableProcessors()}.
+     *
+     * @param parallelism The number of pages to request at the same time.
+     * @return This request.
+     * @see #getAll(Class, String)
+     */
+    public CollectionSearchResource parallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "'parallelism' must be greater than zero.");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Read only the specified fields of the values in the search results, all
+     * other fields are skipped while the response is parsed. A field in a
+     * nested object is given by its path, e.g. {@code "address.city"}.
+     *
+     * <p>The projected fields are decoded into the type requested in {@link
+     * #get(Class, String)}, to read them into a compact map request {@code
+     * Map.class}.
+     *
+     * @param fields The paths of the fields to read.
+     * @return This request.
+     */
+    public CollectionSearchResource project(final String... fields) {
+        this.projection = Projection.of(fields);
+        return this;
+    }
+
     /**
      * Apply sorting to the results in the search query, this will render the
      * relevancy value in the "score" field for the results to be "0.0". To
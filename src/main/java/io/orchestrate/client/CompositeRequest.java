@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.impl.SafeFutureImpl;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.orchestrate.client.Preconditions.checkNotNegative;
+
+/**
+ * The result of an operation that is carried out with many requests to the
+ * Orchestrate service, e.g. a parallel scan of a collection.
+ *
+ * <p>Cancelling the operation cancels all of its requests that are in flight.
+ *
+ * @param <T> The type of the result of the operation.
+ */
+public final class CompositeRequest<T> implements Future<T> {
+
+    private final SafeFutureImpl<T> future;
+    /** The requests of the operation that are in flight. */
+    private final Set<OrchestrateRequest<?>> inFlight;
+
+    CompositeRequest() {
+        this.future = SafeFutureImpl.create();
+        this.inFlight = Collections.newSetFromMap(new ConcurrentHashMap<OrchestrateRequest<?>, Boolean>());
+    }
+
+    public CompositeRequest<T> on(final @NonNull ResponseListener<T> listener) {
+        future.addCompletionHandler(new ResponseCompletionHandler<T>(listener));
+        return this;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final boolean cancelled = future.cancel(mayInterruptIfRunning);
+        cancelInFlight();
+        return cancelled;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Wait for the operation to complete, there's no timeout since an operation
+     * may be made of any number of requests.
+     *
+     * @return The result of the operation.
+     */
+    @Override
+    public T get() {
+        try {
+            return future.get();
+        } catch (final Exception e) {
+            throw unwrap(e);
+        }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) {
+        checkNotNegative(timeout, "timeout");
+
+        try {
+            return future.get(timeout, unit);
+        } catch (final Exception e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Track the {@code request} as part of the operation, the request is
+     * cancelled instead if the operation has already finished.
+     *
+     * @return {@code true} if the request should go ahead.
+     */
+    boolean track(final OrchestrateRequest<?> request) {
+        assert (request != null);
+
+        inFlight.add(request);
+        if (future.isDone()) {
+            inFlight.remove(request);
+            request.cancel(false);
+            return false;
+        }
+        return true;
+    }
+
+    void untrack(final OrchestrateRequest<?> request) {
+        inFlight.remove(request);
+    }
+
+    void complete(final T result) {
+        future.result(result);
+        // any requests still in flight are no longer needed
+        cancelInFlight();
+    }
+
+    void fail(final Throwable t) {
+        future.failure(t);
+        cancelInFlight();
+    }
+
+    /**
+     * Run the {@code task} if the operation is cancelled, e.g. to release the
+     * resources of the operation. The listeners of the operation aren't told
+     * of a cancel.
+     */
+    void onCancel(final Runnable task) {
+        assert (task != null);
+
+        future.addCompletionHandler(new CompletionHandler<T>() {
+            @Override
+            public void cancelled() {
+                task.run();
+            }
+
+            @Override
+            public void failed(final Throwable throwable) {
+            }
+
+            @Override
+            public void completed(final T result) {
+            }
+
+            @Override
+            public void updated(final T result) {
+            }
+        });
+    }
+
+    private void cancelInFlight() {
+        for (final OrchestrateRequest<?> request : inFlight) {
+            request.cancel(false);
+        }
+        inFlight.clear();
+    }
+
+    private static ClientException unwrap(final Exception e) {
+        if (e instanceof ClientException) {
+            return (ClientException) e;
+        }
+        if (e instanceof ExecutionException && e.getCause() instanceof ClientException) {
+            return (ClientException) e.getCause();
+        }
+        if (e instanceof ExecutionException) {
+            return new ClientException(e.getCause());
+        }
+        return new ClientException(e);
+    }
+
+}
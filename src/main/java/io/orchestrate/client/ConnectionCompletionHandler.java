@@ -59,6 +59,9 @@ final class ConnectionCompletionHandler implements CompletionHandler<Connection>
     public void completed(final Connection conn) {
         final AttributeHolder attrs = conn.getAttributes();
         attrs.setAttribute(ClientFilter.OIO_RESPONSE_FUTURE_ATTR, orchestrateRequest.getRawResponseFuture());
+        if (orchestrateRequest.getContentListener() != null) {
+            attrs.setAttribute(ClientFilter.OIO_CONTENT_LISTENER_ATTR, orchestrateRequest.getContentListener());
+        }
 
         if(!orchestrateRequest.isCancelled()) {
             @SuppressWarnings("unchecked")
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.Buffer;
+
+import java.io.IOException;
+
+/**
+ * A listener that consumes the body of a successful HTTP response chunk by
+ * chunk as it arrives, instead of the body being buffered until the response
+ * is complete.
+ */
+interface ContentListener {
+
+    /**
+     * Consume the next chunk of the response body.
+     *
+     * @param chunk The next chunk of the response body.
+     * @throws IOException If the chunk could not be consumed.
+     */
+    void onContent(final Buffer chunk) throws IOException;
+
+}
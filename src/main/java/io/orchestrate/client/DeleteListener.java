@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * A listener for the progress of a bulk delete, told the outcome of each key.
+ *
+ * <p>The listener is called from the threads of the client and must not
+ * block.
+ */
+public interface DeleteListener {
+
+    /**
+     * Invoked when the object with the {@code key} has been deleted.
+     *
+     * @param key The key of the object.
+     */
+    public void onDelete(final String key);
+
+    /**
+     * Invoked when the object with the {@code key} could not be deleted, the
+     * rest of the keys are still deleted.
+     *
+     * @param key The key of the object.
+     * @param error The exception thrown.
+     */
+    public void onFailure(final String key, final Throwable error);
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a bulk delete. Only the keys that failed are kept, so that
+ * the result of deleting from a large collection stays small.
+ */
+@ToString
+public final class DeleteResult {
+
+    /** The number of objects deleted. */
+    private final long deleted;
+    /** The errors of the keys that failed, by key. */
+    private final Map<String, Throwable> failed;
+
+    DeleteResult(final long deleted, final Map<String, Throwable> failed) {
+        assert (deleted >= 0);
+        assert (failed != null);
+
+        this.deleted = deleted;
+        this.failed = Collections.unmodifiableMap(failed);
+    }
+
+    /**
+     * Returns the number of objects deleted.
+     *
+     * @return The number of objects deleted.
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Returns the error of each key that failed to be deleted.
+     *
+     * @return The errors of the keys that failed, by key.
+     */
+    public Map<String, Throwable> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Whether every object was deleted.
+     *
+     * @return {@code true} if no key failed.
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A store of the objects read by a client in files on disk, which outlives the
+ * client so that a new client starts with the objects read before it.
+ *
+ * <p>The objects are appended to a log file that is memory mapped at its full
+ * size, each record holds the path, ref and raw JSON of an object. Writes and
+ * invalidations append a record that removes the object. The index of the
+ * latest record for each path is kept on the heap, and is saved to an index
+ * file when the store is closed or compacted so that the store is reopened
+ * without reading the log; only the records appended after the index was saved
+ * are read again.
+ *
+ * <p>When the log is full it's compacted into a new log file with only the
+ * latest record for each path. The oldest records are dropped so that the new
+ * log is at most half full, which bounds the store to the size of its log.
+ *
+ * <p>Each record has a checksum so that a record that was only partly written
+ * when the process stopped is ignored, along with the records after it. A
+ * directory is locked by one store at a time.
+ */
+final class DiskCache implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x4f524331;
+    private static final int VERSION = 1;
+    /** The bytes of the header, {@code [magic][version][generation][scope]}. */
+    private static final int HEADER_SIZE = 24;
+    /** The bytes of a record before its body, {@code [length][checksum]}. */
+    private static final int RECORD_OVERHEAD = 8;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private static final String LOG_PREFIX = "cache-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_FILE = "cache.idx";
+    private static final String LOCK_FILE = "cache.lock";
+
+    /** The directory of the files. */
+    private final Path directory;
+    /** The size of a log file, in bytes. */
+    private final int capacity;
+    /** The hash of the service and account the objects were read from. */
+    private final long scope;
+    /** The lock of the directory, held until the store is closed. */
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    /** The offsets of the latest record for each path, guarded by this. */
+    private final Map<String, Integer> index;
+    /** The generation of the log, guarded by this. */
+    private long generation;
+    /** The mapped log, guarded by this. */
+    private MappedByteBuffer log;
+    /** The offset to append the next record at, guarded by this. */
+    private int end;
+    /** Whether the store is closed, guarded by this. */
+    private boolean closed;
+
+    private DiskCache(final Path directory, final int capacity, final long scope,
+                      final FileChannel lockChannel, final FileLock lock) {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.scope = scope;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.index = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Open the store in the {@code directory}, with the objects stored before
+     * for the same {@code scope}.
+     *
+     * @param directory The directory of the files, created if it's missing.
+     * @param capacity The size of the log file, in bytes.
+     * @param scope The service and account the objects are read from.
+     * @return The store.
+     * @throws IOException If the files couldn't be opened, or the directory is
+     *         in use by another store.
+     */
+    static DiskCache open(final Path directory, final int capacity, final String scope) throws IOException {
+        assert (directory != null);
+        assert (capacity > HEADER_SIZE);
+        assert (scope != null);
+
+        Files.createDirectories(directory);
+        final FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (final OverlappingFileLockException ignored) {
+            // locked by a store in this JVM
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(String.format("The cache directory '%s' is in use.", directory));
+        }
+
+        final long scopeHash = OffHeapStore.hash(scope.getBytes(UTF8));
+        final DiskCache cache = new DiskCache(directory, capacity, scopeHash, lockChannel, lock);
+        try {
+            cache.load();
+        } catch (final IOException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the object stored for the {@code uri}, or {@code null} if
+     * there's none.
+     */
+    @Nullable
+    synchronized Record get(final String uri) {
+        assert (uri != null);
+
+        final Integer offset = index.get(uri);
+        if (closed || offset == null) {
+            return null;
+        }
+        final ByteBuffer body = body(offset);
+        body.get();
+        readString(body);
+        final String ref = readString(body);
+        final String collection = readString(body);
+        final String key = readString(body);
+        final byte[] rawValue = new byte[body.remaining()];
+        body.get(rawValue);
+        return new Record(collection, key, ref, rawValue);
+    }
+
+    /**
+     * Store the object for the {@code uri}, unless the object stored for it
+     * has the same ref. The object isn't stored while the log is full and
+     * can't be compacted.
+     */
+    synchronized void put(final String uri, final KvObject<?> object) throws IOException {
+        assert (uri != null);
+        assert (object != null);
+
+        if (closed || object.getRawValue() == null) {
+            return;
+        }
+        final Integer offset = index.get(uri);
+        if (offset != null) {
+            final ByteBuffer body = body(offset);
+            body.get();
+            readString(body);
+            if (readString(body).equals(object.getRef())) {
+                return;
+            }
+        }
+
+        final byte[] uriBytes = uri.getBytes(UTF8);
+        final byte[] ref = object.getRef().getBytes(UTF8);
+        final byte[] collection = object.getCollection().getBytes(UTF8);
+        final byte[] key = object.getKey().getBytes(UTF8);
+        final byte[] rawValue = object.getRawValue().getBytes(UTF8);
+        final ByteBuffer body = ByteBuffer.allocate(
+                1 + 16 + uriBytes.length + ref.length + collection.length + key.length + rawValue.length);
+        body.put(PUT)
+                .putInt(uriBytes.length).put(uriBytes)
+                .putInt(ref.length).put(ref)
+                .putInt(collection.length).put(collection)
+                .putInt(key.length).put(key)
+                .put(rawValue);
+        append(uri, body.array());
+    }
+
+    /**
+     * Remove the object stored for the {@code uri}.
+     */
+    synchronized void remove(final String uri) throws IOException {
+        assert (uri != null);
+
+        if (closed || !index.containsKey(uri)) {
+            return;
+        }
+        final byte[] uriBytes = uri.getBytes(UTF8);
+        append(uri, ByteBuffer.allocate(1 + 4 + uriBytes.length)
+                .put(REMOVE)
+                .putInt(uriBytes.length).put(uriBytes)
+                .array());
+    }
+
+    /**
+     * Remove all the objects, by starting a new empty log.
+     */
+    synchronized void clear() throws IOException {
+        if (closed) {
+            return;
+        }
+        rewrite(Collections.<Integer>emptyList());
+    }
+
+    /**
+     * Returns the number of objects stored.
+     */
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Save the index and release the directory, the store can't be used after
+     * it's closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (log != null) {
+                saveIndex();
+            }
+        } finally {
+            index.clear();
+            log = null;
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private void append(final String uri, final byte[] body) throws IOException {
+        final int length = RECORD_OVERHEAD + body.length;
+        if (length > capacity - HEADER_SIZE) {
+            return;
+        }
+        if (end + length > capacity) {
+            compact();
+            if (end + length > capacity) {
+                return;
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        log.position(end);
+        log.putInt(body.length).putInt((int) crc.getValue()).put(body);
+
+        if (body[0] == PUT) {
+            index.put(uri, end);
+        } else {
+            index.remove(uri);
+        }
+        end += length;
+    }
+
+    /**
+     * Rewrite the log with the latest record for each path, dropping the
+     * oldest records to leave the new log at most half full.
+     */
+    private void compact() throws IOException {
+        final List<Integer> offsets = new ArrayList<Integer>(index.values());
+        Collections.sort(offsets);
+        long size = HEADER_SIZE;
+        for (final int offset : offsets) {
+            size += RECORD_OVERHEAD + log.getInt(offset);
+        }
+        int first = 0;
+        while (size > capacity / 2 && first < offsets.size()) {
+            size -= RECORD_OVERHEAD + log.getInt(offsets.get(first));
+            first++;
+        }
+        rewrite(offsets.subList(first, offsets.size()));
+    }
+
+    /**
+     * Copy the records at the {@code offsets} of the log into a log of the
+     * next generation, and make it the current log.
+     */
+    private void rewrite(final List<Integer> offsets) throws IOException {
+        final long nextGeneration = generation + 1;
+        final MappedByteBuffer next = create(nextGeneration);
+        final Map<String, Integer> nextIndex = new HashMap<String, Integer>(index.size() * 2);
+        int position = HEADER_SIZE;
+        for (final int offset : offsets) {
+            final int length = RECORD_OVERHEAD + log.getInt(offset);
+            final ByteBuffer record = log.duplicate();
+            record.limit(offset + length).position(offset);
+            next.position(position);
+            next.put(record);
+            nextIndex.put(uriOf(offset), position);
+            position += length;
+        }
+
+        final Path previous = logFile(generation);
+        generation = nextGeneration;
+        log = next;
+        end = position;
+        index.clear();
+        index.putAll(nextIndex);
+        saveIndex();
+        try {
+            Files.deleteIfExists(previous);
+        } catch (final IOException ignored) {
+            // a mapped file can't be deleted on some platforms, it's deleted when the store is next opened
+        }
+    }
+
+    /**
+     * Load the latest log in the directory, and its index if it was saved for
+     * the log. A log of another version or scope is discarded.
+     */
+    private void load() throws IOException {
+        final List<Path> logs = new ArrayList<Path>();
+        final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX);
+        try {
+            for (final Path path : stream) {
+                logs.add(path);
+            }
+        } finally {
+            stream.close();
+        }
+
+        long latest = -1;
+        for (final Path path : logs) {
+            latest = Math.max(latest, generationOf(path));
+        }
+        MappedByteBuffer mapped = (latest >= 0) ? map(logFile(latest)) : null;
+        if (mapped != null && (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                || mapped.getLong(8) != latest || mapped.getLong(16) != scope)) {
+            mapped = null;
+        }
+        for (final Path path : logs) {
+            if (mapped == null || generationOf(path) != latest) {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        if (mapped == null) {
+            generation = Math.max(latest, 0);
+            log = create(generation);
+            end = HEADER_SIZE;
+            saveIndex();
+            return;
+        }
+        generation = latest;
+        log = mapped;
+        end = loadIndex();
+        // read the records appended since the index was saved
+        while (end + RECORD_OVERHEAD <= capacity) {
+            final int length = log.getInt(end);
+            if (length <= 0 || end + RECORD_OVERHEAD + length > capacity) {
+                break;
+            }
+            final ByteBuffer body = body(end);
+            final CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != log.getInt(end + 4)) {
+                break;
+            }
+            final byte type = body.get();
+            final String uri = readString(body);
+            if (type == PUT) {
+                index.put(uri, end);
+            } else {
+                index.remove(uri);
+            }
+            end += RECORD_OVERHEAD + length;
+        }
+    }
+
+    /**
+     * Load the index saved for the current log.
+     *
+     * @return The offset of the log the index was saved at, or the end of the
+     *         header if there's no index for the log.
+     */
+    private int loadIndex() throws IOException {
+        final Path file = directory.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return HEADER_SIZE;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readLong() != generation) {
+                return HEADER_SIZE;
+            }
+            final int position = in.readInt();
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                final byte[] uri = new byte[in.readInt()];
+                in.readFully(uri);
+                index.put(new String(uri, UTF8), in.readInt());
+            }
+            return position;
+        } catch (final IOException e) {
+            // a damaged index, read the whole log instead
+            index.clear();
+            return HEADER_SIZE;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Save the index of the current log, once the log is written to disk.
+     */
+    private void saveIndex() throws IOException {
+        log.force();
+        final Path file = directory.resolve(INDEX_FILE);
+        final Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(generation);
+            out.writeInt(end);
+            out.writeInt(index.size());
+            for (final Map.Entry<String, Integer> entry : index.entrySet()) {
+                final byte[] uri = entry.getKey().getBytes(UTF8);
+                out.writeInt(uri.length);
+                out.write(uri);
+                out.writeInt(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private MappedByteBuffer create(final long generation) throws IOException {
+        final Path file = logFile(generation);
+        Files.deleteIfExists(file);
+        final MappedByteBuffer mapped = map(file);
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        mapped.putLong(8, generation);
+        mapped.putLong(16, scope);
+        return mapped;
+    }
+
+    private MappedByteBuffer map(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Returns a copy of the body of the record at the {@code offset}. */
+    private ByteBuffer body(final int offset) {
+        final byte[] body = new byte[log.getInt(offset)];
+        log.position(offset + RECORD_OVERHEAD);
+        log.get(body);
+        return ByteBuffer.wrap(body);
+    }
+
+    private String uriOf(final int offset) {
+        final ByteBuffer body = body(offset);
+        body.get();
+        return readString(body);
+    }
+
+    private Path logFile(final long generation) {
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private static long generationOf(final Path path) {
+        final String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        final String value = new String(buffer.array(), buffer.position(), length, UTF8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * An object read from the store.
+     */
+    static final class Record {
+
+        private final String collection;
+        private final String key;
+        private final String ref;
+        private final byte[] rawValue;
+
+        Record(final String collection, final String key, final String ref, final byte[] rawValue) {
+            this.collection = collection;
+            this.key = key;
+            this.ref = ref;
+            this.rawValue = rawValue;
+        }
+
+        String getCollection() {
+            return collection;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getRef() {
+            return ref;
+        }
+
+        byte[] getRawValue() {
+            return rawValue;
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * A relation of a kind from a "source" object to a "destination" object.
+ */
+@ToString
+@EqualsAndHashCode
+public final class Edge {
+
+    /** The collection of the source object. */
+    private final String sourceCollection;
+    /** The key of the source object. */
+    private final String sourceKey;
+    /** The kind of the relation. */
+    private final String kind;
+    /** The collection of the destination object. */
+    private final String destCollection;
+    /** The key of the destination object. */
+    private final String destKey;
+
+    /**
+     * Create an edge of the {@code kind} from the source object to the
+     * destination object.
+     *
+     * @param sourceCollection The collection of the source object.
+     * @param sourceKey The key of the source object.
+     * @param kind The kind of the relation.
+     * @param destCollection The collection of the destination object.
+     * @param destKey The key of the destination object.
+     */
+    public Edge(final String sourceCollection,
+                final String sourceKey,
+                final String kind,
+                final String destCollection,
+                final String destKey) {
+        this.sourceCollection = checkNotNullOrEmpty(sourceCollection, "sourceCollection");
+        this.sourceKey = checkNotNullOrEmpty(sourceKey, "sourceKey");
+        this.kind = checkNotNullOrEmpty(kind, "kind");
+        this.destCollection = checkNotNullOrEmpty(destCollection, "destCollection");
+        this.destKey = checkNotNullOrEmpty(destKey, "destKey");
+    }
+
+    /**
+     * Returns the edge of the same kind in the other direction.
+     *
+     * @return The inverse of this edge.
+     */
+    public Edge inverse() {
+        return new Edge(destCollection, destKey, kind, sourceCollection, sourceKey);
+    }
+
+    /**
+     * Returns the collection of the source object.
+     *
+     * @return The source collection.
+     */
+    public String getSourceCollection() {
+        return sourceCollection;
+    }
+
+    /**
+     * Returns the key of the source object.
+     *
+     * @return The source key.
+     */
+    public String getSourceKey() {
+        return sourceKey;
+    }
+
+    /**
+     * Returns the kind of the relation.
+     *
+     * @return The kind of the relation.
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the collection of the destination object.
+     *
+     * @return The destination collection.
+     */
+    public String getDestCollection() {
+        return destCollection;
+    }
+
+    /**
+     * Returns the key of the destination object.
+     *
+     * @return The destination key.
+     */
+    public String getDestKey() {
+        return destKey;
+    }
+
+}
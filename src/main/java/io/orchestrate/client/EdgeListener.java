@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * A listener for the outcome of each edge written or purged in bulk.
+ *
+ * <p>The listener is called from the threads of the client and must not
+ * block.
+ */
+public interface EdgeListener {
+
+    /**
+     * Invoked when the {@code edge} has been written or purged.
+     *
+     * @param edge The edge.
+     */
+    public void onSuccess(final Edge edge);
+
+    /**
+     * Invoked when the {@code edge} could not be written or purged, the rest
+     * of the edges are still handled.
+     *
+     * @param edge The edge that failed.
+     * @param error The exception thrown.
+     */
+    public void onFailure(final Edge edge, final Throwable error);
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of writing or purging edges in bulk. Only the edges that failed
+ * are kept, so that the result of a large import stays small.
+ */
+@ToString
+public final class EdgeResult {
+
+    /** The number of edges written or purged. */
+    private final long succeeded;
+    /** The errors of the edges that failed. */
+    private final Map<Edge, Throwable> failed;
+
+    EdgeResult(final long succeeded, final Map<Edge, Throwable> failed) {
+        assert (succeeded >= 0);
+        assert (failed != null);
+
+        this.succeeded = succeeded;
+        this.failed = Collections.unmodifiableMap(failed);
+    }
+
+    /**
+     * Returns the number of edges written or purged.
+     *
+     * @return The number of edges that succeeded.
+     */
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Returns the error of each edge that failed.
+     *
+     * @return The errors of the edges that failed, by edge.
+     */
+    public Map<Edge, Throwable> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Whether every edge succeeded.
+     *
+     * @return {@code true} if no edge failed.
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * A listener for the outcome of each event stored by an {@link EventIngester}.
+ *
+ * <p>The listener is called from the threads of the client and must not
+ * block.
+ */
+public interface EventIngestListener {
+
+    /**
+     * Invoked when the {@code event} has been stored.
+     *
+     * @param event The event stored.
+     */
+    public void onSuccess(final QueuedEvent event);
+
+    /**
+     * Invoked when the {@code event} could not be stored, the events after it
+     * for the same key are still stored.
+     *
+     * @param event The event that failed.
+     * @param error The exception thrown.
+     */
+    public void onFailure(final QueuedEvent event, final Throwable error);
+
+}
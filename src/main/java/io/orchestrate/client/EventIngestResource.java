@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+
+/**
+ * The resource for storing a high volume of events from many producers.
+ */
+public class EventIngestResource {
+
+    /** The default number of events buffered before producers wait. */
+    public static final int DEFAULT_CAPACITY = 10000;
+    /** The default number of requests in flight at the same time. */
+    public static final int DEFAULT_PARALLELISM = 32;
+
+    /** The client to store the events with. */
+    private final OrchestrateClient client;
+    /** The number of events buffered before producers wait. */
+    private int capacity;
+    /** The number of requests in flight at the same time. */
+    private int parallelism;
+
+    EventIngestResource(final OrchestrateClient client) {
+        assert (client != null);
+
+        this.client = client;
+        this.capacity = DEFAULT_CAPACITY;
+        this.parallelism = DEFAULT_PARALLELISM;
+    }
+
+    /**
+     * Start an ingester that stores the events submitted to it, and hands
+     * the outcome of each event to the {@code listener}.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * EventIngester ingester =
+     *         client.ingestEvents()
+     *               .capacity(50000)
+     *               .parallelism(64)
+     *               .start(listener);
+     * ingester.put("someCollection", "someKey", "someType", obj, timestamp);
+     * ...
+     * ingester.close();
+     * }
+     * </pre>
+     *
+     * @param listener The listener for the outcome of each event.
+     * @return The event ingester.
+     */
+    public EventIngester start(final @NonNull EventIngestListener listener) {
+        return new EventIngester(client, listener, capacity, parallelism);
+    }
+
+    /**
+     * The number of events buffered (queued or in flight) before producers
+     * wait to submit more, defaults to {@link #DEFAULT_CAPACITY}.
+     *
+     * @param capacity The number of events buffered.
+     * @return This resource.
+     */
+    public EventIngestResource capacity(final int capacity) {
+        checkArgument(capacity > 0, "'capacity' must be greater than zero.");
+
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * The number of events in flight at the same time, each for a different
+     * key and type, defaults to {@link #DEFAULT_PARALLELISM}.
+     *
+     * @param parallelism The number of requests in flight.
+     * @return This resource.
+     */
+    public EventIngestResource parallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "'parallelism' must be greater than zero.");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static io.orchestrate.client.Preconditions.checkNotNull;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * Stores events submitted from many producers. The events for each
+ * collection, key and type form a lane that is stored in the order the events
+ * were submitted, one request at a time, while different lanes are stored in
+ * parallel.
+ *
+ * <p>At most the 'capacity' of events are buffered, a producer submitting an
+ * event waits while the buffer is full. An ingester is safe to share between
+ * threads, but events must not be submitted from a listener since waiting for
+ * the buffer there would stop the events in flight from completing.
+ */
+public final class EventIngester implements Closeable {
+
+    private final OrchestrateClient client;
+    /** The listener for the outcome of each event. */
+    private final EventIngestListener listener;
+    private final int capacity;
+    /** The number of lanes with a request in flight at the same time. */
+    private final int parallelism;
+    /** The permits for the events buffered. */
+    private final Semaphore permits;
+    /** The lanes with events queued or in flight, by the path of the lane. */
+    private final ConcurrentMap<String, Lane> lanes;
+    /** The lanes waiting for their turn to send, guarded by this. */
+    private final Queue<Lane> ready;
+    /** The number of lanes with a request in flight, guarded by this. */
+    private int running;
+    private volatile boolean closed;
+
+    EventIngester(final OrchestrateClient client,
+                  final EventIngestListener listener,
+                  final int capacity,
+                  final int parallelism) {
+        assert (client != null);
+        assert (listener != null);
+        assert (capacity > 0);
+        assert (parallelism > 0);
+
+        this.client = client;
+        this.listener = listener;
+        this.capacity = capacity;
+        this.parallelism = parallelism;
+        this.permits = new Semaphore(capacity);
+        this.lanes = new ConcurrentHashMap<String, Lane>();
+        this.ready = new ArrayDeque<Lane>();
+        this.running = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Submit an event to be stored at the time it's received by the service,
+     * waiting while the buffer is full.
+     *
+     * @param collection The collection of the event.
+     * @param key The key the event belongs to.
+     * @param type The type of the event.
+     * @param value The object to store as the event.
+     */
+    public void put(final String collection, final String key, final String type, final Object value) {
+        put(collection, key, type, value, null);
+    }
+
+    /**
+     * Submit an event to be stored, waiting while the buffer is full.
+     *
+     * @param collection The collection of the event.
+     * @param key The key the event belongs to.
+     * @param type The type of the event.
+     * @param value The object to store as the event.
+     * @param timestamp The timestamp of the event, or {@code null} for the
+     *                  time it's received by the service.
+     */
+    public void put(final String collection,
+                    final String key,
+                    final String type,
+                    final Object value,
+                    @Nullable final Long timestamp) {
+        final QueuedEvent event = event(collection, key, type, value, timestamp);
+        try {
+            permits.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(e);
+        }
+        enqueue(event);
+    }
+
+    /**
+     * Submit an event to be stored, waiting up to the {@code timeout} while
+     * the buffer is full.
+     *
+     * @param collection The collection of the event.
+     * @param key The key the event belongs to.
+     * @param type The type of the event.
+     * @param value The object to store as the event.
+     * @param timestamp The timestamp of the event, or {@code null} for the
+     *                  time it's received by the service.
+     * @param timeout The time to wait for room in the buffer.
+     * @param unit The unit of the timeout.
+     * @return {@code true} if the event was submitted, {@code false} if the
+     *         buffer stayed full.
+     */
+    public boolean offer(final String collection,
+                         final String key,
+                         final String type,
+                         final Object value,
+                         @Nullable final Long timestamp,
+                         final long timeout,
+                         final TimeUnit unit) {
+        final QueuedEvent event = event(collection, key, type, value, timestamp);
+        try {
+            if (!permits.tryAcquire(timeout, unit)) {
+                return false;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(e);
+        }
+        enqueue(event);
+        return true;
+    }
+
+    /**
+     * Returns the number of events queued or in flight.
+     *
+     * @return The number of events buffered.
+     */
+    public int getBuffered() {
+        return capacity - permits.availablePermits();
+    }
+
+    /**
+     * Wait for all of the events submitted to be stored.
+     */
+    public void flush() {
+        try {
+            permits.acquire(capacity);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(e);
+        }
+        permits.release(capacity);
+    }
+
+    /**
+     * Wait for all of the events submitted to be stored, the ingester can't be
+     * used once it's closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+    }
+
+    private QueuedEvent event(final String collection,
+                              final String key,
+                              final String type,
+                              final Object value,
+                              @Nullable final Long timestamp) {
+        checkNotNullOrEmpty(collection, "collection");
+        checkNotNullOrEmpty(key, "key");
+        checkNotNullOrEmpty(type, "type");
+        checkNotNull(value, "value");
+        if (closed) {
+            throw new IllegalStateException("The ingester has been closed.");
+        }
+
+        return new QueuedEvent(collection, key, type, value, timestamp);
+    }
+
+    private void enqueue(final QueuedEvent event) {
+        final String path = client.uri(event.getCollection(), event.getKey(), "events", event.getType());
+        while (true) {
+            Lane lane = lanes.get(path);
+            if (lane == null) {
+                final Lane created = new Lane(path);
+                lane = lanes.putIfAbsent(path, created);
+                if (lane == null) {
+                    lane = created;
+                }
+            }
+
+            final boolean schedule;
+            synchronized (lane) {
+                if (lane.retired) {
+                    // the lane emptied and was removed, use its replacement
+                    continue;
+                }
+                lane.events.add(event);
+                schedule = !lane.scheduled;
+                lane.scheduled = true;
+            }
+            if (schedule) {
+                synchronized (this) {
+                    ready.add(lane);
+                }
+                dispatch();
+            }
+            return;
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            final Lane lane;
+            synchronized (this) {
+                if (running >= parallelism || ready.isEmpty()) {
+                    return;
+                }
+                lane = ready.poll();
+                running++;
+            }
+
+            final QueuedEvent event;
+            synchronized (lane) {
+                event = lane.events.poll();
+            }
+            assert (event != null);
+            send(lane, event);
+        }
+    }
+
+    private void send(final Lane lane, final QueuedEvent event) {
+        final OrchestrateRequest<Boolean> request;
+        try {
+            request = client.event(event.getCollection(), event.getKey())
+                    .type(event.getType())
+                    .put(event.getValue(), event.getTimestamp());
+        } catch (final RuntimeException e) {
+            done(lane, event, e);
+            return;
+        }
+
+        request.on(new ResponseListener<Boolean>() {
+            @Override
+            public void onFailure(final Throwable error) {
+                done(lane, event, error);
+            }
+
+            @Override
+            public void onSuccess(final Boolean stored) {
+                done(lane, event, stored ? null : new ClientException("The event was not stored."));
+            }
+        });
+    }
+
+    private void done(final Lane lane, final QueuedEvent event, @Nullable final Throwable error) {
+        try {
+            if (error == null) {
+                listener.onSuccess(event);
+            } else {
+                listener.onFailure(event, error);
+            }
+        } finally {
+            final boolean more;
+            synchronized (lane) {
+                more = !lane.events.isEmpty();
+                if (!more) {
+                    lane.scheduled = false;
+                    lane.retired = true;
+                    lanes.remove(lane.path, lane);
+                }
+            }
+            synchronized (this) {
+                running--;
+                if (more) {
+                    // back of the line, so busy lanes don't starve the others
+                    ready.add(lane);
+                }
+            }
+            permits.release();
+            dispatch();
+        }
+    }
+
+    /**
+     * The events for a collection, key and type, stored one at a time.
+     */
+    private static final class Lane {
+
+        private final String path;
+        /** The events waiting to be sent, guarded by the lane. */
+        private final Queue<QueuedEvent> events;
+        /** Whether the lane is waiting for its turn or has a request in flight. */
+        private boolean scheduled;
+        /** Whether the lane has been removed from the lanes. */
+        private boolean retired;
+
+        Lane(final String path) {
+            this.path = path;
+            this.events = new ArrayDeque<QueuedEvent>();
+        }
+
+    }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNegative;
+
+/**
+ * The resource for reading the events of a key over a large time range as a
+ * number of smaller time windows, with a bounded number of windows fetched
+ * concurrently.
+ *
+ * <p>The events are handed on newest first, the order the Orchestrate service
+ * returns them in. The windows are read from the end of the range back to its
+ * start, and their size adapts to the number of events found in the windows
+ * already read. A window that returns a full 'limit' of events is split in
+ * half and read again, so no events are missed.
+ *
+ * <p>A window of a single millisecond can't be split, so if it returns a full
+ * 'limit' of events it's read again with a limit of {@link #MAX_LIMIT}, the
+ * most the service returns at once. The events of one timestamp can't be paged
+ * through, so the read fails with a {@link ClientException} if more than
+ * {@link #MAX_LIMIT} events of the key share a timestamp.
+ *
+ * <p>At most 'parallelism' windows are held at a time, including the windows
+ * made by a split, along with the events read for them that are waiting for
+ * the newer windows. To make room for the halves of a split, the oldest
+ * windows are given up and read again later.
+ */
+public class EventRangeResource {
+
+    /** The default maximum number of events requested per window. */
+    public static final int DEFAULT_LIMIT = 100;
+    /** The most events the service returns for a window. */
+    public static final int MAX_LIMIT = 100;
+    /** The default number of windows fetched at the same time. */
+    public static final int DEFAULT_PARALLELISM = 4;
+    /** The default number of times a failed window is retried. */
+    public static final int DEFAULT_RETRIES = 2;
+
+    /** The resource to read the events of. */
+    private final EventResource events;
+    /** The inclusive start of the range. */
+    private final long start;
+    /** The exclusive end of the range. */
+    private final long end;
+    /** The maximum number of events requested per window. */
+    private int limit;
+    /** The number of windows fetched at the same time. */
+    private int parallelism;
+    /** The number of times a failed window is retried. */
+    private int retries;
+    /** The size of the first windows, {@code 0} to divide the range evenly. */
+    private long window;
+
+    EventRangeResource(final EventResource events, final long start, final long end) {
+        assert (events != null);
+        assert (start < end);
+
+        this.events = events;
+        this.start = start;
+        this.end = end;
+        this.limit = DEFAULT_LIMIT;
+        this.parallelism = DEFAULT_PARALLELISM;
+        this.retries = DEFAULT_RETRIES;
+        this.window = 0;
+    }
+
+    /**
+     * Read the events in the range, and hand each event to the {@code
+     * listener} in order. The listener is called by one thread at a time.
+     *
+     * <p>The request completes with the number of events handed on.
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param listener The listener for each event.
+     * @param <T> The type to deserialize the events to.
+     * @return The request for the range of events.
+     */
+    public <T> CompositeRequest<Integer> get(
+            final @NonNull Class<T> clazz, final @NonNull ItemListener<Event<T>> listener) {
+        final CompositeRequest<Integer> result = new CompositeRequest<Integer>();
+        final long size = (window > 0)
+                ? window
+                : Math.max(1, (end - start + parallelism - 1) / parallelism);
+        new Read<T>(result, clazz, listener, size).fill();
+        return result;
+    }
+
+    /**
+     * The maximum number of events to request per window, defaults to {@link
+     * #DEFAULT_LIMIT}. The windows are sized to return about half of it.
+     *
+     * @param limit The maximum number of events per window.
+     * @return This resource.
+     */
+    public EventRangeResource limit(final int limit) {
+        checkArgument(limit > 1 && limit <= MAX_LIMIT, "'limit' must be between 2 and " + MAX_LIMIT + ".");
+
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * The number of windows to fetch at the same time, defaults to {@link
+     * #DEFAULT_PARALLELISM}.
+     *
+     * @param parallelism The number of windows fetched at the same time.
+     * @return This resource.
+     */
+    public EventRangeResource parallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "'parallelism' must be greater than zero.");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * The number of times to retry a window that fails before failing the
+     * read, defaults to {@link #DEFAULT_RETRIES}.
+     *
+     * @param retries The number of retries per window.
+     * @return This resource.
+     */
+    public EventRangeResource retries(final int retries) {
+        this.retries = checkNotNegative(retries, "retries");
+        return this;
+    }
+
+    /**
+     * The size of the first windows in milliseconds, defaults to the range
+     * divided by the 'parallelism'. Later windows are sized from the number
+     * of events found.
+     *
+     * @param window The size of the first windows.
+     * @return This resource.
+     */
+    public EventRangeResource window(final long window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * A time window of the range, from its inclusive start to its exclusive
+     * end.
+     */
+    private static final class Window<T> {
+
+        private final long from;
+        private final long to;
+        /** The events of the window once it's been read. */
+        private List<Event<T>> events;
+        /** The number of events to request for the window. */
+        private int limit;
+        private boolean inFlight;
+        private int attempts;
+        /** Whether the window was given up to make room, its range is read again. */
+        private boolean dropped;
+
+        Window(final long from, final long to, final int limit) {
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+        }
+
+    }
+
+    private final class Read<T> {
+
+        private final CompositeRequest<Integer> result;
+        private final Class<T> clazz;
+        private final ItemListener<Event<T>> listener;
+        private final int limit;
+        private final int parallelism;
+        private final int retries;
+        /** The windows not yet handed on, newest first. */
+        private final LinkedList<Window<T>> windows;
+        /** The end of the next window to add, windows are added back to 'start'. */
+        private long next;
+        /** The size of the next window to add. */
+        private long size;
+        private int inFlight;
+        private int count;
+
+        Read(final CompositeRequest<Integer> result,
+             final Class<T> clazz,
+             final ItemListener<Event<T>> listener,
+             final long size) {
+            this.result = result;
+            this.clazz = clazz;
+            this.listener = listener;
+            this.limit = EventRangeResource.this.limit;
+            this.parallelism = EventRangeResource.this.parallelism;
+            this.retries = EventRangeResource.this.retries;
+            this.windows = new LinkedList<Window<T>>();
+            this.next = end;
+            this.size = size;
+            this.inFlight = 0;
+            this.count = 0;
+        }
+
+        synchronized void fill() {
+            while (!result.isDone() && inFlight < parallelism) {
+                Window<T> window = null;
+                for (final Window<T> w : windows) {
+                    if (w.events == null && !w.inFlight) {
+                        window = w;
+                        break;
+                    }
+                }
+                if (window == null && next > start && windows.size() < parallelism) {
+                    window = new Window<T>(Math.max(start, next - size), next, limit);
+                    next = window.from;
+                    windows.add(window);
+                }
+                if (window == null) {
+                    break;
+                }
+                fetch(window);
+            }
+            if (!result.isDone() && windows.isEmpty() && next <= start) {
+                result.complete(count);
+            }
+        }
+
+        private void fetch(final Window<T> window) {
+            window.inFlight = true;
+            window.attempts++;
+            inFlight++;
+            final OrchestrateRequest<EventList<T>> request = events.list(clazz, window.from, window.to, window.limit);
+            if (!result.track(request)) {
+                return;
+            }
+            request.on(new ResponseListener<EventList<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.untrack(request);
+                    failed(window, error);
+                }
+
+                @Override
+                public void onSuccess(final EventList<T> page) {
+                    result.untrack(request);
+                    read(window, page);
+                }
+            });
+        }
+
+        private synchronized void failed(final Window<T> window, final Throwable error) {
+            window.inFlight = false;
+            inFlight--;
+            if (window.dropped) {
+                fill();
+                return;
+            }
+            if (window.attempts > retries) {
+                result.fail(error);
+                return;
+            }
+            fill();
+        }
+
+        private synchronized void read(final Window<T> window, final EventList<T> page) {
+            window.inFlight = false;
+            inFlight--;
+            if (window.dropped) {
+                fill();
+                return;
+            }
+
+            final List<Event<T>> found = new ArrayList<Event<T>>(window.limit);
+            for (final Event<T> event : page) {
+                found.add(event);
+            }
+            if (found.size() >= window.limit) {
+                // the window may have more events than were returned
+                if (window.to - window.from <= 1) {
+                    if (window.limit >= MAX_LIMIT) {
+                        result.fail(new ClientException("More than " + MAX_LIMIT
+                                + " events at timestamp " + window.from + ", they can't be paged through."));
+                        return;
+                    }
+                    // a single millisecond can't be split, read it with the largest limit
+                    window.limit = MAX_LIMIT;
+                    window.attempts = 0;
+                    fill();
+                    return;
+                }
+                split(window);
+                size = Math.max(1, size / 2);
+            } else {
+                window.events = found;
+                resize(window, found.size());
+                emit();
+            }
+            fill();
+        }
+
+        /**
+         * Split the {@code window} in half, giving up the oldest windows to
+         * keep the number of windows within the 'parallelism'.
+         */
+        private void split(final Window<T> window) {
+            final long middle = window.from + ((window.to - window.from) / 2);
+            while (windows.size() >= parallelism && windows.getLast() != window) {
+                final Window<T> oldest = windows.removeLast();
+                oldest.dropped = true;
+                next = oldest.to;
+            }
+            final ListIterator<Window<T>> iter = windows.listIterator();
+            while (iter.hasNext()) {
+                if (iter.next() == window) {
+                    iter.set(new Window<T>(middle, window.to, limit));
+                    if (windows.size() < parallelism) {
+                        iter.add(new Window<T>(window.from, middle, limit));
+                    } else {
+                        // the window is the oldest, its older half is read later
+                        next = middle;
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void resize(final Window<T> window, final int found) {
+            final long width = window.to - window.from;
+            final long target = limit / 2;
+            // grow at most twofold at a time, shrink to fit what was found
+            final long fitted = (found == 0) ? width * 2 : (width * target) / found;
+            size = Math.max(1, Math.min(fitted, width * 2));
+        }
+
+        private void emit() {
+            while (!windows.isEmpty() && windows.getFirst().events != null) {
+                final Window<T> window = windows.removeFirst();
+                for (final Event<T> event : window.events) {
+                    try {
+                        listener.onItem(event);
+                    } catch (final RuntimeException e) {
+                        result.fail(e);
+                        return;
+                    }
+                    count++;
+                }
+            }
+        }
+
+    }
+
+}
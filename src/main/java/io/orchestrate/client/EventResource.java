@@ -27,6 +27,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -88,23 +89,12 @@ public class EventResource extends BaseResource {
         checkNotNull(clazz, "clazz");
         checkNotNull(type, "type");
 
-        final String uri = client.uri(collection, key, "events", type);
+        return list(clazz, start, end, null);
+    }
 
-        final HttpRequestPacket.Builder httpHeaderBuilder = HttpRequestPacket.builder()
-                .method(Method.GET)
-                .uri(uri);
-        String query = null;
-        if (start != null) {
-            query += "start=" + start;
-        }
-        if (end != null) {
-            query += "&end=" + end;
-        }
-        httpHeaderBuilder.query(query);
-
-        final HttpContent packet = httpHeaderBuilder.build()
-                .httpContentBuilder()
-                .build();
+    <T> OrchestrateRequest<EventList<T>> list(
+            final Class<T> clazz, @Nullable final Long start, @Nullable final Long end, @Nullable final Integer limit) {
+        final HttpContent packet = getPacket(start, end, limit);
 
         return new OrchestrateRequest<EventList<T>>(client, packet, new ResponseConverter<EventList<T>>() {
             @Override
@@ -119,22 +109,102 @@ public class EventResource extends BaseResource {
 
                 final Iterator<JsonNode> iter = jsonNode.get("results").elements();
                 while (iter.hasNext()) {
-                    final JsonNode result = iter.next();
+                    events.add(toEvent(iter.next(), clazz));
+                }
+                return new EventList<T>(events);
+            }
 
-                    final long timestamp = result.get("timestamp").asLong();
-                    final String ordinal = result.get("ordinal").asText();
+        });
+    }
 
-                    final JsonNode valueNode = result.get("value");
-                    final String rawValue = valueNode.toString();
+    /**
+     * Fetch events for a key in the Orchestrate service, and hand each event to
+     * the {@code listener} as soon as it has been read from the response,
+     * before the rest of the events have arrived.
+     *
+     * <p>The events are never buffered, the {@code EventList} the request
+     * completes with is empty.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * client.event("someCollection", "someKey")
+     *       .type("eventType")
+     *       .get(DomainObject.class, new ItemListener<Event<DomainObject>>() {
+     *           public void onItem(Event<DomainObject> event) {
+     *               ...
+     *           }
+     *       })
+     *       .get();
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param listener The listener for each event.
+     * @param <T> The type to deserialize the result of the request to.
+     * @return The prepared get request.
+     */
+    public <T> OrchestrateRequest<EventList<T>> get(
+            final Class<T> clazz, final ItemListener<Event<T>> listener) {
+        checkNotNull(clazz, "clazz");
+        checkNotNull(type, "type");
+        checkNotNull(listener, "listener");
 
-                    final T value = toDomainObject(rawValue, clazz);
+        final HttpContent packet = getPacket(start, end, null);
 
-                    events.add(new Event<T>(value, rawValue, timestamp, ordinal));
-                }
-                return new EventList<T>(events);
+        final ResultsSplitter splitter = new ResultsSplitter() {
+            @Override
+            void onResult(final byte[] json, final int length) throws IOException {
+                listener.onItem(toEvent(codecs.read(json, 0, length, JsonNode.class), clazz));
             }
+        };
 
-        });
+        return new OrchestrateRequest<EventList<T>>(client, packet, new ResponseConverter<EventList<T>>() {
+            @Override
+            public EventList<T> from(final HttpContent response) throws IOException {
+                final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
+                assert (status == 200);
+
+                return new EventList<T>(Collections.<Event<T>>emptyList());
+            }
+        }, splitter, true);
+    }
+
+    private HttpContent getPacket(@Nullable final Long start, @Nullable final Long end, @Nullable final Integer limit) {
+        final String uri = client.uri(collection, key, "events", type);
+
+        final HttpRequestPacket.Builder httpHeaderBuilder = HttpRequestPacket.builder()
+                .method(Method.GET)
+                .uri(uri);
+        final StringBuilder query = new StringBuilder();
+        if (start != null) {
+            query.append("start=").append(start);
+        }
+        if (end != null) {
+            query.append((query.length() > 0) ? "&" : "").append("end=").append(end);
+        }
+        if (limit != null) {
+            query.append((query.length() > 0) ? "&" : "").append("limit=").append(limit);
+        }
+        if (query.length() > 0) {
+            httpHeaderBuilder.query(query.toString());
+        }
+
+        return httpHeaderBuilder.build()
+                .httpContentBuilder()
+                .build();
+    }
+
+    private <T> Event<T> toEvent(final JsonNode result, final Class<T> clazz) throws IOException {
+        final long timestamp = result.get("timestamp").asLong();
+        final String ordinal = result.get("ordinal").asText();
+
+        final JsonNode valueNode = result.get("value");
+        final String rawValue = valueNode.toString();
+
+        final T value = toDomainObject(rawValue, clazz);
+
+        return new Event<T>(value, rawValue, timestamp, ordinal);
     }
 
     /**
@@ -195,6 +265,35 @@ public class EventResource extends BaseResource {
         });
     }
 
+    /**
+     * Read the events in the time range from 'start' to 'end' as a number of
+     * smaller time windows that are fetched concurrently.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * int count =
+     *         client.event("someCollection", "someKey")
+     *               .type("eventType")
+     *               .start(yearAgo)
+     *               .end(now)
+     *               .range()
+     *               .parallelism(8)
+     *               .get(DomainObject.class, listener)
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @return The event range resource.
+     */
+    public EventRangeResource range() {
+        checkNotNull(type, "type");
+        checkArgument(start != null && end != null, "'start' and 'end' are required to read a range.");
+        checkArgument(start < end, "'start' must be before 'end'.");
+
+        return new EventRangeResource(this, start, end);
+    }
+
     /**
      * The type for an event, e.g. "update" or "tweet" etc.
      *
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * The listener for receiving each item of a response as soon as it has been
+ * read, before the rest of the response has arrived.
+ *
+ * <p>Completion and failure of the response as a whole are signalled on the
+ * request the listener was given to.
+ *
+ * @param <T> The type of the items.
+ */
+public interface ItemListener<T> {
+
+    /**
+     * Invoked for each item, in the order the items appear in the response.
+     *
+     * @param item The item that was read.
+     */
+    public void onItem(final T item);
+
+}
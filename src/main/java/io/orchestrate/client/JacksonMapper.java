@@ -20,6 +20,11 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.*;
 import lombok.NonNull;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * A utility object to configure a Jackson JSON {@code ObjectMapper}.
  *
@@ -36,6 +41,8 @@ public final class JacksonMapper {
 
     /** The builder for this instance of the mapper. */
     private final Builder builder;
+    /** The cached (de)serializers for the domain types. */
+    private final CodecRegistry codecs;
 
     /**
      * Create a new {@code JacksonMapper} with default settings.
@@ -48,12 +55,20 @@ public final class JacksonMapper {
         assert (builder != null);
 
         this.builder = builder;
+        this.codecs = new CodecRegistry(builder.objectMapper, builder.codecs);
+        for (final Class<?> clazz : builder.preloads) {
+            codecs.preload(clazz);
+        }
     }
 
     ObjectMapper getMapper() {
         return builder.objectMapper;
     }
 
+    CodecRegistry getCodecs() {
+        return codecs;
+    }
+
     /**
      * A new builder to create a {@code JacksonMapper} with default settings.
      *
@@ -84,6 +99,8 @@ public final class JacksonMapper {
      *         .registerModule(new JodaModule())
      *         .enable(JsonGenerator.Feature.ESCAPE_NON_ASCII)
      *         .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+     *         .preload(DomainObject.class)
+     *         .codec(Point.class, new PointCodec())
      *         .build();
      * }
      * </pre>
@@ -92,6 +109,10 @@ public final class JacksonMapper {
 
         /** The configurable JSON mapper. */
         private final ObjectMapper objectMapper;
+        /** The hand-written codecs, keyed by the type they handle. */
+        private final Map<Class<?>, JsonCodec<?>> codecs;
+        /** The types to resolve (de)serializers for when the mapper is built. */
+        private final Set<Class<?>> preloads;
 
         private Builder() {
             this(new ObjectMapper());
@@ -101,6 +122,41 @@ public final class JacksonMapper {
             assert (objectMapper != null);
 
             this.objectMapper = objectMapper;
+            this.codecs = new LinkedHashMap<Class<?>, JsonCodec<?>>();
+            this.preloads = new LinkedHashSet<Class<?>>();
+        }
+
+        /**
+         * Register a hand-written streaming {@code JsonCodec} for the type,
+         * values of exactly this type will be read and written with the codec
+         * instead of the Jackson databind (de)serializers.
+         *
+         * @param clazz The type handled by the codec.
+         * @param codec The codec for the type.
+         * @param <T> The type handled by the codec.
+         * @return This builder.
+         */
+        public <T> Builder codec(final @NonNull Class<T> clazz, final @NonNull JsonCodec<T> codec) {
+            codecs.put(clazz, codec);
+            return this;
+        }
+
+        /**
+         * Resolve the (de)serializers for the types when the mapper is built,
+         * rather than on the first request that reads or writes them.
+         *
+         * @param classes The domain types to resolve (de)serializers for.
+         * @return This builder.
+         */
+        public Builder preload(final @NonNull Class<?>... classes) {
+            if (classes.length < 1) {
+                throw new IllegalArgumentException("'classes' cannot be empty.");
+            }
+
+            for (final Class<?> clazz : classes) {
+                preloads.add(clazz);
+            }
+            return this;
         }
 
         /**
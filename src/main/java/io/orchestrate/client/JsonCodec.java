@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * A hand-written streaming codec for a domain type, used in place of the
+ * Jackson databind (de)serializers for that type.
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * JacksonMapper mapper = JacksonMapper.builder()
+ *         .codec(Point.class, new JsonCodec<Point>() {
+ *             public Point read(JsonParser parser) throws IOException {
+ *                 ...
+ *             }
+ *
+ *             public void write(Point value, JsonGenerator generator) throws IOException {
+ *                 ...
+ *             }
+ *         })
+ *         .build();
+ * }
+ * </pre>
+ *
+ * @param <T> The type this codec reads and writes.
+ * @see JacksonMapper.Builder#codec(Class, JsonCodec)
+ */
+public interface JsonCodec<T> {
+
+    /**
+     * Read a value from the {@code parser}, the parser is positioned on the
+     * first token of the value (e.g. {@code START_OBJECT}) and must be left on
+     * the last token of the value (e.g. the matching {@code END_OBJECT}).
+     *
+     * @param parser The JSON parser to read the value from.
+     * @return The value that was read.
+     * @throws IOException If the value could not be read.
+     */
+    T read(final JsonParser parser) throws IOException;
+
+    /**
+     * Write the {@code value} to the {@code generator}.
+     *
+     * @param value The value to write.
+     * @param generator The JSON generator to write the value to.
+     * @throws IOException If the value could not be written.
+     */
+    void write(final T value, final JsonGenerator generator) throws IOException;
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * A predicate on KV objects, used to select the objects an operation on many
+ * objects applies to.
+ *
+ * @param <T> The deserializable type for the value of the KV objects.
+ */
+public interface KvFilter<T> {
+
+    /**
+     * Whether the operation applies to the {@code kvObject}.
+     *
+     * @param kvObject The KV object to test.
+     * @return {@code true} if the operation applies to the KV object.
+     */
+    public boolean accept(final KvObject<T> kvObject);
+
+}
@@ -15,7 +15,6 @@
  */
 package io.orchestrate.client;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.NonNull;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.http.HttpRequestPacket;
@@ -26,7 +25,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
 import static io.orchestrate.client.Preconditions.checkArgument;
@@ -48,6 +47,10 @@ public class KvListResource extends BaseResource {
     private int limit;
     /** Whether to retrieve the values for the list of objects. */
     private boolean withValues;
+    /** The fields of the values to read, or {@code null} to read all fields. */
+    private @Nullable Projection projection;
+    /** The mapper for the requests of a scan of the collection. */
+    private final JacksonMapper jacksonMapper;
 
     KvListResource(final OrchestrateClient client,
                    final JacksonMapper mapper,
@@ -57,6 +60,7 @@ public class KvListResource extends BaseResource {
         assert (collection.length() > 0);
 
         this.collection = collection;
+        this.jacksonMapper = mapper;
         this.inclusive = false;
         this.limit = 10;
         this.withValues = true;
@@ -84,15 +88,12 @@ public class KvListResource extends BaseResource {
     public <T> OrchestrateRequest<KvList<T>> get(final @NonNull Class<T> clazz) {
         checkArgument(!inclusive || startKey != null, "'inclusive' requires 'startKey' for request.");
 
+        return list(clazz, query(), projection, limit);
+    }
+
+    private <T> OrchestrateRequest<KvList<T>> list(
+            final Class<T> clazz, final String query, @Nullable final Projection projection, final int limit) {
         final String uri = client.uri(collection);
-        String query = "limit=".concat(Integer.toString(limit));
-        query = query.concat("&values=").concat(Boolean.toString(withValues));
-        if (startKey != null) {
-            final String keyName = (inclusive) ? "startKey" : "afterKey";
-            query = query
-                    .concat('&' + keyName + '=')
-                    .concat(client.encode(startKey));
-        }
 
         final HttpContent packet = HttpRequestPacket.builder()
                 .method(Method.GET)
@@ -108,16 +109,23 @@ public class KvListResource extends BaseResource {
                 final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
                 assert (status == 200);
 
-                final JsonNode jsonNode = toJsonNode(response);
+                final List<KvObject<T>> results = new ArrayList<KvObject<T>>(limit);
+                final ResponseConverterUtil.Page page = ResponseConverterUtil.readPage(
+                        codecs, response.getContent(), clazz, projection,
+                        new ResponseConverterUtil.ResultHandler<T>() {
+                            @Override
+                            public void handle(final Result<T> result) {
+                                results.add(result.getKvObject());
+                            }
+                        });
 
                 final OrchestrateRequest<KvList<T>> next;
-                if (jsonNode.has("next")) {
-                    final String page = jsonNode.get("next").asText();
-                    final URI url = URI.create(page);
+                if (page.next != null) {
+                    final URI url = URI.create(page.next);
                     final HttpContent packet = HttpRequestPacket.builder()
                             .method(Method.GET)
                             .uri(uri)
-                            .query(url.getQuery())
+                            .query(url.getRawQuery())
                             .build()
                             .httpContentBuilder()
                             .build();
@@ -125,17 +133,179 @@ public class KvListResource extends BaseResource {
                 } else {
                     next = null;
                 }
-                final int count = jsonNode.get("count").asInt();
-                final List<KvObject<T>> results = new ArrayList<KvObject<T>>(count);
+                return new KvList<T>(results, page.count, next);
+            }
+        });
+    }
 
-                final Iterator<JsonNode> iter = jsonNode.get("results").elements();
-                while (iter.hasNext()) {
-                    results.add(toKvObject(iter.next(), clazz));
-                }
+    /**
+     * Fetch a paginated, lexicographically ordered list of items contained in a
+     * collection, and hand each item to the {@code listener} as soon as it has
+     * been read from the response, before the rest of the page has arrived.
+     *
+     * <p>The page itself is never buffered, the {@code KvList} the request
+     * completes with contains no results but is used to get the next page, the
+     * items of which are handed to the same listener.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * KvList<DomainObject> page =
+     *         client.listCollection("someCollection")
+     *               .limit(100)
+     *               .get(DomainObject.class, new ItemListener<KvObject<DomainObject>>() {
+     *                   public void onItem(KvObject<DomainObject> kvObject) {
+     *                       ...
+     *                   }
+     *               })
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param listener The listener for each item in the page.
+     * @param <T> The type to deserialize the result of the request to.
+     * @return The prepared get request.
+     */
+    public <T> OrchestrateRequest<KvList<T>> get(
+            final @NonNull Class<T> clazz, final @NonNull ItemListener<KvObject<T>> listener) {
+        checkArgument(!inclusive || startKey != null, "'inclusive' requires 'startKey' for request.");
+
+        return streamPage(client.uri(collection), query(), clazz, projection, listener, true);
+    }
+
+    /**
+     * Iterate over the pages of a lexicographically ordered list of items
+     * contained in a collection, keeping up to {@code prefetch} pages in flight
+     * ahead of the page being handled.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * Paginator<KvList<DomainObject>> pages =
+     *         client.listCollection("someCollection")
+     *               .limit(100)
+     *               .paginate(DomainObject.class, 2);
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param prefetch The number of pages to fetch ahead of the consumer.
+     * @param <T> The type to deserialize the result of the request to.
+     * @return The paginator over the pages of the list.
+     */
+    public <T> Paginator<KvList<T>> paginate(final @NonNull Class<T> clazz, final int prefetch) {
+        checkArgument(prefetch > 0, "'prefetch' must be greater than zero.");
+
+        return pages(get(clazz), prefetch);
+    }
+
+    /**
+     * Iterate over all the items in a collection, in lexicographic order of
+     * their keys, with the pages of the list fetched as they're needed.
+     *
+     * <p>Each page is dropped as soon as its items have been iterated, with the
+     * page after it fetched in the background, so no more than two pages are
+     * held in memory no matter the size of the collection. Each call to {@code
+     * iterator()} starts over from the first page.
+     *
+     * <p>The request for the next page is in flight while a page is iterated,
+     * so an iterator that is given up before its last item should be closed to
+     * cancel it.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * PagedIterable<KvObject<DomainObject>> objects =
+     *         client.listCollection("someCollection")
+     *               .limit(100)
+     *               .stream(DomainObject.class);
+     * for (KvObject<DomainObject> kvObject : objects) {
+     *     ...
+     * }
+     *
+     * // or, to stop early
+     * try (PagedIterator<KvObject<DomainObject>> iter = objects.iterator()) {
+     *     while (iter.hasNext()) {
+     *         ...
+     *     }
+     * }
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param <T> The type to deserialize the result of the request to.
+     * @return The items in the collection.
+     */
+    public <T> PagedIterable<KvObject<T>> stream(final @NonNull Class<T> clazz) {
+        checkArgument(!inclusive || startKey != null, "'inclusive' requires 'startKey' for request.");
 
-                return new KvList<T>(results, count, next);
+        final String query = query();
+        final Projection projection = this.projection;
+        final int limit = this.limit;
+        return new PagedIterable<KvObject<T>>() {
+            @Override
+            public PagedIterator<KvObject<T>> iterator() {
+                return new PagedIterator<KvObject<T>>(pages(list(clazz, query, projection, limit), 1));
             }
-        });
+        };
+    }
+
+    private static <T> Paginator<KvList<T>> pages(final OrchestrateRequest<KvList<T>> first, final int prefetch) {
+        return new Paginator<KvList<T>>(first, prefetch) {
+            @Override
+            OrchestrateRequest<KvList<T>> nextOf(final KvList<T> page) {
+                return page.getNext();
+            }
+        };
+    }
+
+    private <T> OrchestrateRequest<KvList<T>> streamPage(
+            final String uri, final String query, final Class<T> clazz,
+            @Nullable final Projection projection, final ItemListener<KvObject<T>> listener,
+            final boolean sendImmediate) {
+        final HttpContent packet = HttpRequestPacket.builder()
+                .method(Method.GET)
+                .uri(uri)
+                .query(query)
+                .build()
+                .httpContentBuilder()
+                .build();
+
+        final ResultsSplitter splitter = new ResultsSplitter() {
+            @Override
+            void onResult(final byte[] json, final int length) throws IOException {
+                listener.onItem(ResponseConverterUtil.readResult(codecs, json, length, clazz, projection)
+                        .getKvObject());
+            }
+        };
+
+        return new OrchestrateRequest<KvList<T>>(client, packet, new ResponseConverter<KvList<T>>() {
+            @Override
+            public KvList<T> from(final HttpContent response) throws IOException {
+                final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
+                assert (status == 200);
+
+                final ResponseConverterUtil.Page page = ResponseConverterUtil.readEnvelope(codecs, splitter);
+                final OrchestrateRequest<KvList<T>> next = (page.next != null)
+                        ? streamPage(uri, URI.create(page.next).getRawQuery(), clazz, projection, listener, false)
+                        : null;
+
+                return new KvList<T>(Collections.<KvObject<T>>emptyList(), page.count, next);
+            }
+        }, splitter, sendImmediate);
+    }
+
+    private String query() {
+        String query = "limit=".concat(Integer.toString(limit));
+        query = query.concat("&values=").concat(Boolean.toString(withValues));
+        if (startKey != null) {
+            final String keyName = (inclusive) ? "startKey" : "afterKey";
+            query = query
+                    .concat('&' + keyName + '=')
+                    .concat(client.encodeKey(startKey));
+        }
+        return query;
     }
 
     /**
@@ -179,6 +349,44 @@ public class KvListResource extends BaseResource {
         return this;
     }
 
+    /**
+     * Read only the specified fields of the values in the results, all other
+     * fields are skipped while the response is parsed. A field in a nested
+     * object is given by its path, e.g. {@code "address.city"}.
+     *
+     * <p>The projected fields are decoded into the type requested in {@link
+     * #get(Class)}, to read them into a compact map request {@code Map.class}.
+     *
+     * @param fields The paths of the fields to read.
+     * @return The KV list resource.
+     */
+    public KvListResource project(final String... fields) {
+        this.projection = Projection.of(fields);
+
+        return this;
+    }
+
+    /**
+     * Scan all the items in the collection with several list requests in
+     * parallel, each over a range of the key space. The 'limit', 'withValues',
+     * 'startKey' and projection settings of this resource apply to the scan.
+     *
+     * @return The KV scan resource.
+     * @see KvScanResource#get(Class, ItemListener)
+     */
+    public KvScanResource scan() {
+        checkArgument(!inclusive || startKey != null, "'inclusive' requires 'startKey' for request.");
+
+        return new KvScanResource(
+                client, jacksonMapper, collection, startKey, inclusive, limit, withValues, projection);
+    }
+
+    KvListResource projection(@Nullable final Projection projection) {
+        this.projection = projection;
+
+        return this;
+    }
+
     /**
      * The start of the key range to paginate from including the specified value
      * if it exists.
@@ -40,6 +40,10 @@ public class KvResource extends BaseResource {
     private boolean ifAbsent;
     /** The last known version of the stored object. */
     private String objectRef;
+    /** Whether a get request may share an identical request in flight. */
+    private boolean coalesce;
+    /** Whether a get request may be answered from the near cache. */
+    private boolean cache;
 
     KvResource(final OrchestrateClient client,
                final JacksonMapper mapper,
@@ -55,6 +59,8 @@ public class KvResource extends BaseResource {
         this.key = key;
         this.ifAbsent = false;
         this.objectRef = null;
+        this.coalesce = true;
+        this.cache = true;
     }
 
     /**
@@ -99,13 +105,14 @@ public class KvResource extends BaseResource {
         }
 
         final HttpContent packet = builder.build().httpContentBuilder().build();
-        return new OrchestrateRequest<Boolean>(client, packet, new ResponseConverter<Boolean>() {
+        final ResponseConverter<Boolean> converter = new ResponseConverter<Boolean>() {
             @Override
             public Boolean from(final HttpContent response) throws IOException {
                 final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
                 return (status == HttpStatus.NO_CONTENT_204.getStatusCode());
             }
-        });
+        };
+        return client.invalidating(uri, new OrchestrateRequest<Boolean>(client, packet, converter));
     }
 
     /**
@@ -145,22 +152,70 @@ public class KvResource extends BaseResource {
                 .httpContentBuilder()
                 .build();
 
-        return new OrchestrateRequest<KvObject<T>>(client, packet, new ResponseConverter<KvObject<T>>() {
+        final ResponseConverter<KvObject<T>> converter = converter(clazz, null);
+        if (ref != null) {
+            // the object at a ref never changes, so a cached copy is never stale
+            final KvObject<T> cached = client.cachedRef(uri, clazz);
+            if (cached != null) {
+                return new OrchestrateRequest<KvObject<T>>(client, packet, cached);
+            }
+            return client.cachingRef(uri, clazz, fetch(uri, packet, clazz, converter));
+        }
+        if (!cache) {
+            return fetch(uri, packet, clazz, converter);
+        }
+        return client.cached(uri, packet, clazz, new NearCache.Loader<T>() {
             @Override
-            public KvObject<T> from(final HttpContent response) throws IOException {
-                final HttpHeader header = response.getHttpHeader();
-                final int status = ((HttpResponsePacket) header).getStatus();
-
-                if (status == 404) {
-                    // maybe one day we can return an optional type
-                    return null;
+            public OrchestrateRequest<KvObject<T>> load(@Nullable final KvObject<T> stale) {
+                if (stale == null) {
+                    return fetch(uri, packet, clazz, converter);
                 }
-
-                return toKvObject(response, collection, key, clazz);
+                // revalidate the cached object, its body is only sent again if it has changed
+                final HttpContent conditional = HttpRequestPacket.builder()
+                        .method(Method.GET)
+                        .uri(uri)
+                        .header(Header.IfNoneMatch, "\"".concat(stale.getRef()).concat("\""))
+                        .build()
+                        .httpContentBuilder()
+                        .build();
+                return new OrchestrateRequest<KvObject<T>>(client, conditional, converter(clazz, stale));
             }
         });
     }
 
+    /**
+     * Whether a get request may be answered from the near cache of the client,
+     * when the client is built with {@code nearCache(...)}. Defaults to {@code
+     * true}, set it to {@code false} for a read that must see the writes made
+     * by other clients.
+     *
+     * <p>An object returned from the near cache is shared with every other
+     * caller that reads it from the cache, it must not be changed.
+     *
+     * @param cache If {@code false} always read from the service.
+     * @return This KV resource.
+     * @see OrchestrateClient.Builder#nearCache(int, long, java.util.concurrent.TimeUnit)
+     */
+    public KvResource cache(final boolean cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Whether a get request may share an identical get request that's already
+     * in flight, when the client is built with {@code coalesceGets(true)}.
+     * Defaults to {@code true}, set it to {@code false} for a read that must
+     * see the writes made before it.
+     *
+     * @param coalesce If {@code false} always make a request of its own.
+     * @return This KV resource.
+     * @see OrchestrateClient.Builder#coalesceGets(boolean)
+     */
+    public KvResource coalesce(final boolean coalesce) {
+        this.coalesce = coalesce;
+        return this;
+    }
+
     /**
      * Equivalent to {@code this.ifAbsent(Boolean.TRUE)}.
      *
@@ -235,7 +290,7 @@ public class KvResource extends BaseResource {
                 .httpContentBuilder()
                 .content(new ByteBufferWrapper(ByteBuffer.wrap(content)))
                 .build();
-        return new OrchestrateRequest<KvMetadata>(client, packet, new ResponseConverter<KvMetadata>() {
+        final ResponseConverter<KvMetadata> converter = new ResponseConverter<KvMetadata>() {
             @Override
             public KvMetadata from(final HttpContent response) throws IOException {
                 final HttpHeader header = response.getHttpHeader();
@@ -249,7 +304,37 @@ public class KvResource extends BaseResource {
                 }
                 return null;
             }
-        });
+        };
+        return client.invalidating(uri, new OrchestrateRequest<KvMetadata>(client, packet, converter));
+    }
+
+    private <T> OrchestrateRequest<KvObject<T>> fetch(
+            final String uri, final HttpContent packet, final Class<T> clazz,
+            final ResponseConverter<KvObject<T>> converter) {
+        if (coalesce) {
+            return client.coalesce(uri, clazz, packet, converter);
+        }
+        return new OrchestrateRequest<KvObject<T>>(client, packet, converter);
+    }
+
+    private <T> ResponseConverter<KvObject<T>> converter(final Class<T> clazz, @Nullable final KvObject<T> stale) {
+        return new ResponseConverter<KvObject<T>>() {
+            @Override
+            public KvObject<T> from(final HttpContent response) throws IOException {
+                final HttpHeader header = response.getHttpHeader();
+                final int status = ((HttpResponsePacket) header).getStatus();
+
+                if (status == 404) {
+                    // maybe one day we can return an optional type
+                    return null;
+                }
+                if (status == 304 && stale != null) {
+                    return stale;
+                }
+
+                return toKvObject(response, collection, key, clazz);
+            }
+        };
     }
 
 }
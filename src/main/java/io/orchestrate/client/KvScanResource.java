@@ -0,0 +1,489 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNoneEmpty;
+import static io.orchestrate.client.Preconditions.checkNotNull;
+
+/**
+ * The resource for scanning all the items in a collection in parallel, the key
+ * space is split into ranges and the ranges are listed concurrently.
+ */
+public class KvScanResource {
+
+    /** The characters a key is probed with when sampling the key space. */
+    private static final String PROBE_CHARS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    /** The Orchestrate client to make requests with. */
+    private final OrchestrateClient client;
+    /** The mapper for the list requests of the ranges. */
+    private final JacksonMapper mapper;
+    /** The collection to scan. */
+    private final String collection;
+    /** The key to start the scan from. */
+    private final @Nullable String startKey;
+    /** Include the "startKey" in the scan if it exists. */
+    private final boolean inclusive;
+    /** The number of KV objects to request per page. */
+    private final int limit;
+    /** Whether to retrieve the values of the KV objects. */
+    private final boolean withValues;
+    /** The fields of the values to read, or {@code null} to read all fields. */
+    private final @Nullable Projection projection;
+    /** The keys to split the key space at. */
+    private @Nullable String[] splitPoints;
+    /** The number of ranges to split a sampled key space into. */
+    private int sampleRanges;
+    /** The common prefix of the keys to probe when sampling. */
+    private String samplePrefix;
+    /** The number of ranges to scan at the same time. */
+    private int parallelism;
+    /** Whether to hand on the KV objects in key order. */
+    private boolean ordered;
+
+    KvScanResource(final OrchestrateClient client,
+                   final JacksonMapper mapper,
+                   final String collection,
+                   @Nullable final String startKey,
+                   final boolean inclusive,
+                   final int limit,
+                   final boolean withValues,
+                   @Nullable final Projection projection) {
+        assert (client != null);
+        assert (mapper != null);
+        assert (collection != null);
+
+        this.client = client;
+        this.mapper = mapper;
+        this.collection = collection;
+        this.startKey = startKey;
+        this.inclusive = inclusive;
+        this.limit = limit;
+        this.withValues = withValues;
+        this.projection = projection;
+        this.splitPoints = null;
+        this.sampleRanges = 0;
+        this.samplePrefix = "";
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.ordered = false;
+    }
+
+    /**
+     * Scan the collection and hand each KV object to the {@code listener}, the
+     * request completes with the number of KV objects scanned.
+     *
+     * <p>In unordered mode (the default) the listener is called from several
+     * threads at the same time. In ordered mode the listener is called with one
+     * KV object at a time in key order, the ranges ahead of the one being
+     * handed on pause after one page until their turn comes. At most
+     * 'parallelism' ranges are started from the one being handed on, so at
+     * most a page per range is held back for each of them.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * long count =
+     *         client.listCollection("someCollection")
+     *               .limit(100)
+     *               .scan()
+     *               .splitPoints("g", "n", "t")
+     *               .parallelism(4)
+     *               .get(DomainObject.class, new ItemListener<KvObject<DomainObject>>() {
+     *                   public void onItem(KvObject<DomainObject> kvObject) {
+     *                       ...
+     *                   }
+     *               })
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for marshalling objects at runtime.
+     * @param listener The listener for each KV object in the collection.
+     * @param <T> The type to deserialize the KV objects to.
+     * @return The scan request.
+     */
+    public <T> CompositeRequest<Long> get(
+            final @NonNull Class<T> clazz, final @NonNull ItemListener<KvObject<T>> listener) {
+        final Scan<T> scan = new Scan<T>(clazz, listener, ordered, parallelism);
+        if (sampleRanges > 0) {
+            sample(scan, sampleRanges, samplePrefix);
+        } else {
+            final String[] splits = (splitPoints != null) ? splitPoints : new String[0];
+            scan.start(new TreeSet<String>(Arrays.asList(splits)));
+        }
+        return scan.result;
+    }
+
+    /**
+     * Whether to hand on the KV objects in key order, defaults to {@code false}.
+     *
+     * @param ordered If {@code true} hand on the KV objects in key order.
+     * @return This scan resource.
+     */
+    public KvScanResource ordered(final boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * The number of ranges to scan at the same time, defaults to {@link
+     * Runtime#availableProcessors()}.
+     *
+     * @param parallelism The number of ranges to scan at the same time.
+     * @return This scan resource.
+     */
+    public KvScanResource parallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "'parallelism' must be greater than zero.");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * {@link #sample(int, String)}.
+     */
+    public KvScanResource sample(final int ranges) {
+        return sample(ranges, "");
+    }
+
+    /**
+     * Split the key space into (up to) {@code ranges} ranges at keys sampled
+     * from the collection. The keys are sampled by listing the first key, with
+     * no value, after each of {@code prefix} followed by a letter or digit,
+     * with up to 'parallelism' of these probes in flight at the same time.
+     *
+     * <p>Keys that share a long common prefix (e.g. "user-123") are only
+     * spread out by sampling with that prefix.
+     *
+     * @param ranges The number of ranges to split the key space into.
+     * @param prefix The common prefix of the keys in the collection.
+     * @return This scan resource.
+     */
+    public KvScanResource sample(final int ranges, final @NonNull String prefix) {
+        checkArgument(ranges > 0, "'ranges' must be greater than zero.");
+        checkArgument(splitPoints == null, "'splitPoints' and 'sample' cannot be used together.");
+
+        this.sampleRanges = ranges;
+        this.samplePrefix = prefix;
+        return this;
+    }
+
+    /**
+     * Split the key space into ranges at the specified keys, each range starts
+     * at (and includes) one of the keys and stops before the next.
+     *
+     * @param splitPoints The keys to split the key space at.
+     * @return This scan resource.
+     */
+    public KvScanResource splitPoints(final String... splitPoints) {
+        checkNoneEmpty(splitPoints, "splitPoints", "splitPoint");
+        checkArgument(sampleRanges == 0, "'splitPoints' and 'sample' cannot be used together.");
+
+        this.splitPoints = splitPoints.clone();
+        return this;
+    }
+
+    private void sample(final Scan<?> scan, final int ranges, final String prefix) {
+        final Sample sample = new Sample(scan, ranges, prefix);
+        for (int i = 0; i < scan.parallelism; i++) {
+            sample.probeNext();
+        }
+    }
+
+    private static SortedSet<String> choose(final List<String> sampled, final int ranges) {
+        final SortedSet<String> splits = new TreeSet<String>();
+        if (sampled.size() < ranges) {
+            splits.addAll(sampled);
+        } else {
+            // pick evenly spaced keys, the first range starts before the
+            // smallest sampled key so there's no split there
+            for (int i = 1; i < ranges; i++) {
+                splits.add(sampled.get((i * sampled.size()) / ranges));
+            }
+        }
+        return splits;
+    }
+
+    private KvListResource list(@Nullable final String from, final int limit, final boolean withValues) {
+        final KvListResource list = new KvListResource(client, mapper, collection)
+                .limit(limit)
+                .withValues(withValues)
+                .projection(projection);
+        if (from != null) {
+            list.startKey(from).inclusive(inclusive || !from.equals(startKey));
+        }
+        return list;
+    }
+
+    /**
+     * The probes of the key space for the keys to split it at, with up to
+     * 'parallelism' probes in flight at the same time like the ranges.
+     */
+    private final class Sample {
+
+        final Scan<?> scan;
+        final int ranges;
+        final String prefix;
+        final SortedSet<String> sampled;
+        /** The index of the next character to probe with. */
+        final AtomicInteger nextProbe;
+        /** The number of probes that haven't completed. */
+        final AtomicInteger remaining;
+
+        Sample(final Scan<?> scan, final int ranges, final String prefix) {
+            this.scan = scan;
+            this.ranges = ranges;
+            this.prefix = prefix;
+            this.sampled = Collections.synchronizedSortedSet(new TreeSet<String>());
+            this.nextProbe = new AtomicInteger();
+            this.remaining = new AtomicInteger(PROBE_CHARS.length());
+        }
+
+        void probeNext() {
+            final int index = nextProbe.getAndIncrement();
+            if (index >= PROBE_CHARS.length()) {
+                return;
+            }
+            final OrchestrateRequest<KvList<String>> probe = list(prefix + PROBE_CHARS.charAt(index), 1, false)
+                    .get(String.class);
+            if (!scan.result.track(probe)) {
+                return;
+            }
+            probe.on(new ResponseListener<KvList<String>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    scan.result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final KvList<String> page) {
+                    scan.result.untrack(probe);
+                    for (final KvObject<String> kvObject : page) {
+                        sampled.add(kvObject.getKey());
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        scan.start(choose(new ArrayList<String>(sampled), ranges));
+                    } else {
+                        probeNext();
+                    }
+                }
+            });
+        }
+
+    }
+
+    /**
+     * A range of keys, from the {@code start} key (inclusive) to the {@code
+     * end} key (exclusive).
+     */
+    private static final class Range<T> {
+
+        final int index;
+        final @Nullable String start;
+        final @Nullable String end;
+        /** The KV objects held back until the range's turn, in ordered mode. */
+        final List<KvObject<T>> buffer;
+        /** The request for the next page, held back in ordered mode. */
+        @Nullable OrchestrateRequest<KvList<T>> paused;
+        boolean done;
+
+        Range(final int index, @Nullable final String start, @Nullable final String end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.buffer = new ArrayList<KvObject<T>>();
+        }
+
+    }
+
+    /**
+     * The state of a scan of the ranges of the key space.
+     */
+    private final class Scan<T> {
+
+        final CompositeRequest<Long> result;
+        final Class<T> clazz;
+        final ItemListener<KvObject<T>> listener;
+        final boolean ordered;
+        final int parallelism;
+        final AtomicLong count;
+        /** The ranges in key order. */
+        final List<Range<T>> ranges;
+        /** The ranges that haven't been started. */
+        final Queue<Range<T>> pending;
+        /** The number of ranges that haven't finished. */
+        int remaining;
+        /** The index of the first range that hasn't finished, in ordered mode. */
+        int head;
+
+        Scan(final Class<T> clazz, final ItemListener<KvObject<T>> listener,
+             final boolean ordered, final int parallelism) {
+            this.result = new CompositeRequest<Long>();
+            this.clazz = clazz;
+            this.listener = listener;
+            this.ordered = ordered;
+            this.parallelism = parallelism;
+            this.count = new AtomicLong();
+            this.ranges = new ArrayList<Range<T>>();
+            this.pending = new ArrayDeque<Range<T>>();
+        }
+
+        synchronized void start(final SortedSet<String> splits) {
+            String start = startKey;
+            for (final String split : splits) {
+                if (startKey != null && split.compareTo(startKey) <= 0) {
+                    continue;
+                }
+                ranges.add(new Range<T>(ranges.size(), start, split));
+                start = split;
+            }
+            ranges.add(new Range<T>(ranges.size(), start, null));
+
+            pending.addAll(ranges);
+            remaining = ranges.size();
+            for (int i = 0; i < parallelism && !pending.isEmpty(); i++) {
+                startNext();
+            }
+        }
+
+        private void startNext() {
+            final Range<T> range = pending.poll();
+            fetch(range, list(range.start, limit, withValues).get(clazz));
+        }
+
+        void fetch(final Range<T> range, final OrchestrateRequest<KvList<T>> request) {
+            if (!result.track(request)) {
+                return;
+            }
+            request.on(new ResponseListener<KvList<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final KvList<T> page) {
+                    result.untrack(request);
+                    try {
+                        onPage(range, page);
+                    } catch (final RuntimeException e) {
+                        result.fail(e);
+                    }
+                }
+            }).getAsync();
+        }
+
+        void onPage(final Range<T> range, final KvList<T> page) {
+            boolean reachedEnd = false;
+            for (final KvObject<T> kvObject : page) {
+                if (range.end != null && kvObject.getKey().compareTo(range.end) >= 0) {
+                    reachedEnd = true;
+                    break;
+                }
+                count.incrementAndGet();
+                if (ordered) {
+                    emitInOrder(range, kvObject);
+                } else {
+                    listener.onItem(kvObject);
+                }
+            }
+
+            if (reachedEnd || !page.hasNext()) {
+                finish(range);
+            } else if (ordered) {
+                next(range, page.getNext());
+            } else {
+                fetch(range, page.getNext());
+            }
+        }
+
+        synchronized void emitInOrder(final Range<T> range, final KvObject<T> kvObject) {
+            if (range.index == head) {
+                listener.onItem(kvObject);
+            } else {
+                range.buffer.add(kvObject);
+            }
+        }
+
+        synchronized void next(final Range<T> range, final OrchestrateRequest<KvList<T>> next) {
+            if (range.index == head) {
+                fetch(range, next);
+            } else {
+                // hold the range back until its turn to bound the buffered items
+                range.paused = next;
+            }
+        }
+
+        synchronized void finish(final Range<T> range) {
+            range.done = true;
+            if (--remaining == 0) {
+                if (ordered) {
+                    advance();
+                }
+                result.complete(count.get());
+                return;
+            }
+
+            if (!ordered) {
+                if (!pending.isEmpty()) {
+                    startNext();
+                }
+                return;
+            }
+            advance();
+            // bound the ranges held back to those within 'parallelism' of the head
+            while (!pending.isEmpty() && pending.peek().index < head + parallelism) {
+                startNext();
+            }
+        }
+
+        private void advance() {
+            while (head < ranges.size() && ranges.get(head).done) {
+                head++;
+                if (head < ranges.size()) {
+                    final Range<T> range = ranges.get(head);
+                    for (final KvObject<T> kvObject : range.buffer) {
+                        listener.onItem(kvObject);
+                    }
+                    range.buffer.clear();
+                    if (range.paused != null) {
+                        final OrchestrateRequest<KvList<T>> paused = range.paused;
+                        range.paused = null;
+                        fetch(range, paused);
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The objects fetched for many keys from a collection, with the keys that had
+ * no object reported separately.
+ *
+ * @param <T> The deserializable type for the values of the objects.
+ */
+@ToString
+public final class MultiGetResult<T> {
+
+    /** The objects found, keyed by key in the order they were requested. */
+    private final Map<String, KvObject<T>> objects;
+    /** The keys that weren't found, in the order they were requested. */
+    private final Set<String> missing;
+
+    MultiGetResult(final Map<String, KvObject<T>> objects, final Set<String> missing) {
+        assert (objects != null);
+        assert (missing != null);
+
+        this.objects = Collections.unmodifiableMap(objects);
+        this.missing = Collections.unmodifiableSet(missing);
+    }
+
+    /**
+     * Returns the object for the {@code key}.
+     *
+     * @param key The key of the object.
+     * @return The object, or {@code null} if it wasn't found.
+     */
+    @Nullable
+    public KvObject<T> get(final String key) {
+        return objects.get(key);
+    }
+
+    /**
+     * Returns the objects found, in the order their keys were requested.
+     *
+     * @return The objects found, by key.
+     */
+    public Map<String, KvObject<T>> getObjects() {
+        return objects;
+    }
+
+    /**
+     * Returns the keys that no object was found for.
+     *
+     * @return The keys not found.
+     */
+    public Set<String> getMissing() {
+        return missing;
+    }
+
+}
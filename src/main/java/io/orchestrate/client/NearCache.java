@@ -0,0 +1,498 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.HttpContent;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache of the objects read by KV get requests, kept by the
+ * client in front of the Orchestrate service.
+ *
+ * <p>An entry is served from the cache until its time to live runs out, then
+ * it's revalidated with a conditional get request for its ref. If the object
+ * hasn't changed the service answers "304 Not Modified" without a body, and
+ * the entry is served for another time to live. The least recently used entry
+ * is evicted when the cache is full.
+ *
+ * <p>Writes made through the client invalidate the entry for their object
+ * when they're sent and again when they complete. A read that was in flight
+ * while any write was made isn't cached, so a read never puts an object into
+ * the cache that is older than a write made through the same client.
+ *
+ * <p>The on-heap entries hand the same object and value to every hit, they
+ * aren't copied, so the objects returned must not be changed by the callers.
+ * The objects decoded from the off-heap or disk tiers are new for each hit.
+ *
+ * <p>With an off-heap tier every cached object is also written to an {@link
+ * OffHeapStore} as its raw JSON, and the on-heap entries only hold the most
+ * recently used objects. An object found off-heap is decoded again and moved
+ * back on-heap, so the cache can hold far more objects than the heap could
+ * without adding to the work of the garbage collector.
+ *
+ * <p>With a disk tier every cached object is also written to a {@link
+ * DiskCache}, which is reopened by the next client so that it starts with the
+ * objects read before it. An object found only on disk is served at once, as
+ * its age is unknown, and it's revalidated in the background so that the next
+ * read sees any change.
+ *
+ * <p>The writes to the disk tier are queued in order to a thread of the cache,
+ * so that the compaction and sync of the log never hold up a read or the
+ * thread that received the response. The disk tier isn't read for an object
+ * with a write still queued, as it may be older than the queued write.
+ */
+final class NearCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Makes the get request for an object.
+     *
+     * @param <T> The type of the value of the object.
+     */
+    interface Loader<T> {
+
+        /**
+         * Returns the request for the object, conditional on its ref not
+         * matching the ref of the {@code stale} object.
+         *
+         * @param stale The expired object to revalidate, or {@code null}.
+         * @return The request that completes with the {@code stale} object if
+         *         it hasn't changed.
+         */
+        OrchestrateRequest<KvObject<T>> load(@Nullable final KvObject<T> stale);
+
+    }
+
+    /** The maximum number of entries. */
+    private final int maxEntries;
+    /** The time to live of an entry, in nanoseconds. */
+    private final long ttlNanos;
+    /** The entries in order of access, guarded by itself. */
+    private final Map<String, Entry> entries;
+    /** The number of writes made, read to detect the writes during a read. */
+    private final AtomicLong writes;
+    /** The off-heap tier, or {@code null}, written to with the entries held. */
+    @Nullable
+    private final OffHeapStore offHeap;
+    /** The disk tier, or {@code null}, written to by the disk writer. */
+    @Nullable
+    private final DiskCache disk;
+    /** The thread that writes to the disk tier in the order of the queued writes, or {@code null}. */
+    @Nullable
+    private final ExecutorService diskWriter;
+    /** The number of queued disk writes for each path, guarded by the entries. */
+    private final Map<String, Integer> diskQueued;
+    /** The number of queued clears of the disk tier, guarded by the entries. */
+    private int diskClearsQueued;
+    /** The paths of the objects from disk being revalidated. */
+    private final Set<String> revalidating;
+    /** The codecs to decode the objects read from the other tiers. */
+    private final CodecRegistry codecs;
+    private final CacheMetrics metrics;
+
+    NearCache(final int maxEntries, final long ttlNanos, final long offHeapBytes,
+              @Nullable final DiskCache disk, final CodecRegistry codecs) {
+        assert (maxEntries >= 0);
+        assert (ttlNanos > 0);
+        assert (offHeapBytes >= 0);
+        assert (codecs != null);
+
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.codecs = codecs;
+        this.metrics = new CacheMetrics();
+        this.offHeap = (offHeapBytes > 0) ? new OffHeapStore(offHeapBytes, metrics) : null;
+        this.disk = disk;
+        this.diskWriter = (disk == null) ? null : Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "NearCache-disk");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.diskQueued = new HashMap<String, Integer>();
+        this.diskClearsQueued = 0;
+        this.revalidating = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > NearCache.this.maxEntries;
+            }
+        };
+        this.writes = new AtomicLong();
+    }
+
+    /**
+     * Returns a completed request for the cached object at the {@code uri},
+     * or the request of the {@code loader} whose response will be cached.
+     */
+    @SuppressWarnings("unchecked")
+    <T> OrchestrateRequest<KvObject<T>> get(
+            final OrchestrateClient client, final String uri, final HttpContent packet,
+            final Class<T> clazz, final Loader<T> loader) {
+        assert (uri != null);
+        assert (clazz != null);
+        assert (loader != null);
+
+        final long writesBefore = writes.get();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(uri);
+        }
+        // an entry read as another type is a miss
+        if (entry != null && entry.clazz != clazz) {
+            entry = null;
+        }
+        boolean offHeapHit = false;
+        if (entry == null && offHeap != null) {
+            entry = fromOffHeap(uri, clazz);
+            offHeapHit = (entry != null);
+        }
+        final KvObject<T> cached = (entry != null) ? (KvObject<T>) entry.object : null;
+        if (cached != null && System.nanoTime() - entry.expiresAt < 0) {
+            if (offHeapHit) {
+                synchronized (entries) {
+                    if (writes.get() == writesBefore) {
+                        entries.put(uri, entry);
+                    }
+                }
+            }
+            metrics.hit(offHeapHit);
+            return new OrchestrateRequest<KvObject<T>>(client, packet, cached);
+        }
+
+        if (entry == null && disk != null && !isDiskQueued(uri)) {
+            final KvObject<T> stored = fromDisk(uri, clazz);
+            if (stored != null) {
+                if (revalidating.add(uri)) {
+                    load(uri, clazz, loader, stored, writesBefore).on(new ResponseListener<KvObject<T>>() {
+                        @Override
+                        public void onFailure(final Throwable error) {
+                            revalidating.remove(uri);
+                        }
+
+                        @Override
+                        public void onSuccess(final KvObject<T> object) {
+                            revalidating.remove(uri);
+                        }
+                    });
+                }
+                metrics.diskHit();
+                return new OrchestrateRequest<KvObject<T>>(client, packet, stored);
+            }
+        }
+
+        metrics.missed();
+        return load(uri, clazz, loader, cached, writesBefore);
+    }
+
+    /**
+     * Returns a request that follows the request of the {@code loader}, and
+     * completes once the response is cached in all the tiers unless a write
+     * was made since {@code writesBefore}.
+     */
+    private <T> OrchestrateRequest<KvObject<T>> load(
+            final String uri, final Class<T> clazz, final Loader<T> loader,
+            @Nullable final KvObject<T> stale, final long writesBefore) {
+        // the object is cached before the caller sees it
+        return new OrchestrateRequest<KvObject<T>>(loader.load(stale), new ResponseListener<KvObject<T>>() {
+            @Override
+            public void onFailure(final Throwable error) {
+            }
+
+            @Override
+            public void onSuccess(final KvObject<T> object) {
+                final long expiresAt = System.nanoTime() + ttlNanos;
+                final byte[] record = (object != null && offHeap != null) ? toRecord(object, expiresAt) : null;
+                synchronized (entries) {
+                    if (writes.get() != writesBefore) {
+                        // a write may have been made after the object was read
+                        return;
+                    }
+                    if (object == null) {
+                        remove(uri);
+                        return;
+                    }
+                    entries.put(uri, new Entry(clazz, object, expiresAt));
+                    if (record != null) {
+                        offHeap.put(uri, record);
+                    }
+                    if (disk != null) {
+                        queueDiskWrite(uri, object);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Wraps the {@code request} for a write to the object at the {@code uri}
+     * so that its entry is invalidated when it's sent and when it completes.
+     *
+     * @param uri The path of the object, or {@code null} to invalidate all the
+     *            entries, e.g. for the delete of a collection.
+     */
+    <T> OrchestrateRequest<T> invalidating(@Nullable final String uri, final OrchestrateRequest<T> request) {
+        invalidate(uri);
+        return request.on(new ResponseListener<T>() {
+            @Override
+            public void onFailure(final Throwable error) {
+                invalidate(uri);
+            }
+
+            @Override
+            public void onSuccess(final T object) {
+                invalidate(uri);
+            }
+        });
+    }
+
+    private void invalidate(@Nullable final String uri) {
+        synchronized (entries) {
+            writes.incrementAndGet();
+            if (uri != null) {
+                remove(uri);
+            } else {
+                entries.clear();
+                if (offHeap != null) {
+                    offHeap.clear();
+                }
+                if (disk != null) {
+                    queueDiskWrite(null, null);
+                }
+            }
+        }
+    }
+
+    /** Remove the object at the {@code uri} from all the tiers, with the entries held. */
+    private void remove(final String uri) {
+        entries.remove(uri);
+        if (offHeap != null) {
+            offHeap.remove(uri);
+        }
+        if (disk != null) {
+            queueDiskWrite(uri, null);
+        }
+    }
+
+    /**
+     * Queue a write to the disk tier, with the entries held.
+     *
+     * @param uri The path of the object, or {@code null} to clear the tier.
+     * @param object The object to store, or {@code null} to remove it.
+     */
+    private void queueDiskWrite(@Nullable final String uri, @Nullable final KvObject<?> object) {
+        final DiskWrite write = new DiskWrite(uri, object);
+        queued(uri, 1);
+        try {
+            diskWriter.execute(write);
+        } catch (final RejectedExecutionException e) {
+            // the cache is closed
+            queued(uri, -1);
+        }
+    }
+
+    /** Count a queued disk write, with the entries held. */
+    private void queued(@Nullable final String uri, final int delta) {
+        if (uri == null) {
+            diskClearsQueued += delta;
+            return;
+        }
+        final Integer count = diskQueued.get(uri);
+        final int next = ((count != null) ? count : 0) + delta;
+        if (next > 0) {
+            diskQueued.put(uri, next);
+        } else {
+            diskQueued.remove(uri);
+        }
+    }
+
+    private boolean isDiskQueued(final String uri) {
+        synchronized (entries) {
+            return diskClearsQueued > 0 || diskQueued.containsKey(uri);
+        }
+    }
+
+    CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Close the disk tier, if any, once the queued writes are written so that
+     * it can be reopened by another client.
+     */
+    void close() throws IOException {
+        if (disk != null) {
+            diskWriter.shutdown();
+            try {
+                diskWriter.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            disk.close();
+        }
+    }
+
+    /**
+     * Returns the object decoded from the disk tier for the {@code uri}, or
+     * {@code null} if there's none.
+     */
+    @Nullable
+    private <T> KvObject<T> fromDisk(final String uri, final Class<T> clazz) {
+        final DiskCache.Record record = disk.get(uri);
+        if (record == null) {
+            return null;
+        }
+        final byte[] raw = record.getRawValue();
+        final String rawValue = new String(raw, UTF8);
+        try {
+            @SuppressWarnings("unchecked")
+            final T value = (clazz == String.class) ? (T) rawValue : codecs.read(raw, 0, raw.length, clazz);
+            return new KvObject<T>(record.getCollection(), record.getKey(), record.getRef(), value, rawValue);
+        } catch (final IOException e) {
+            // the value can't be read as this type, read it from the service
+            return null;
+        }
+    }
+
+    /**
+     * Returns the entry decoded from the record of the object at the {@code
+     * uri} in the off-heap tier, or {@code null} if there's none.
+     */
+    @Nullable
+    private <T> Entry fromOffHeap(final String uri, final Class<T> clazz) {
+        final byte[] record = offHeap.get(uri);
+        if (record == null) {
+            return null;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(record);
+        final long expiresAt = buffer.getLong();
+        final String collection = readString(buffer);
+        final String key = readString(buffer);
+        final String ref = readString(buffer);
+        final String rawValue = new String(record, buffer.position(), buffer.remaining(), UTF8);
+        try {
+            @SuppressWarnings("unchecked")
+            final T value = (clazz == String.class)
+                    ? (T) rawValue
+                    : codecs.read(record, buffer.position(), buffer.remaining(), clazz);
+            return new Entry(clazz, new KvObject<T>(collection, key, ref, value, rawValue), expiresAt);
+        } catch (final IOException e) {
+            // the value can't be read as this type, read it from the service
+            return null;
+        }
+    }
+
+    /**
+     * Returns the record of the {@code object} for the off-heap tier, laid out
+     * as {@code [expiresAt][collection][key][ref][raw value]}, or {@code null}
+     * if it has no raw value.
+     */
+    @Nullable
+    private static byte[] toRecord(final KvObject<?> object, final long expiresAt) {
+        if (object.getRawValue() == null) {
+            return null;
+        }
+        final byte[] collection = object.getCollection().getBytes(UTF8);
+        final byte[] key = object.getKey().getBytes(UTF8);
+        final byte[] ref = object.getRef().getBytes(UTF8);
+        final byte[] rawValue = object.getRawValue().getBytes(UTF8);
+        return ByteBuffer.allocate(8 + 12 + collection.length + key.length + ref.length + rawValue.length)
+                .putLong(expiresAt)
+                .putInt(collection.length).put(collection)
+                .putInt(key.length).put(key)
+                .putInt(ref.length).put(ref)
+                .put(rawValue)
+                .array();
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        final String value = new String(buffer.array(), buffer.position(), length, UTF8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /** A write to the disk tier, run by the disk writer. */
+    private final class DiskWrite implements Runnable {
+
+        @Nullable
+        private final String uri;
+        @Nullable
+        private final KvObject<?> object;
+
+        DiskWrite(@Nullable final String uri, @Nullable final KvObject<?> object) {
+            this.uri = uri;
+            this.object = object;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (uri == null) {
+                    disk.clear();
+                } else if (object == null) {
+                    disk.remove(uri);
+                } else {
+                    disk.put(uri, object);
+                }
+            } catch (final IOException ignored) {
+                // the objects left on disk are revalidated when they're read
+            } finally {
+                synchronized (entries) {
+                    queued(uri, -1);
+                }
+            }
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final Class<?> clazz;
+        private final KvObject<?> object;
+        private final long expiresAt;
+
+        Entry(final Class<?> clazz, final KvObject<?> object, final long expiresAt) {
+            this.clazz = clazz;
+            this.object = object;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
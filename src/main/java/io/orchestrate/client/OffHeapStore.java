@@ -0,0 +1,289 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A store of byte records outside of the Java heap, bounded by the number of
+ * bytes it holds.
+ *
+ * <p>The memory is split into equal segments of direct buffers that are filled
+ * one after another like a ring. A record is appended to the segment being
+ * filled, and when the next segment is needed the oldest one is emptied and
+ * all of its records are evicted at once, so the store never fragments and
+ * evicts in the order the records were written.
+ *
+ * <p>The only part of the store on the heap is its index, an open addressing
+ * table of the 64 bit hashes of the keys and the addresses of their records.
+ * Each record holds its key as well, to tell apart keys with the same hash.
+ *
+ * <p>A record is laid out as {@code [length][key length][key][value]}, where
+ * the lengths are 4 byte integers. The store is safe to use from many threads.
+ */
+final class OffHeapStore {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The largest size of a segment, in bytes. */
+    private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+    /** The bytes of a record besides its key and value. */
+    private static final int RECORD_OVERHEAD = 8;
+
+    /** The segments, allocated when they're first filled, guarded by this. */
+    private final ByteBuffer[] segments;
+    /** The number of bytes written to each segment, guarded by this. */
+    private final int[] limits;
+    /** The size of a segment, in bytes. */
+    private final int segmentSize;
+    /** The metrics to update with the evictions and bytes in use. */
+    private final CacheMetrics metrics;
+    /** The index of the segment being filled, guarded by this. */
+    private int current;
+
+    /** The hashes of the keys in the index, guarded by this. */
+    private long[] hashes;
+    /** The addresses of the records plus one, {@code 0} is an empty slot. */
+    private long[] addresses;
+    /** The number of keys in the index, guarded by this. */
+    private int size;
+
+    OffHeapStore(final long maxBytes, final CacheMetrics metrics) {
+        assert (maxBytes > 0);
+        assert (metrics != null);
+
+        // at least two segments, so that evicting one never empties the store
+        this.segmentSize = (int) Math.max(1, Math.min(MAX_SEGMENT_SIZE, maxBytes / 2));
+        this.segments = new ByteBuffer[(int) Math.max(2, maxBytes / segmentSize)];
+        this.limits = new int[segments.length];
+        this.metrics = metrics;
+        this.current = 0;
+        this.hashes = new long[16];
+        this.addresses = new long[16];
+        this.size = 0;
+    }
+
+    /**
+     * Returns a copy of the value stored for the {@code key}, or {@code null}
+     * if there's none.
+     */
+    @Nullable
+    synchronized byte[] get(final String key) {
+        assert (key != null);
+
+        final byte[] keyBytes = key.getBytes(UTF8);
+        final int slot = find(hash(keyBytes), keyBytes);
+        if (slot < 0) {
+            return null;
+        }
+        final long address = addresses[slot] - 1;
+        final ByteBuffer segment = segments[(int) (address / segmentSize)];
+        final int offset = (int) (address % segmentSize);
+        final int length = segment.getInt(offset);
+        final byte[] value = new byte[length - RECORD_OVERHEAD - keyBytes.length];
+        segment.position(offset + RECORD_OVERHEAD + keyBytes.length);
+        segment.get(value);
+        return value;
+    }
+
+    /**
+     * Store the {@code value} for the {@code key}, replacing any value stored
+     * before. A record larger than a segment isn't stored.
+     *
+     * @return {@code true} if the value was stored.
+     */
+    synchronized boolean put(final String key, final byte[] value) {
+        assert (key != null);
+        assert (value != null);
+
+        final byte[] keyBytes = key.getBytes(UTF8);
+        final long hash = hash(keyBytes);
+        remove(hash, keyBytes);
+        final int length = RECORD_OVERHEAD + keyBytes.length + value.length;
+        if (length > segmentSize) {
+            return false;
+        }
+
+        if (limits[current] + length > segmentSize) {
+            current = (current + 1) % segments.length;
+            evict(current);
+        }
+        if (segments[current] == null) {
+            segments[current] = ByteBuffer.allocateDirect(segmentSize);
+        }
+        final ByteBuffer segment = segments[current];
+        final int offset = limits[current];
+        segment.position(offset);
+        segment.putInt(length).putInt(keyBytes.length).put(keyBytes).put(value);
+        limits[current] = offset + length;
+        metrics.allocated(length);
+
+        insert(hash, (long) current * segmentSize + offset + 1);
+        return true;
+    }
+
+    /**
+     * Remove the value stored for the {@code key}, the bytes of its record are
+     * freed when its segment is evicted.
+     */
+    synchronized void remove(final String key) {
+        assert (key != null);
+
+        final byte[] keyBytes = key.getBytes(UTF8);
+        remove(hash(keyBytes), keyBytes);
+    }
+
+    /**
+     * Remove all the values, the segments are kept for reuse.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < segments.length; i++) {
+            metrics.allocated(-limits[i]);
+            limits[i] = 0;
+        }
+        Arrays.fill(hashes, 0);
+        Arrays.fill(addresses, 0);
+        size = 0;
+        current = 0;
+    }
+
+    /**
+     * Empty the {@code index} segment, removing the keys of the records in it
+     * that are still in the index.
+     */
+    private void evict(final int index) {
+        final ByteBuffer segment = segments[index];
+        final int limit = limits[index];
+        int offset = 0;
+        while (offset < limit) {
+            final int length = segment.getInt(offset);
+            final byte[] keyBytes = new byte[segment.getInt(offset + 4)];
+            segment.position(offset + RECORD_OVERHEAD);
+            segment.get(keyBytes);
+            final int slot = find(hash(keyBytes), keyBytes);
+            // the key may have been removed or stored again in another record
+            if (slot >= 0 && addresses[slot] - 1 == (long) index * segmentSize + offset) {
+                delete(slot);
+                metrics.evicted();
+            }
+            offset += length;
+        }
+        metrics.allocated(-limit);
+        limits[index] = 0;
+    }
+
+    private void remove(final long hash, final byte[] keyBytes) {
+        final int slot = find(hash, keyBytes);
+        if (slot >= 0) {
+            delete(slot);
+        }
+    }
+
+    /**
+     * Returns the slot of the {@code keyBytes} in the index, or {@code -1} if
+     * they're not in it.
+     */
+    private int find(final long hash, final byte[] keyBytes) {
+        final int mask = hashes.length - 1;
+        for (int slot = spread(hash) & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && keyEquals(addresses[slot] - 1, keyBytes)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(final long address, final byte[] keyBytes) {
+        final ByteBuffer segment = segments[(int) (address / segmentSize)];
+        final int offset = (int) (address % segmentSize);
+        if (segment.getInt(offset + 4) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (segment.get(offset + RECORD_OVERHEAD + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(final long hash, final long address) {
+        if ((size + 1) * 2 > hashes.length) {
+            resize(hashes.length * 2);
+        }
+        final int mask = hashes.length - 1;
+        int slot = spread(hash) & mask;
+        while (addresses[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        addresses[slot] = address;
+        size++;
+    }
+
+    /**
+     * Empty the {@code slot} and shift back the entries after it that would
+     * no longer be found, so that lookups never need tombstones.
+     */
+    private void delete(int slot) {
+        final int mask = hashes.length - 1;
+        int next = (slot + 1) & mask;
+        while (addresses[next] != 0) {
+            final int home = spread(hashes[next]) & mask;
+            // move the entry back if its home isn't cyclically in (slot, next]
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                hashes[slot] = hashes[next];
+                addresses[slot] = addresses[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        hashes[slot] = 0;
+        addresses[slot] = 0;
+        size--;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldHashes = hashes;
+        final long[] oldAddresses = addresses;
+        hashes = new long[capacity];
+        addresses = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldAddresses[i] != 0) {
+                insert(oldHashes[i], oldAddresses[i]);
+            }
+        }
+    }
+
+    /** Returns the 64 bit FNV-1a hash of the {@code bytes}. */
+    static long hash(final byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int spread(final long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
@@ -23,7 +23,6 @@ import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.http.*;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HttpStatus;
-import org.glassfish.grizzly.http.util.UEncoder;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.ByteBufferWrapper;
 import org.glassfish.grizzly.nio.NIOTransport;
@@ -34,11 +33,14 @@ import org.glassfish.grizzly.ssl.SSLFilter;
 import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -55,12 +57,14 @@ public class OrchestrateClient implements Client {
     /** The socket transport for HTTP messages. */
     private final NIOTransport transport;
 
-    private static final ThreadLocal<UEncoder> ENCODER_HOLDER = new ThreadLocal<UEncoder>(){
-        @Override
-        protected UEncoder initialValue() {
-            return new UEncoder();
-        }
-    };
+    /** The encoder for the segments of request paths. */
+    private final SegmentEncoder encoder;
+    /** The shared GET requests in flight, {@code null} if not coalescing. */
+    private final SingleFlight singleFlight;
+    /** The cache of the objects read, or {@code null} if it's disabled. */
+    private final NearCache nearCache;
+    /** The scope of the objects in the ref cache, or {@code null} if it's disabled. */
+    private final String refScope;
 
     /**
      * Create a new {@code client} with the specified {@code apiKey} and default
@@ -105,6 +109,24 @@ public class OrchestrateClient implements Client {
         assert (builder != null);
 
         this.builder = builder;
+        this.encoder = new SegmentEncoder(builder.keyCacheSize);
+        this.singleFlight = builder.coalesceGets
+                ? new SingleFlight(OrchestrateRequest.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)
+                : null;
+        final String scope = builder.host.toString() + ':' + builder.port + '#' + builder.apiKey;
+        final DiskCache diskCache;
+        try {
+            diskCache = (builder.nearCacheDirectory != null)
+                    ? DiskCache.open(builder.nearCacheDirectory, builder.nearCacheDiskBytes, scope)
+                    : null;
+        } catch (final IOException e) {
+            throw new ClientException(e);
+        }
+        this.nearCache = (builder.nearCacheSize > 0 || builder.nearCacheOffHeapBytes > 0 || diskCache != null)
+                ? new NearCache(builder.nearCacheSize, builder.nearCacheTtlNanos,
+                        builder.nearCacheOffHeapBytes, diskCache, builder.mapper.getCodecs())
+                : null;
+        this.refScope = builder.cacheRefs ? scope : null;
 
         final ThreadPoolConfig poolConfig = ThreadPoolConfig.defaultConfig()
                 .setPoolName("OrchestrateClientPool")
@@ -185,12 +207,37 @@ public class OrchestrateClient implements Client {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public BulkResource bulk(final String collection) {
+        checkNotNullOrEmpty(collection, "collection");
+
+        return new BulkResource(new PreparedRequest<Object>(this, builder.mapper, collection, Object.class));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public BulkDeleteResource bulkDelete(final String collection) {
+        checkNotNullOrEmpty(collection, "collection");
+
+        return new BulkDeleteResource(this, collection);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RelationBulkResource bulkRelations() {
+        return new RelationBulkResource(this);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void close() throws IOException {
         if (transport != null && !transport.isStopped()) {
             transport.shutdownNow();
         }
+        if (nearCache != null) {
+            nearCache.close();
+        }
     }
 
     /** {@inheritDoc} */
@@ -208,13 +255,13 @@ public class OrchestrateClient implements Client {
                 .httpContentBuilder()
                 .build();
 
-        return new OrchestrateRequest<Boolean>(this, packet, new ResponseConverter<Boolean>() {
+        return invalidating(null, new OrchestrateRequest<Boolean>(this, packet, new ResponseConverter<Boolean>() {
             @Override
             public Boolean from(final HttpContent response) throws IOException {
                 final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
                 return (status == HttpStatus.NO_CONTENT_204.getStatusCode());
             }
-        });
+        }));
     }
 
     /** {@inheritDoc} */
@@ -226,6 +273,39 @@ public class OrchestrateClient implements Client {
         return new EventResource(this, builder.mapper, collection, key);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public SnapshotExporter exportSnapshot(final String collection) {
+        checkNotNullOrEmpty(collection, "collection");
+
+        return new SnapshotExporter(this, builder.mapper, collection);
+    }
+
+    /**
+     * Returns the metrics of the near cache of this client.
+     *
+     * @return The near cache metrics, or {@code null} if the near cache is
+     *         disabled.
+     */
+    @Nullable
+    public CacheMetrics getNearCacheMetrics() {
+        return (nearCache != null) ? nearCache.getMetrics() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SnapshotImporter importSnapshot(final String collection) {
+        checkNotNullOrEmpty(collection, "collection");
+
+        return new SnapshotImporter(this, builder.mapper, collection);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public EventIngestResource ingestEvents() {
+        return new EventIngestResource(this);
+    }
+
     /** {@inheritDoc} */
     @Override
     public KvResource kv(final String collection, final String key) {
@@ -243,6 +323,24 @@ public class OrchestrateClient implements Client {
         return new KvListResource(this, builder.mapper, collection);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public <T> CollectionMirror<T> mirror(final String collection, final Class<T> clazz) {
+        checkNotNullOrEmpty(collection, "collection");
+        checkNotNull(clazz, "clazz");
+
+        return new CollectionMirror<T>(this, new PreparedRequest<T>(this, builder.mapper, collection, clazz));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T> CompositeRequest<MultiGetResult<T>> multiGet(
+            final String collection, final Collection<String> keys, final Class<T> clazz) {
+        checkNotNull(keys, "keys");
+
+        return prepare(collection, clazz).getAll(keys);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void ping() throws IOException {
@@ -285,7 +383,7 @@ public class OrchestrateClient implements Client {
         try {
             content = (value instanceof String)
                     ? ((String) value).getBytes(Charset.forName("UTF-8"))
-                    : builder.mapper.getMapper().writeValueAsBytes(value);
+                    : builder.mapper.getCodecs().write(value);
         } catch (final Exception e) {
             throw new RuntimeException(e); // FIXME
         }
@@ -320,6 +418,15 @@ public class OrchestrateClient implements Client {
         });
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public <T> PreparedRequest<T> prepare(final String collection, final Class<T> clazz) {
+        checkNotNullOrEmpty(collection, "collection");
+        checkNotNull(clazz, "clazz");
+
+        return new PreparedRequest<T>(this, builder.mapper, collection, clazz);
+    }
+
     /** {@inheritDoc} */
     @Override
     public RelationResource relation(final String collection, final String key) {
@@ -386,6 +493,22 @@ public class OrchestrateClient implements Client {
         private boolean useSSL;
         /** Value to append as the "User-Agent" in requests to Orchestrate. */
         private String userAgent;
+        /** The number of encoded keys to cache, {@code 0} to disable. */
+        private int keyCacheSize;
+        /** Whether concurrent identical GET requests share one request. */
+        private boolean coalesceGets;
+        /** Whether to share the objects read by ref through the ref cache. */
+        private boolean cacheRefs;
+        /** The number of objects to cache, {@code 0} to disable. */
+        private int nearCacheSize;
+        /** The time to live of a cached object, in nanoseconds. */
+        private long nearCacheTtlNanos;
+        /** The bytes of memory for the off-heap tier, {@code 0} to disable. */
+        private long nearCacheOffHeapBytes;
+        /** The directory of the disk tier, {@code null} to disable. */
+        private Path nearCacheDirectory;
+        /** The bytes of the log file of the disk tier. */
+        private int nearCacheDiskBytes;
 
         private Builder(final String apiKey) {
             checkNotNullOrEmpty(apiKey, "apiKey");
@@ -517,7 +640,150 @@ public class OrchestrateClient implements Client {
             return this;
         }
 
+        /**
+         * The maximum number of encoded keys to cache for reuse in request
+         * paths, defaults to {@code 0} which disables the cache.
+         *
+         * <p>Enabling the cache helps where the same keys are requested over
+         * and over, the names of collections are always cached.
+         *
+         * @param keyCacheSize The number of encoded keys to cache.
+         * @return This builder.
+         */
+        public Builder keyCacheSize(final int keyCacheSize) {
+            this.keyCacheSize = checkNotNegative(keyCacheSize, "keyCacheSize");
+
+            return this;
+        }
+
+        /**
+         * Whether the objects read by ref with {@link KvResource#get(Class,
+         * String)} are cached in the {@link RefCache} shared by the clients
+         * in the JVM, defaults to {@code false}.
+         *
+         * @param cacheRefs If {@code true} cache the objects read by ref.
+         * @return This builder.
+         */
+        public Builder cacheRefs(final boolean cacheRefs) {
+            this.cacheRefs = cacheRefs;
+            return this;
+        }
+
+        /**
+         * Whether concurrent KV get requests for the same object and type
+         * share a single request that's in flight, defaults to {@code false}.
+         *
+         * <p>Each caller gets its own request future, and the decoded object
+         * is shared between the callers. A get request made with {@code
+         * coalesce(false)} on its {@link KvResource} always makes a request
+         * of its own. A request is only shared for the {@link
+         * OrchestrateRequest#DEFAULT_TIMEOUT default timeout}, later callers
+         * send a new request so that a response that never comes doesn't hold
+         * them up.
+         *
+         * @param coalesceGets If {@code true} coalesce identical get requests.
+         * @return This builder.
+         */
+        public Builder coalesceGets(final boolean coalesceGets) {
+            this.coalesceGets = coalesceGets;
+            return this;
+        }
+
+        /**
+         * Cache up to {@code maxEntries} of the objects read by the get
+         * requests of {@link KvResource} in the client, defaults to {@code 0}
+         * which disables the cache.
+         *
+         * <p>A cached object is returned without a request until its {@code
+         * ttl} runs out, then it's revalidated with a conditional get request
+         * which transfers the object again only if it has changed. The least
+         * recently used object is evicted when the cache is full. Writes made
+         * through the client invalidate the cached object, writes made by
+         * other clients are seen once the {@code ttl} runs out.
+         *
+         * <p>A get request made with {@code cache(false)} on its {@link
+         * KvResource} always reads from the service.
+         *
+         * <p><strong>Don't change the objects returned from the cache.</strong>
+         * Every hit for an object still held on the heap returns the same
+         * {@link KvObject} and the same value to all its callers, so a change
+         * made by one caller is seen by the others, and by every later hit,
+         * until the object is evicted. Copy a value before changing it, or
+         * read it with {@code cache(false)}.
+         *
+         * @param maxEntries The number of objects to cache.
+         * @param ttl The time to serve a cached object without revalidating it.
+         * @param unit The unit of the {@code ttl}.
+         * @return This builder.
+         */
+        public Builder nearCache(final int maxEntries, final long ttl, final @NonNull TimeUnit unit) {
+            checkNotNegative(maxEntries, "maxEntries");
+            checkArgument(ttl > 0, "'ttl' must be greater than zero.");
+
+            this.nearCacheSize = maxEntries;
+            this.nearCacheTtlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Add an off-heap tier of up to {@code maxBytes} of memory to the near
+         * cache, defaults to {@code 0} which disables the tier.
+         *
+         * <p>Every cached object is also stored outside of the Java heap as
+         * its raw JSON, and is decoded again when it's read from there. The
+         * {@code maxEntries} of the near cache then only bounds the decoded
+         * objects kept on the heap, and may be {@code 0}. The oldest objects
+         * are evicted from the tier when it's full.
+         *
+         * @param maxBytes The bytes of memory to allocate for the tier.
+         * @return This builder.
+         * @see #nearCache(int, long, TimeUnit)
+         * @see OrchestrateClient#getNearCacheMetrics()
+         */
+        public Builder nearCacheOffHeap(final long maxBytes) {
+            checkNotNegative(maxBytes, "maxBytes");
+
+            this.nearCacheOffHeapBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Add a disk tier to the near cache, with a log file of up to {@code
+         * maxBytes} in the {@code directory}, defaults to no disk tier.
+         *
+         * <p>Every cached object is also stored in the log file as its raw
+         * JSON along with its ref. The file is memory mapped, and it's
+         * reopened by the next client built with the same directory, service
+         * and API key, so that a restarted application starts with the objects
+         * it had read before. An object found only on disk is returned at
+         * once, and it's revalidated with a conditional get request in the
+         * background. When the file is full it's compacted, and the oldest
+         * objects are dropped.
+         *
+         * <p>The directory is locked by the client until it's closed, each
+         * client needs a directory of its own.
+         *
+         * @param directory The directory of the files, created if it's missing.
+         * @param maxBytes The size of the log file.
+         * @return This builder.
+         * @see #nearCache(int, long, TimeUnit)
+         * @see OrchestrateClient#getNearCacheMetrics()
+         */
+        public Builder nearCacheOnDisk(final @NonNull Path directory, final long maxBytes) {
+            checkArgument(maxBytes >= 64 * 1024 && maxBytes <= Integer.MAX_VALUE,
+                    "'maxBytes' must be between 64 KB and 2 GB.");
+
+            this.nearCacheDirectory = directory;
+            this.nearCacheDiskBytes = (int) maxBytes;
+            return this;
+        }
+
         public OrchestrateClient build() {
+            checkArgument(nearCacheOffHeapBytes == 0 || nearCacheTtlNanos > 0,
+                    "'nearCacheOffHeap' requires a 'ttl' set with 'nearCache'.");
+            checkArgument(nearCacheDirectory == null || nearCacheTtlNanos > 0,
+                    "'nearCacheOnDisk' requires a 'ttl' set with 'nearCache'.");
+
             return new OrchestrateClient(this);
         }
 
@@ -529,19 +795,94 @@ public class OrchestrateClient implements Client {
             length += segment.length();
         }
 
-        UEncoder encoder = ENCODER_HOLDER.get();
-
         StringBuilder buff = new StringBuilder(length).append("/v0");
-        for(String segment:segments) {
-            buff.append('/').append(encoder.encodeURL(segment));
+        for(int i=0; i<segments.length; i++) {
+            buff.append('/');
+            if(i == 0) {
+                buff.append(encoder.encodeCollection(segments[i]));
+            } else if(i == 1) {
+                buff.append(encoder.encodeKey(segments[i]));
+            } else {
+                buff.append(SegmentEncoder.encode(segments[i]));
+            }
         }
         return buff.toString();
     }
 
+    <T> OrchestrateRequest<T> coalesce(
+            final String uri, final Class<?> clazz, final HttpContent packet, final ResponseConverter<T> converter) {
+        if (singleFlight == null) {
+            return new OrchestrateRequest<T>(this, packet, converter);
+        }
+        return singleFlight.join(uri, clazz, new OrchestrateRequest<T>(this, packet, converter, false));
+    }
+
+    /**
+     * Returns the cached object at the {@code uri}, or the request made by the
+     * {@code loader} if the near cache is disabled or the object isn't fresh.
+     */
+    <T> OrchestrateRequest<KvObject<T>> cached(
+            final String uri, final HttpContent packet, final Class<T> clazz, final NearCache.Loader<T> loader) {
+        if (nearCache == null) {
+            return loader.load(null);
+        }
+        return nearCache.get(this, uri, packet, clazz, loader);
+    }
+
+    /**
+     * Returns the cached object read by ref at the {@code uri}, or {@code null}
+     * if there's none or the ref cache is disabled.
+     */
+    @Nullable
+    <T> KvObject<T> cachedRef(final String uri, final Class<T> clazz) {
+        if (refScope == null) {
+            return null;
+        }
+        return RefCache.getInstance().get(refScope, uri, clazz, builder.mapper.getCodecs());
+    }
+
+    /**
+     * Cache the object read by ref by the {@code request}, before the caller
+     * of the returned request sees it.
+     */
+    <T> OrchestrateRequest<KvObject<T>> cachingRef(
+            final String uri, final Class<T> clazz, final OrchestrateRequest<KvObject<T>> request) {
+        if (refScope == null) {
+            return request;
+        }
+        return new OrchestrateRequest<KvObject<T>>(request, new ResponseListener<KvObject<T>>() {
+            @Override
+            public void onFailure(final Throwable error) {
+            }
+
+            @Override
+            public void onSuccess(final KvObject<T> object) {
+                if (object != null) {
+                    RefCache.getInstance().put(refScope, uri, object);
+                }
+            }
+        });
+    }
+
+    /**
+     * Invalidate the cached object at the {@code uri} when the write {@code
+     * request} is sent and when it completes, {@code null} invalidates all the
+     * cached objects.
+     */
+    <T> OrchestrateRequest<T> invalidating(@Nullable final String uri, final OrchestrateRequest<T> request) {
+        if (nearCache == null) {
+            return request;
+        }
+        return nearCache.invalidating(uri, request);
+    }
+
+    String encodeKey(String key) {
+        return encoder.encodeKey(key);
+    }
+
     String encode(String... segments) {
-        UEncoder encoder = ENCODER_HOLDER.get();
         if(segments.length == 1){
-            return encoder.encodeURL(segments[0]);
+            return SegmentEncoder.encode(segments[0]);
         }
 
         int length = segments.length - 1;
@@ -554,7 +895,7 @@ public class OrchestrateClient implements Client {
             if(i != 0) {
                 buff.append('/');
             }
-            buff.append(encoder.encodeURL(segments[i]));
+            buff.append(SegmentEncoder.encode(segments[i]));
         }
 
         return buff.toString();
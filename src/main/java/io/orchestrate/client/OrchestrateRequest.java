@@ -21,6 +21,7 @@ import org.glassfish.grizzly.GrizzlyFuture;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
@@ -39,6 +40,7 @@ public final class OrchestrateRequest<T> implements Future<T> {
     private final HttpContent httpRequest;
     private GrizzlyFuture activeRequest;
     private final Semaphore sent = new Semaphore(1);
+    private final ContentListener contentListener;
 
     OrchestrateRequest(
             final OrchestrateClient client,
@@ -52,12 +54,22 @@ public final class OrchestrateRequest<T> implements Future<T> {
             final HttpContent httpRequest,
             final ResponseConverter<T> converter,
             final boolean sendImmediate) {
+        this(client, httpRequest, converter, null, sendImmediate);
+    }
+
+    OrchestrateRequest(
+            final OrchestrateClient client,
+            final HttpContent httpRequest,
+            final ResponseConverter<T> converter,
+            @Nullable final ContentListener contentListener,
+            final boolean sendImmediate) {
         assert (client != null);
         assert (httpRequest != null);
         assert (converter != null);
 
         this.client = client;
         this.httpRequest = httpRequest;
+        this.contentListener = contentListener;
         rawResponseFuture = SafeFutureImpl.create();
         convertedResponseFuture = SafeFutureImpl.create();
         rawResponseFuture.addCompletionHandler(new CompletionHandler<HttpContent>() {
@@ -90,6 +102,82 @@ public final class OrchestrateRequest<T> implements Future<T> {
         }
     }
 
+    /**
+     * A request that has already completed with the {@code result}, e.g. from
+     * a cache, and is never sent.
+     */
+    OrchestrateRequest(final OrchestrateClient client, final HttpContent httpRequest, final T result) {
+        assert (client != null);
+        assert (httpRequest != null);
+
+        this.client = client;
+        this.httpRequest = httpRequest;
+        this.contentListener = null;
+        rawResponseFuture = SafeFutureImpl.create();
+        convertedResponseFuture = SafeFutureImpl.create();
+        sent.tryAcquire();
+        convertedResponseFuture.result(result);
+    }
+
+    /**
+     * A request that follows the {@code leader} and completes with its
+     * response, without sending a request of its own.
+     */
+    OrchestrateRequest(final OrchestrateRequest<T> leader) {
+        this(leader, null);
+    }
+
+    /**
+     * A request that follows the {@code leader} and completes with its
+     * response once the {@code first} listener has been told of it. The
+     * listeners of a request are called in no particular order, so a response
+     * that must be handled before the caller sees it (e.g. to cache it) is
+     * handled by the {@code first} listener of a follower.
+     */
+    OrchestrateRequest(final OrchestrateRequest<T> leader, @Nullable final ResponseListener<T> first) {
+        assert (leader != null);
+
+        this.client = leader.client;
+        this.httpRequest = leader.httpRequest;
+        this.contentListener = null;
+        rawResponseFuture = SafeFutureImpl.create();
+        convertedResponseFuture = SafeFutureImpl.create();
+        // the leader sends the request for its followers
+        sent.tryAcquire();
+        leader.convertedResponseFuture.addCompletionHandler(new CompletionHandler<T>() {
+            @Override
+            public void cancelled() {
+                convertedResponseFuture.cancel(false);
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                try {
+                    if (first != null) {
+                        first.onFailure(throwable);
+                    }
+                } finally {
+                    convertedResponseFuture.failure(throwable);
+                }
+            }
+
+            @Override
+            public void completed(T result) {
+                try {
+                    if (first != null) {
+                        first.onSuccess(result);
+                    }
+                } finally {
+                    convertedResponseFuture.result(result);
+                }
+            }
+
+            @Override
+            public void updated(T result) {
+            }
+        });
+    }
+
     public OrchestrateRequest<T> on(final @NonNull Iterable<ResponseListener<T>> listeners) {
         for(ResponseListener<T> listener : listeners) {
             convertedResponseFuture.addCompletionHandler(new ResponseCompletionHandler<T>(listener));
@@ -171,4 +259,9 @@ public final class OrchestrateRequest<T> implements Future<T> {
         return rawResponseFuture;
     }
 
+    @Nullable
+    ContentListener getContentListener() {
+        return contentListener;
+    }
+
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+/**
+ * The items of all the pages of a paginated request, each call to {@link
+ * #iterator()} starts over from the first page.
+ *
+ * @param <T> The type of the items in the pages.
+ * @see PagedIterator
+ */
+public abstract class PagedIterable<T> implements Iterable<T> {
+
+    PagedIterable() {
+    }
+
+    /**
+     * Returns an iterator over the items from the first page, which should be
+     * closed if it's given up before the last item.
+     *
+     * @return The iterator over the items.
+     */
+    @Override
+    public abstract PagedIterator<T> iterator();
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over the items of all the pages of a paginator, only the page
+ * being iterated is referenced by the iterator.
+ *
+ * <p>The paginator is closed once the last item has been iterated. An
+ * iterator that is given up before then should be closed, so that the
+ * requests for the pages fetched ahead of it are cancelled.
+ *
+ * @param <T> The type of the items in the pages.
+ */
+public final class PagedIterator<T> implements Iterator<T>, Closeable {
+
+    /** The pages to iterate the items of. */
+    private final Paginator<? extends Iterable<T>> pages;
+    /** The items of the current page. */
+    private Iterator<T> items;
+
+    PagedIterator(final Paginator<? extends Iterable<T>> pages) {
+        assert (pages != null);
+
+        this.pages = pages;
+        this.items = Collections.<T>emptyList().iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!items.hasNext()) {
+            if (!pages.hasNext()) {
+                pages.close();
+                return false;
+            }
+            final Iterable<T> page = pages.next();
+            items = (page != null)
+                    ? page.iterator()
+                    : Collections.<T>emptyList().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return items.next();
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, items can't be removed.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancel the requests for the pages ahead of the item being iterated, no
+     * more items are returned once the iterator is closed.
+     */
+    @Override
+    public void close() {
+        pages.close();
+        items = Collections.<T>emptyList().iterator();
+    }
+
+}
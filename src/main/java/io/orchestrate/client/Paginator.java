@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over the pages of a paginated request that keeps a number of
+ * the following pages in flight ahead of the consumer, so that the latency of
+ * fetching a page overlaps with handling the one before.
+ *
+ * <p>At most the prefetch depth of pages are held ahead of the consumer.
+ * Closing the paginator cancels the requests for the pages that are in flight,
+ * it should be closed when the caller stops before the last page.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * {@code
+ * Paginator<KvList<DomainObject>> pages =
+ *         client.listCollection("someCollection")
+ *               .paginate(DomainObject.class, 2);
+ * try {
+ *     while (pages.hasNext()) {
+ *         for (KvObject<DomainObject> kvObject : pages.next()) {
+ *             ...
+ *         }
+ *     }
+ * } finally {
+ *     pages.close();
+ * }
+ * }
+ * </pre>
+ *
+ * @param <P> The type of the pages.
+ */
+public abstract class Paginator<P> implements Iterator<P>, Closeable {
+
+    /** The maximum number of pages in flight ahead of the consumer. */
+    private final int prefetch;
+    /** The requests for the pages ahead of the consumer, in order. */
+    private final Deque<OrchestrateRequest<P>> window;
+    /** The last request in the chain, whose next page isn't known yet. */
+    private @Nullable OrchestrateRequest<P> tail;
+    /** The request for the next page, held back while the window is full. */
+    private @Nullable OrchestrateRequest<P> held;
+    private boolean closed;
+
+    Paginator(final OrchestrateRequest<P> first, final int prefetch) {
+        assert (first != null);
+        assert (prefetch > 0);
+
+        this.prefetch = prefetch;
+        this.window = new ArrayDeque<OrchestrateRequest<P>>(prefetch);
+        this.tail = first;
+        this.held = null;
+        this.closed = false;
+
+        synchronized (this) {
+            send(first);
+        }
+    }
+
+    /**
+     * Returns the request for the page after the {@code page}.
+     *
+     * @param page The page of results.
+     * @return The request for the next page, or {@code null} if it's the last.
+     */
+    @Nullable
+    abstract OrchestrateRequest<P> nextOf(final P page);
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized boolean hasNext() {
+        return !closed && (!window.isEmpty() || held != null);
+    }
+
+    /**
+     * Returns the next page, waiting for it to arrive if it hasn't already.
+     *
+     * @return The next page.
+     */
+    @Override
+    public P next() {
+        final OrchestrateRequest<P> request;
+        synchronized (this) {
+            if (closed || (window.isEmpty() && held == null)) {
+                throw new NoSuchElementException();
+            }
+            fill();
+            request = window.poll();
+        }
+
+        final P page = request.get();
+        link(request, page);
+        synchronized (this) {
+            fill();
+        }
+        return page;
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, pages can't be removed.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancel the requests for the pages ahead of the consumer.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (final OrchestrateRequest<P> request : window) {
+            request.cancel(false);
+        }
+        window.clear();
+        tail = null;
+        held = null;
+    }
+
+    private synchronized void link(final OrchestrateRequest<P> request, @Nullable final P page) {
+        if (closed || request != tail) {
+            // the next page of the request has already been linked
+            return;
+        }
+
+        final OrchestrateRequest<P> next = (page != null) ? nextOf(page) : null;
+        tail = next;
+        if (next == null) {
+            return;
+        }
+        if (window.size() < prefetch) {
+            send(next);
+        } else {
+            held = next;
+        }
+    }
+
+    private void fill() {
+        if (held != null && window.size() < prefetch) {
+            final OrchestrateRequest<P> next = held;
+            held = null;
+            send(next);
+        }
+    }
+
+    private void send(final OrchestrateRequest<P> request) {
+        window.add(request);
+        request.on(new ResponseListener<P>() {
+            @Override
+            public void onFailure(final Throwable error) {
+                // the failure is thrown to the consumer when it gets the page
+            }
+
+            @Override
+            public void onSuccess(final P page) {
+                link(request, page);
+            }
+        }).getAsync();
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.memory.ByteBufferWrapper;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * A reusable template for the KV requests to a single collection, for use in
+ * code that issues many requests of the same shape.
+ *
+ * <p>The path of the collection is encoded once and the response converters
+ * are shared by every request made from the template, so each request only
+ * allocates what it needs for its own key. A prepared request is immutable and
+ * safe to share between threads.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * {@code
+ * PreparedRequest<DomainObject> users =
+ *         client.prepare("someCollection", DomainObject.class);
+ * KvObject<DomainObject> object = users.get("someKey").get();
+ * }
+ * </pre>
+ *
+ * @param <T> The type to deserialize the values of the requests to.
+ */
+public final class PreparedRequest<T> extends BaseResource {
+
+    /** The default number of requests in flight for {@link #getAll(Collection)}. */
+    public static final int DEFAULT_WINDOW = 32;
+
+    /** The name of the request attribute that holds the key of the request. */
+    private static final String KEY_ATTR = "orchestrate.key";
+
+    /** The converter for the response to a delete request. */
+    private static final ResponseConverter<Boolean> DELETE_CONVERTER = new ResponseConverter<Boolean>() {
+        @Override
+        public Boolean from(final HttpContent response) throws IOException {
+            final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
+            return (status == HttpStatus.NO_CONTENT_204.getStatusCode());
+        }
+    };
+
+    /** The collection for the requests. */
+    private final String collection;
+    /** The type of the values of the requests. */
+    private final Class<T> clazz;
+    /** The encoded path of the collection, e.g. {@code /v0/someCollection/}. */
+    private final String prefix;
+    /** The converter for the response to a get request. */
+    private final ResponseConverter<KvObject<T>> getConverter;
+    /** The converter for the response to a put request. */
+    private final ResponseConverter<KvMetadata> putConverter;
+
+    PreparedRequest(final OrchestrateClient client,
+                    final JacksonMapper mapper,
+                    final String collection,
+                    final Class<T> clazz) {
+        super(client, mapper);
+        assert (collection != null);
+        assert (collection.length() > 0);
+        assert (clazz != null);
+
+        this.collection = collection;
+        this.clazz = clazz;
+        this.prefix = client.uri(collection).concat("/");
+        this.getConverter = new ResponseConverter<KvObject<T>>() {
+            @Override
+            public KvObject<T> from(final HttpContent response) throws IOException {
+                final HttpResponsePacket header = (HttpResponsePacket) response.getHttpHeader();
+                if (header.getStatus() == 404) {
+                    return null;
+                }
+                return toKvObject(response, PreparedRequest.this.collection, keyOf(header),
+                        PreparedRequest.this.clazz);
+            }
+        };
+        this.putConverter = new ResponseConverter<KvMetadata>() {
+            @Override
+            public KvMetadata from(final HttpContent response) throws IOException {
+                final HttpResponsePacket header = (HttpResponsePacket) response.getHttpHeader();
+                if (header.getStatus() == 201) {
+                    final String ref = header.getHeader(Header.ETag)
+                            .replace("\"", "")
+                            .replace("-gzip", "");
+                    return new KvMetadata(PreparedRequest.this.collection, keyOf(header), ref);
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Fetch an object by key from the collection.
+     *
+     * @param key The key of the object.
+     * @return The prepared get request.
+     * @see KvResource#get(Class)
+     */
+    public OrchestrateRequest<KvObject<T>> get(final String key) {
+        checkNotNullOrEmpty(key, "key");
+
+        final HttpContent packet = packet(HttpRequestPacket.builder().method(Method.GET), key)
+                .httpContentBuilder()
+                .build();
+        return new OrchestrateRequest<KvObject<T>>(client, packet, getConverter);
+    }
+
+    /**
+     * Equivalent to {@code this.getAll(keys, DEFAULT_WINDOW)}.
+     *
+     * @param keys The keys of the objects.
+     * @return The request for the objects.
+     * @see #getAll(Collection, int)
+     */
+    public CompositeRequest<MultiGetResult<T>> getAll(final Collection<String> keys) {
+        return getAll(keys, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Fetch the objects for many keys from the collection, with up to the
+     * {@code window} of requests in flight at the same time. Duplicate keys are
+     * fetched once, and the keys with no object are reported separately.
+     *
+     * <p>The request fails if any of the objects couldn't be fetched.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * MultiGetResult<DomainObject> result =
+     *         client.prepare("someCollection", DomainObject.class)
+     *               .getAll(keys, 16)
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param keys The keys of the objects.
+     * @param window The number of requests in flight at the same time.
+     * @return The request for the objects.
+     */
+    public CompositeRequest<MultiGetResult<T>> getAll(final @NonNull Collection<String> keys, final int window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+        for (final String key : keys) {
+            checkNotNullOrEmpty(key, "key");
+        }
+
+        final CompositeRequest<MultiGetResult<T>> result = new CompositeRequest<MultiGetResult<T>>();
+        new GetAll(result, new ArrayList<String>(new LinkedHashSet<String>(keys))).fetch(window);
+        return result;
+    }
+
+    /**
+     * Store an object by key to the collection.
+     *
+     * @param key The key of the object.
+     * @param value The object to store.
+     * @return The prepared put request.
+     * @see KvResource#put(Object)
+     */
+    public OrchestrateRequest<KvMetadata> put(final String key, final @NonNull T value) {
+        checkNotNullOrEmpty(key, "key");
+
+        return put(key, toJsonBytes(value), null, false);
+    }
+
+    OrchestrateRequest<KvMetadata> put(
+            final String key, final byte[] content, @Nullable final String ifMatch, final boolean ifAbsent) {
+        final HttpRequestPacket.Builder builder = HttpRequestPacket.builder()
+                .method(Method.PUT)
+                .contentType("application/json")
+                .contentLength(content.length);
+        if (ifMatch != null) {
+            builder.header(Header.IfMatch, "\"".concat(ifMatch).concat("\""));
+        } else if (ifAbsent) {
+            builder.header(Header.IfNoneMatch, "\"*\"");
+        }
+        final HttpContent packet = packet(builder, key)
+                .httpContentBuilder()
+                .content(new ByteBufferWrapper(ByteBuffer.wrap(content)))
+                .build();
+        return client.invalidating(uriOf(packet),
+                new OrchestrateRequest<KvMetadata>(client, packet, putConverter));
+    }
+
+    /**
+     * Delete an object by key from the collection.
+     *
+     * @param key The key of the object.
+     * @return The prepared delete request.
+     * @see KvResource#delete()
+     */
+    public OrchestrateRequest<Boolean> delete(final String key) {
+        checkNotNullOrEmpty(key, "key");
+
+        final HttpContent packet = packet(HttpRequestPacket.builder().method(Method.DELETE), key)
+                .httpContentBuilder()
+                .build();
+        return client.invalidating(uriOf(packet),
+                new OrchestrateRequest<Boolean>(client, packet, DELETE_CONVERTER));
+    }
+
+    /**
+     * Returns the collection the requests are made to.
+     *
+     * @return The collection of the requests.
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Fetches the objects for a list of distinct keys with a bounded number of
+     * requests in flight.
+     */
+    private final class GetAll {
+
+        private final CompositeRequest<MultiGetResult<T>> result;
+        private final List<String> keys;
+        /** The objects fetched, in the order of the keys. */
+        private final AtomicReferenceArray<KvObject<T>> objects;
+        /** The index of the next key to request. */
+        private final AtomicInteger nextKey;
+        /** The number of keys that haven't been fetched. */
+        private final AtomicInteger remaining;
+
+        GetAll(final CompositeRequest<MultiGetResult<T>> result, final List<String> keys) {
+            this.result = result;
+            this.keys = keys;
+            this.objects = new AtomicReferenceArray<KvObject<T>>(keys.size());
+            this.nextKey = new AtomicInteger();
+            this.remaining = new AtomicInteger(keys.size());
+        }
+
+        void fetch(final int window) {
+            if (keys.isEmpty()) {
+                finish();
+                return;
+            }
+            for (int i = 0; i < window; i++) {
+                next();
+            }
+        }
+
+        private void next() {
+            final int index = nextKey.getAndIncrement();
+            if (index >= keys.size()) {
+                return;
+            }
+            final OrchestrateRequest<KvObject<T>> request = get(keys.get(index));
+            if (!result.track(request)) {
+                return;
+            }
+            request.on(new ResponseListener<KvObject<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final KvObject<T> object) {
+                    result.untrack(request);
+                    objects.set(index, object);
+                    if (remaining.decrementAndGet() == 0) {
+                        finish();
+                    } else {
+                        next();
+                    }
+                }
+            });
+        }
+
+        private void finish() {
+            final Map<String, KvObject<T>> found = new LinkedHashMap<String, KvObject<T>>(keys.size());
+            final Set<String> missing = new LinkedHashSet<String>();
+            for (int i = 0; i < keys.size(); i++) {
+                final KvObject<T> object = objects.get(i);
+                if (object != null) {
+                    found.put(keys.get(i), object);
+                } else {
+                    missing.add(keys.get(i));
+                }
+            }
+            result.complete(new MultiGetResult<T>(found, missing));
+        }
+
+    }
+
+    private HttpRequestPacket packet(final HttpRequestPacket.Builder builder, final String key) {
+        final HttpRequestPacket packet = builder
+                .uri(prefix.concat(client.encodeKey(key)))
+                .build();
+        // the shared converters read the key of the response from its request
+        packet.setAttribute(KEY_ATTR, key);
+        return packet;
+    }
+
+    private static String uriOf(final HttpContent packet) {
+        return ((HttpRequestPacket) packet.getHttpHeader()).getRequestURI();
+    }
+
+    private static String keyOf(final HttpResponsePacket response) {
+        return (String) response.getRequest().getAttribute(KEY_ATTR);
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.orchestrate.client.Preconditions.checkNoneEmpty;
+
+/**
+ * A set of field paths (e.g. {@code "name"} or {@code "address.city"}) to read
+ * from a JSON object, all other fields are skipped at the token level without
+ * being decoded.
+ */
+final class Projection {
+
+    /** The projected child fields, keyed by field name. */
+    private final Map<String, Projection> children;
+    /** Whether the whole subtree at this path is projected. */
+    private boolean whole;
+
+    private Projection() {
+        this.children = new HashMap<String, Projection>();
+        this.whole = false;
+    }
+
+    static Projection of(final String... fields) {
+        checkNoneEmpty(fields, "fields", "field");
+
+        final Projection root = new Projection();
+        for (final String field : fields) {
+            Projection node = root;
+            for (final String name : field.split("\\.")) {
+                if (node.whole) {
+                    break;
+                }
+                Projection child = node.children.get(name);
+                if (child == null) {
+                    child = new Projection();
+                    node.children.put(name, child);
+                }
+                node = child;
+            }
+            // a shorter path supersedes any deeper paths below it
+            node.whole = true;
+            node.children.clear();
+        }
+        return root;
+    }
+
+    /**
+     * Read the projected fields of the object the {@code parser} is positioned
+     * on, the parser is left on the closing token of the object.
+     *
+     * @param parser The JSON parser positioned on the value to read.
+     * @return An object containing only the projected fields.
+     * @throws IOException If the value could not be read.
+     */
+    ObjectNode read(final JsonParser parser) throws IOException {
+        assert (parser != null);
+
+        final ObjectNode result = JsonNodeFactory.instance.objectNode();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return result;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            final Projection child = children.get(name);
+            if (child == null) {
+                parser.skipChildren();
+            } else if (child.whole) {
+                result.set(name, parser.<JsonNode>readValueAsTree());
+            } else if (token == JsonToken.START_OBJECT) {
+                result.set(name, child.read(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+}
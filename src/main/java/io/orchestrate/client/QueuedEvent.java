@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+
+/**
+ * An event submitted to an {@link EventIngester} to be stored.
+ */
+@ToString
+public final class QueuedEvent {
+
+    /** The collection of the event. */
+    private final String collection;
+    /** The key the event belongs to. */
+    private final String key;
+    /** The type of the event. */
+    private final String type;
+    /** The object to store as the event. */
+    private final Object value;
+    /** The timestamp of the event, {@code null} for the time it's stored. */
+    private final Long timestamp;
+
+    QueuedEvent(final String collection,
+                final String key,
+                final String type,
+                final Object value,
+                @Nullable final Long timestamp) {
+        assert (collection != null);
+        assert (key != null);
+        assert (type != null);
+        assert (value != null);
+
+        this.collection = collection;
+        this.key = key;
+        this.type = type;
+        this.value = value;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the collection of the event.
+     *
+     * @return The collection of the event.
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Returns the key the event belongs to.
+     *
+     * @return The key of the event.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the type of the event.
+     *
+     * @return The type of the event.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the object stored as the event.
+     *
+     * @return The value of the event.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the timestamp of the event.
+     *
+     * @return The timestamp of the event, or {@code null} if the service
+     *         assigns it.
+     */
+    @Nullable
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+}
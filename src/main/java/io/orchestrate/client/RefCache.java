@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.EqualsAndHashCode;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import static io.orchestrate.client.Preconditions.checkNotNegative;
+
+/**
+ * A cache of the objects read by ref, shared by all the clients in the JVM that
+ * are built with {@code cacheRefs(true)}.
+ *
+ * <p>The value of an object at a given ref can never change, so a cached
+ * object is never revalidated or expired, it's only evicted to make room. The
+ * cache is bounded by the approximate number of bytes of the objects it holds
+ * rather than by their number, and the least recently used objects are evicted
+ * first.
+ *
+ * <p>The objects are cached by the service and the account of the client that
+ * read them, so clients for different accounts never share objects.
+ *
+ * <p>Only the raw JSON of each object is cached, and it's decoded again on
+ * each hit, so every caller gets an object of its own that it's free to
+ * change, and an object can be read as any type.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * {@code
+ * RefCache.getInstance().setMaxWeight(256 * 1024 * 1024);
+ * }
+ * </pre>
+ */
+public final class RefCache {
+
+    /** The default maximum weight of the cache, in bytes. */
+    public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The estimated bytes of an entry besides its strings and raw value. */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final RefCache INSTANCE = new RefCache();
+
+    /** The entries in order of access, guarded by this. */
+    private final LinkedHashMap<Key, Entry> entries;
+    /** The maximum weight of the entries, guarded by this. */
+    private long maxWeight;
+    /** The weight of the entries, guarded by this. */
+    private long weight;
+
+    private RefCache() {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        this.maxWeight = DEFAULT_MAX_WEIGHT;
+        this.weight = 0;
+    }
+
+    /**
+     * Returns the cache shared by the clients in the JVM.
+     *
+     * @return The ref cache.
+     */
+    public static RefCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drop all the cached objects.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the maximum weight of the cache.
+     *
+     * @return The maximum number of bytes of the cached objects.
+     */
+    public synchronized long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the number of objects in the cache.
+     *
+     * @return The number of cached objects.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the weight of the objects in the cache, the bytes of the raw
+     * JSON of each object and of its path and ref.
+     *
+     * @return The approximate number of bytes of the cached objects.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * The maximum weight of the cache, defaults to {@link #DEFAULT_MAX_WEIGHT}.
+     * The least recently used objects are evicted if the cache is heavier.
+     *
+     * @param maxWeight The maximum number of bytes of the cached objects.
+     */
+    public synchronized void setMaxWeight(final long maxWeight) {
+        this.maxWeight = checkNotNegative(maxWeight, "maxWeight");
+        evict();
+    }
+
+    /**
+     * Returns the cached object at the {@code uri} of a ref decoded with the
+     * {@code codecs}, or {@code null}.
+     */
+    @Nullable
+    <T> KvObject<T> get(final String scope, final String uri, final Class<T> clazz, final CodecRegistry codecs) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(new Key(scope, uri));
+        }
+        if (entry == null) {
+            return null;
+        }
+        final String rawValue = new String(entry.rawValue, UTF8);
+        try {
+            @SuppressWarnings("unchecked")
+            final T value = (clazz == String.class)
+                    ? (T) rawValue
+                    : codecs.read(entry.rawValue, 0, entry.rawValue.length, clazz);
+            return new KvObject<T>(entry.collection, entry.key, entry.ref, value, rawValue);
+        } catch (final IOException e) {
+            // the value can't be read as this type, read it from the service
+            return null;
+        }
+    }
+
+    void put(final String scope, final String uri, final KvObject<?> object) {
+        assert (object != null);
+
+        if (object.getRawValue() == null) {
+            return;
+        }
+        final byte[] rawValue = object.getRawValue().getBytes(UTF8);
+        final long objectWeight = ENTRY_OVERHEAD + rawValue.length
+                + 2L * (scope.length() + uri.length() + object.getCollection().length()
+                        + object.getKey().length() + object.getRef().length());
+        final Entry entry = new Entry(object.getCollection(), object.getKey(), object.getRef(), rawValue, objectWeight);
+        synchronized (this) {
+            if (objectWeight > maxWeight) {
+                return;
+            }
+            final Entry previous = entries.put(new Key(scope, uri), entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += objectWeight;
+            evict();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Entry> eldest = entries.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+
+        /** The service and account the object was read from. */
+        private final String scope;
+        /** The path of the ref. */
+        private final String uri;
+
+        Key(final String scope, final String uri) {
+            this.scope = scope;
+            this.uri = uri;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final String collection;
+        private final String key;
+        private final String ref;
+        /** The UTF-8 bytes of the raw JSON of the object. */
+        private final byte[] rawValue;
+        private final long weight;
+
+        Entry(final String collection, final String key, final String ref,
+              final byte[] rawValue, final long weight) {
+            this.collection = collection;
+            this.key = key;
+            this.ref = ref;
+            this.rawValue = rawValue;
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.ToString;
+
+/**
+ * The changes found by a refresh of a {@link CollectionMirror}.
+ */
+@ToString
+public final class RefreshResult {
+
+    /** The number of keys new to the mirror. */
+    private final int added;
+    /** The number of keys whose ref changed. */
+    private final int changed;
+    /** The number of keys no longer in the collection. */
+    private final int removed;
+    /** The number of keys whose ref was the same. */
+    private final int unchanged;
+
+    RefreshResult(final int added, final int changed, final int removed, final int unchanged) {
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Returns the number of keys that were added to the collection since the
+     * last refresh.
+     *
+     * @return The number of keys added.
+     */
+    public int getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the number of keys whose objects were changed since the last
+     * refresh, and were fetched again.
+     *
+     * @return The number of keys changed.
+     */
+    public int getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the number of keys that were deleted from the collection since
+     * the last refresh.
+     *
+     * @return The number of keys removed.
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the number of keys whose objects were the same as at the last
+     * refresh, and weren't fetched.
+     *
+     * @return The number of keys unchanged.
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+
+/**
+ * The resource for writing and purging many relations, with a window of
+ * requests in flight at the same time.
+ */
+public class RelationBulkResource {
+
+    /** The default number of requests in flight at the same time. */
+    public static final int DEFAULT_WINDOW = 32;
+
+    private final OrchestrateClient client;
+    /** The number of requests in flight at the same time. */
+    private int window;
+    /** Whether to also write or purge the inverse of each edge. */
+    private boolean inverse;
+
+    RelationBulkResource(final OrchestrateClient client) {
+        assert (client != null);
+
+        this.client = client;
+        this.window = DEFAULT_WINDOW;
+        this.inverse = false;
+    }
+
+    /**
+     * Equivalent to {@code this.putAll(edges, null)}.
+     *
+     * @param edges The edges to write.
+     * @return The bulk put request.
+     * @see #putAll(Iterable, EdgeListener)
+     */
+    public CompositeRequest<EdgeResult> putAll(final Iterable<Edge> edges) {
+        return putAll(edges, null);
+    }
+
+    /**
+     * Write the {@code edges}, with up to the 'window' of requests in flight at
+     * the same time. The edges are read from their iterator as the requests
+     * are sent, so they can be streamed from a source that doesn't fit in
+     * memory.
+     *
+     * <p>A failure to write an edge doesn't stop the rest of the edges from
+     * being written, the request completes with the edges that failed.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * EdgeResult result =
+     *         client.bulkRelations()
+     *               .inverse(true)
+     *               .putAll(edges)
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param edges The edges to write.
+     * @param listener The listener for the outcome of each edge, may be
+     *                 {@code null}.
+     * @return The bulk put request.
+     */
+    public CompositeRequest<EdgeResult> putAll(
+            final @NonNull Iterable<Edge> edges, @Nullable final EdgeListener listener) {
+        return new Run(edges.iterator(), listener, false).start();
+    }
+
+    /**
+     * Equivalent to {@code this.purgeAll(edges, null)}.
+     *
+     * @param edges The edges to purge.
+     * @return The bulk purge request.
+     * @see #purgeAll(Iterable, EdgeListener)
+     */
+    public CompositeRequest<EdgeResult> purgeAll(final Iterable<Edge> edges) {
+        return purgeAll(edges, null);
+    }
+
+    /**
+     * Purge the {@code edges}, with up to the 'window' of requests in flight
+     * at the same time.
+     *
+     * @param edges The edges to purge.
+     * @param listener The listener for the outcome of each edge, may be
+     *                 {@code null}.
+     * @return The bulk purge request.
+     * @see #putAll(Iterable, EdgeListener)
+     */
+    public CompositeRequest<EdgeResult> purgeAll(
+            final @NonNull Iterable<Edge> edges, @Nullable final EdgeListener listener) {
+        return new Run(edges.iterator(), listener, true).start();
+    }
+
+    /**
+     * Whether to also write or purge the inverse of each edge, so that the
+     * relation can be followed from both objects.
+     *
+     * @param inverse If {@code true} handle the inverse edges too.
+     * @return This resource.
+     */
+    public RelationBulkResource inverse(final boolean inverse) {
+        this.inverse = inverse;
+        return this;
+    }
+
+    /**
+     * The number of requests to have in flight at the same time, defaults to
+     * {@link #DEFAULT_WINDOW}.
+     *
+     * @param window The number of requests in flight at the same time.
+     * @return This resource.
+     */
+    public RelationBulkResource window(final int window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Writes or purges the edges of an iterator with a bounded number of
+     * requests in flight.
+     */
+    private final class Run {
+
+        private final Iterator<Edge> edges;
+        private final EdgeListener listener;
+        private final boolean purge;
+        private final boolean inverse;
+        private final int window;
+        private final CompositeRequest<EdgeResult> result;
+        private final AtomicLong succeeded;
+        private final Map<Edge, Throwable> failed;
+        /** The edge whose inverse is still to be sent, guarded by this. */
+        private Edge inverseOf;
+        /** Whether the iterator has been used up, guarded by this. */
+        private boolean exhausted;
+        /** The number of requests in flight, guarded by this. */
+        private int inFlight;
+
+        Run(final Iterator<Edge> edges, @Nullable final EdgeListener listener, final boolean purge) {
+            this.edges = edges;
+            this.listener = listener;
+            this.purge = purge;
+            this.inverse = RelationBulkResource.this.inverse;
+            this.window = RelationBulkResource.this.window;
+            this.result = new CompositeRequest<EdgeResult>();
+            this.succeeded = new AtomicLong();
+            this.failed = new ConcurrentHashMap<Edge, Throwable>();
+        }
+
+        CompositeRequest<EdgeResult> start() {
+            for (int i = 0; i < window; i++) {
+                if (!sendNext()) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private boolean sendNext() {
+            final Edge edge;
+            final boolean inverted;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return false;
+                }
+                if (inverseOf != null) {
+                    edge = inverseOf;
+                    inverted = true;
+                    inverseOf = null;
+                } else {
+                    try {
+                        exhausted = exhausted || !edges.hasNext();
+                        edge = exhausted ? null : edges.next();
+                    } catch (final RuntimeException e) {
+                        result.fail(e);
+                        return false;
+                    }
+                    if (edge == null) {
+                        if (!exhausted) {
+                            result.fail(new NullPointerException("An edge can't be null."));
+                        } else if (inFlight == 0) {
+                            result.complete(new EdgeResult(succeeded.get(), failed));
+                        }
+                        return false;
+                    }
+                    inverted = false;
+                    inverseOf = inverse ? edge : null;
+                }
+                inFlight++;
+            }
+            send(edge, inverted);
+            return true;
+        }
+
+        private void send(final Edge edge, final boolean inverted) {
+            final Edge reported = inverted ? edge.inverse() : edge;
+            final OrchestrateRequest<Boolean> request;
+            try {
+                final RelationResource relation = client
+                        .relation(edge.getSourceCollection(), edge.getSourceKey())
+                        .to(edge.getDestCollection(), edge.getDestKey())
+                        .invert(inverted);
+                request = purge ? relation.purge(edge.getKind()) : relation.put(edge.getKind());
+            } catch (final RuntimeException e) {
+                done(reported, e);
+                return;
+            }
+            if (!result.track(request)) {
+                return;
+            }
+            request.on(new ResponseListener<Boolean>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.untrack(request);
+                    done(reported, error);
+                }
+
+                @Override
+                public void onSuccess(final Boolean ok) {
+                    result.untrack(request);
+                    done(reported, ok ? null : new ClientException("The relation was not changed."));
+                }
+            });
+        }
+
+        private void done(final Edge edge, @Nullable final Throwable error) {
+            try {
+                if (error == null) {
+                    succeeded.incrementAndGet();
+                    if (listener != null) {
+                        listener.onSuccess(edge);
+                    }
+                } else {
+                    failed.put(edge, error);
+                    if (listener != null) {
+                        listener.onFailure(edge, error);
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    inFlight--;
+                }
+                sendNext();
+            }
+        }
+
+    }
+
+}
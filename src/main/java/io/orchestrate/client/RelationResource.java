@@ -51,6 +51,8 @@ public class RelationResource extends BaseResource {
     private int limit;
     /** The offset to start graph results at. */
     private int offset;
+    /** The fields of the values to read, or {@code null} to read all fields. */
+    private Projection projection;
 
     RelationResource(final OrchestrateClient client,
             final JacksonMapper mapper,
@@ -92,10 +94,15 @@ public class RelationResource extends BaseResource {
                 "'destCollection' and 'destKey' not valid in GET query.");
         checkNoneEmpty(kinds, "kinds", "kind");
 
-        final String uri = client.uri(sourceCollection, sourceKey, "relations").concat("/" + client.encode(kinds));
-
         final String query = "limit=".concat(limit + "")
                 .concat("&offset=").concat(offset + "");
+        return list(clazz, sourceCollection, sourceKey, query, projection, limit, kinds);
+    }
+
+    <T> OrchestrateRequest<RelationList<T>> list(
+            final Class<T> clazz, final String sourceCollection, final String sourceKey, final String query,
+            final Projection projection, final int limit, final String... kinds) {
+        final String uri = client.uri(sourceCollection, sourceKey, "relations").concat("/" + client.encode(kinds));
 
         final HttpContent packet = HttpRequestPacket.builder()
                 .method(Method.GET)
@@ -115,16 +122,23 @@ public class RelationResource extends BaseResource {
                     return null;
                 }
 
-                final JsonNode jsonNode = toJsonNode(response);
+                final List<KvObject<T>> relatedObjects = new ArrayList<KvObject<T>>(limit);
+                final ResponseConverterUtil.Page page = ResponseConverterUtil.readPage(
+                        codecs, response.getContent(), clazz, projection,
+                        new ResponseConverterUtil.ResultHandler<T>() {
+                            @Override
+                            public void handle(final Result<T> result) {
+                                relatedObjects.add(result.getKvObject());
+                            }
+                        });
 
                 final OrchestrateRequest<RelationList<T>> next;
-                if (jsonNode.has("next")) {
-                    final String page = jsonNode.get("next").asText();
-                    final URI url = URI.create(page);
+                if (page.next != null) {
+                    final URI url = URI.create(page.next);
                     final HttpContent packet = HttpRequestPacket.builder()
                             .method(Method.GET)
                             .uri(uri)
-                            .query(url.getQuery())
+                            .query(url.getRawQuery())
                             .build()
                             .httpContentBuilder()
                             .build();
@@ -133,18 +147,65 @@ public class RelationResource extends BaseResource {
                     next = null;
                 }
 
-                final int count = jsonNode.path("count").asInt();
-                final List<KvObject<T>> relatedObjects = new ArrayList<KvObject<T>>(count);
-
-                for (JsonNode node : jsonNode.path("results")) {
-                    relatedObjects.add(toKvObject(node, clazz));
-                }
-
                 return new RelationList<T>(relatedObjects, next);
             }
         });
     }
 
+    /**
+     * Walk the graph of relations from the source key breadth-first, one hop
+     * per relation kind added to the traversal. The 'limit' and projection
+     * settings of this resource apply to the requests of the traversal.
+     *
+     * @param clazz Type information for deserializing to type {@code T} at
+     *              runtime.
+     * @param <T> The type to deserialize the related objects to.
+     * @return The traversal resource.
+     * @see TraversalResource#get(ItemListener)
+     */
+    public <T> TraversalResource<T> traverse(final Class<T> clazz) {
+        checkNotNull(clazz, "clazz");
+        checkArgument(destCollection == null && destKey == null,
+                "'destCollection' and 'destKey' not valid in a traversal.");
+        checkArgument(limit > 0, "'limit' must be greater than zero for a traversal.");
+
+        return new TraversalResource<T>(this, clazz, sourceCollection, sourceKey, limit, projection);
+    }
+
+    /**
+     * Iterate over the pages of objects related to a key in the Orchestrate
+     * service, keeping up to {@code prefetch} pages in flight ahead of the page
+     * being handled.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * Paginator<RelationList<String>> pages =
+     *         client.relation("someCollection", "someKey")
+     *               .paginate(String.class, 2, "someKind");
+     * }
+     * </pre>
+     *
+     * @param clazz Type information for deserializing to type {@code T} at
+     *              runtime.
+     * @param prefetch The number of pages to fetch ahead of the consumer.
+     * @param kinds The name of the relationships to traverse to the related
+     *              objects.
+     * @param <T> The type to deserialize the response from the request to.
+     * @return The paginator over the pages of related objects.
+     */
+    public <T> Paginator<RelationList<T>> paginate(
+            final Class<T> clazz, final int prefetch, final String... kinds) {
+        checkArgument(prefetch > 0, "'prefetch' must be greater than zero.");
+
+        return new Paginator<RelationList<T>>(get(clazz, kinds), prefetch) {
+            @Override
+            OrchestrateRequest<RelationList<T>> nextOf(final RelationList<T> page) {
+                return page.getNext();
+            }
+        };
+    }
+
     /**
      * Store a relationship between two objects in the Orchestrate service.
      *
@@ -309,6 +370,25 @@ public class RelationResource extends BaseResource {
         return this;
     }
 
+    /**
+     * Read only the specified fields of the values of the related objects, all
+     * other fields are skipped while the response is parsed. A field in a
+     * nested object is given by its path, e.g. {@code "address.city"}. This
+     * property is ignored in {@code #put(...)} and {@code #purge(...)}
+     * requests.
+     *
+     * <p>The projected fields are decoded into the type requested in {@link
+     * #get(Class, String...)}, to read them into a compact map request {@code
+     * Map.class}.
+     *
+     * @param fields The paths of the fields to read.
+     * @return This request.
+     */
+    public RelationResource project(final String... fields) {
+        this.projection = Projection.of(fields);
+        return this;
+    }
+
     private static JsonNode parseJson(final String json, final ObjectMapper mapper)
             throws IOException {
         assert (mapper != null);
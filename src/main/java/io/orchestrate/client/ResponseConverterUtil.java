@@ -15,10 +15,14 @@
  */
 package io.orchestrate.client;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.glassfish.grizzly.Buffer;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * A utility class with helper methods for converting JSON response data from
@@ -26,46 +30,200 @@ import java.io.IOException;
  */
 final class ResponseConverterUtil {
 
-    static <T> KvObject<T> jsonToKvObject(
-            final ObjectMapper mapper, final JsonNode jsonNode, final Class<T> clazz)
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * A callback for each result read from a page of results.
+     *
+     * @param <T> The type to deserialize the values of the results to.
+     */
+    interface ResultHandler<T> {
+
+        void handle(final Result<T> result) throws IOException;
+
+    }
+
+    /**
+     * The top-level fields of a page of list, search or relation results.
+     */
+    static final class Page {
+
+        /** The number of results in the page. */
+        int count;
+        /** The total number of results, present in search results. */
+        int totalCount;
+        /** The URL of the next page of results. */
+        @Nullable String next;
+
+    }
+
+    /**
+     * Read a page of results (e.g.):
+     * {"count":1,"total_count":1,"results":[{...}],"next":"/v0/..."}
+     */
+    static <T> Page readPage(
+            final CodecRegistry codecs, final Buffer content, final Class<T> clazz,
+            @Nullable final Projection projection, final ResultHandler<T> handler)
             throws IOException {
-        assert (mapper != null);
-        assert (jsonNode != null);
+        assert (content != null);
+
+        final byte[] json;
+        final int offset;
+        final int length = content.remaining();
+        if (content.hasArray()) {
+            json = content.array();
+            offset = content.arrayOffset() + content.position();
+        } else {
+            json = new byte[length];
+            offset = 0;
+            content.get(json);
+        }
+        return readPage(codecs, json, offset, length, clazz, projection, handler);
+    }
+
+    static <T> Page readPage(
+            final CodecRegistry codecs, final byte[] json, final int offset, final int length,
+            final Class<T> clazz, @Nullable final Projection projection, final ResultHandler<T> handler)
+            throws IOException {
+        assert (codecs != null);
+        assert (json != null);
         assert (clazz != null);
+        assert (handler != null);
 
-        // parse the PATH structure (e.g.):
-        // {"collection":"coll","key":"aKey","ref":"someRef"}
-        final JsonNode path = jsonNode.get("path");
-        final String collection = path.get("collection").asText();
-        final String key = path.get("key").asText();
-        final String ref = path.get("ref").asText();
+        final Page page = new Page();
+        final JsonParser parser = codecs.getMapper().getFactory().createParser(json, offset, length);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object for the page of results.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if ("count".equals(field)) {
+                    page.count = parser.getValueAsInt();
+                } else if ("total_count".equals(field)) {
+                    page.totalCount = parser.getValueAsInt();
+                } else if ("next".equals(field)) {
+                    page.next = parser.getValueAsString();
+                } else if ("results".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        handler.handle(readResult(codecs, parser, json, offset, clazz, projection));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } finally {
+            parser.close();
+        }
+        return page;
+    }
 
-        // parse result structure (e.g.):
-        // {"path":{...},"value":{}}
-        final JsonNode valueNode = jsonNode.get("value");
+    /**
+     * Read the page-level fields of a page of results that was streamed through
+     * the {@code splitter}.
+     */
+    static Page readEnvelope(final CodecRegistry codecs, final ResultsSplitter splitter)
+            throws IOException {
+        assert (splitter != null);
 
-        return jsonToKvObject(mapper, valueNode, clazz, collection, key, ref);
+        return readPage(codecs, splitter.getEnvelope(), 0, splitter.getEnvelopeLength(), Object.class, null,
+                new ResultHandler<Object>() {
+                    @Override
+                    public void handle(final Result<Object> result) {
+                        // the results were streamed and aren't in the envelope
+                    }
+                });
     }
 
-    @SuppressWarnings("unchecked")
-    public static <T> KvObject<T> jsonToKvObject(ObjectMapper mapper, JsonNode valueNode, Class<T> clazz,
-                                                 String collection, String key, String ref) throws IOException {
-        assert (mapper != null);
-        assert (clazz != null);
+    static <T> Result<T> readResult(
+            final CodecRegistry codecs, final byte[] json, final int length,
+            final Class<T> clazz, @Nullable final Projection projection) throws IOException {
+        assert (codecs != null);
+        assert (json != null);
 
-        final KvMetadata metadata = new KvMetadata(collection, key, ref);
+        final JsonParser parser = codecs.getMapper().getFactory().createParser(json, 0, length);
+        try {
+            parser.nextToken();
+            return readResult(codecs, parser, json, 0, clazz, projection);
+        } finally {
+            parser.close();
+        }
+    }
 
+    /**
+     * Read a single result (e.g.):
+     * {"path":{"collection":"coll","key":"aKey","ref":"someRef"},"value":{},"score":1.0}
+     *
+     * <p>The {@code parser} must be positioned on the opening token of the
+     * result and reading from {@code json} starting at {@code offset}, it is
+     * left on the closing token of the result.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Result<T> readResult(
+            final CodecRegistry codecs, final JsonParser parser, final byte[] json, final int offset,
+            final Class<T> clazz, @Nullable final Projection projection) throws IOException {
+        String collection = null;
+        String key = null;
+        String ref = null;
         String rawValue = null;
         T value = null;
-        if (valueNode != null) {
-            rawValue = mapper.writeValueAsString(valueNode);
+        double score = 0.0;
+        Double distance = null;
 
-            value = (clazz == String.class)
-                    ? (T) rawValue
-                    : valueNode.traverse(mapper).readValueAs(clazz);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if ("path".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String pathField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("collection".equals(pathField)) {
+                        collection = parser.getValueAsString();
+                    } else if ("key".equals(pathField)) {
+                        key = parser.getValueAsString();
+                    } else if ("ref".equals(pathField)) {
+                        ref = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if ("value".equals(field) && token != JsonToken.VALUE_NULL) {
+                if (projection != null) {
+                    final JsonNode valueNode = projection.read(parser);
+                    rawValue = codecs.getMapper().writeValueAsString(valueNode);
+                    value = (clazz == String.class)
+                            ? (T) rawValue
+                            : codecs.read(valueNode, clazz);
+                } else if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    // pass the raw bytes of the value through and decode them
+                    // directly without building an intermediate tree
+                    final int start = offset + (int) parser.getCurrentLocation().getByteOffset() - 1;
+                    parser.skipChildren();
+                    final int end = offset + (int) parser.getCurrentLocation().getByteOffset();
+                    rawValue = new String(json, start, end - start, UTF8);
+                    value = (clazz == String.class)
+                            ? (T) rawValue
+                            : codecs.read(json, start, end - start, clazz);
+                } else {
+                    final JsonNode valueNode = parser.readValueAsTree();
+                    rawValue = codecs.getMapper().writeValueAsString(valueNode);
+                    value = (clazz == String.class)
+                            ? (T) rawValue
+                            : codecs.read(valueNode, clazz);
+                }
+            } else if ("score".equals(field)) {
+                score = parser.getValueAsDouble(0);
+            } else if ("distance".equals(field)) {
+                distance = parser.getValueAsDouble(0);
+            } else {
+                parser.skipChildren();
+            }
         }
 
         // TODO Is there value in always having the raw string value available ON the KvObject?
-        return new KvObject<T>(metadata, value, rawValue);
+        final KvObject<T> kvObject = new KvObject<T>(collection, key, ref, value, rawValue);
+        return new Result<T>(kvObject, score, distance);
     }
+
 }
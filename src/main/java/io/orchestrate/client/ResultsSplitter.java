@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.Buffer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Splits the body of a page of results (e.g. {@code {"count":2,"results":[{...},{...}]}})
+ * into its results as the chunks of the body arrive, each result is handed
+ * on as soon as its closing brace has been seen.
+ *
+ * <p>The bytes outside of the "results" array are kept as the envelope of the
+ * page, e.g. {@code {"count":2,"results":[]}}, so that the page-level fields
+ * can be read once the body is complete.
+ */
+abstract class ResultsSplitter implements ContentListener {
+
+    private static final byte[] RESULTS = new byte[] {'r', 'e', 's', 'u', 'l', 't', 's'};
+
+    /** The bytes of the page outside of the results. */
+    private byte[] envelope;
+    private int envelopeLength;
+    /** The bytes of the result being read. */
+    private byte[] result;
+    private int resultLength;
+    /** The last string read at the top level of the page, i.e. a field name. */
+    private byte[] name;
+    private int nameLength;
+    /** The depth of nesting of the current byte. */
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private boolean inResults;
+
+    ResultsSplitter() {
+        this.envelope = new byte[64];
+        this.result = new byte[1024];
+        this.name = new byte[RESULTS.length];
+    }
+
+    /**
+     * Invoked with the bytes of each complete result, the bytes are only valid
+     * until the method returns.
+     *
+     * @param json The buffer with the bytes of the result.
+     * @param length The number of bytes of the result.
+     * @throws IOException If the result could not be read.
+     */
+    abstract void onResult(final byte[] json, final int length) throws IOException;
+
+    /** {@inheritDoc} */
+    @Override
+    public void onContent(final Buffer chunk) throws IOException {
+        while (chunk.hasRemaining()) {
+            accept(chunk.get());
+        }
+    }
+
+    byte[] getEnvelope() {
+        return envelope;
+    }
+
+    int getEnvelopeLength() {
+        return envelopeLength;
+    }
+
+    private void accept(final byte b) throws IOException {
+        final boolean inResult = inResults && depth > 2;
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+            } else if (depth == 1 && nameLength < name.length) {
+                name[nameLength] = b;
+            }
+            if (depth == 1) {
+                nameLength++;
+            }
+        } else if (b == '"') {
+            inString = true;
+            if (depth == 1) {
+                nameLength = 0;
+            }
+        } else if (b == '{' || b == '[') {
+            depth++;
+            if (depth == 2 && b == '[' && isResultsField()) {
+                inResults = true;
+                envelope(b);
+                return;
+            }
+        } else if (b == '}' || b == ']') {
+            depth--;
+            if (inResults && depth == 2) {
+                result(b);
+                onResult(result, resultLength);
+                resultLength = 0;
+                return;
+            }
+            if (inResults && depth == 1) {
+                inResults = false;
+            }
+        }
+
+        if (inResults && (inResult || depth > 2)) {
+            result(b);
+        } else if (!inResults) {
+            envelope(b);
+        }
+    }
+
+    private boolean isResultsField() {
+        // the closing quote of the name was counted in its length
+        return (nameLength - 1) == RESULTS.length && Arrays.equals(name, RESULTS);
+    }
+
+    private void envelope(final byte b) {
+        if (envelopeLength == envelope.length) {
+            envelope = Arrays.copyOf(envelope, envelopeLength * 2);
+        }
+        envelope[envelopeLength++] = b;
+    }
+
+    private void result(final byte b) {
+        if (resultLength == result.length) {
+            result = Arrays.copyOf(result, resultLength * 2);
+        }
+        result[resultLength++] = b;
+    }
+
+}
@@ -70,6 +70,10 @@ public class SearchResults<T> implements Iterable<Result<T>> {
         return totalCount;
     }
 
+    List<Result<T>> results() {
+        return results;
+    }
+
     /** {@inheritDoc} */
     @Override
     public final Iterator<Result<T>> iterator() {
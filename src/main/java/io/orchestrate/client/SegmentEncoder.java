@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.util.UEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes the segments of request paths, with bounded caches of the encoded
+ * forms of collection names and (optionally) keys.
+ *
+ * <p>Strings made only of characters that are never escaped are returned as
+ * they are without going through the encoder.
+ */
+final class SegmentEncoder {
+
+    /** The maximum number of encoded collection names to cache. */
+    static final int COLLECTION_CACHE_SIZE = 256;
+
+    private static final ThreadLocal<UEncoder> ENCODER_HOLDER = new ThreadLocal<UEncoder>(){
+        @Override
+        protected UEncoder initialValue() {
+            return new UEncoder();
+        }
+    };
+
+    /** The ASCII characters left unescaped by the encoder. */
+    private static final boolean[] SAFE_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            SAFE_CHARS[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            SAFE_CHARS[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            SAFE_CHARS[c] = true;
+        }
+        for (final char c : "!$'()*,-._".toCharArray()) {
+            SAFE_CHARS[c] = true;
+        }
+    }
+
+    /** The cache of encoded collection names. */
+    private final Cache collections;
+    /** The cache of encoded keys, {@code null} if keys aren't cached. */
+    private final Cache keys;
+
+    SegmentEncoder(final int keyCacheSize) {
+        assert (keyCacheSize >= 0);
+
+        this.collections = new Cache(COLLECTION_CACHE_SIZE);
+        this.keys = (keyCacheSize > 0) ? new Cache(keyCacheSize) : null;
+    }
+
+    String encodeCollection(final String collection) {
+        return collections.encode(collection);
+    }
+
+    String encodeKey(final String key) {
+        return (keys != null) ? keys.encode(key) : encode(key);
+    }
+
+    static String encode(final String segment) {
+        assert (segment != null);
+
+        if (isSafe(segment)) {
+            return segment;
+        }
+        return ENCODER_HOLDER.get().encodeURL(segment);
+    }
+
+    private static boolean isSafe(final String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            final char c = segment.charAt(i);
+            if (c >= SAFE_CHARS.length || !SAFE_CHARS[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A bounded cache of encoded segments keyed by the raw segment, the cache
+     * is cleared once it grows past its bound so that a burst of one-off
+     * segments can't pin memory.
+     */
+    private static final class Cache {
+
+        /** The maximum number of encoded segments to hold. */
+        private final int maxSize;
+        /** The encoded segments, keyed by the raw segment. */
+        private final ConcurrentMap<String, String> encoded;
+
+        Cache(final int maxSize) {
+            assert (maxSize > 0);
+
+            this.maxSize = maxSize;
+            this.encoded = new ConcurrentHashMap<String, String>();
+        }
+
+        String encode(final String segment) {
+            String result = encoded.get(segment);
+            if (result == null) {
+                result = SegmentEncoder.encode(segment);
+                if (encoded.size() >= maxSize) {
+                    encoded.clear();
+                }
+                encoded.put(segment, result);
+            }
+            return result;
+        }
+
+    }
+
+}
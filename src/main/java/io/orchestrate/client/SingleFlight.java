@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent identical GET requests, so that callers asking for the
+ * same path and type while a request for it is in flight share that request
+ * and its decoded response instead of making their own.
+ *
+ * <p>Each caller is handed its own request that follows the shared one, so a
+ * caller that cancels or times out doesn't affect the others.
+ *
+ * <p>A shared request is only joined until it's {@code maxAge} old, a caller
+ * that comes later sends a request of its own which is shared in its place.
+ * The client has no read timeout, so a request whose response never comes
+ * would otherwise hold up every later caller for the same path.
+ */
+final class SingleFlight {
+
+    /** The shared requests in flight, by path and type. */
+    private final ConcurrentMap<Key, Flight> inFlight;
+    /** The time a shared request may be joined for, in nanoseconds. */
+    private final long maxAgeNanos;
+
+    SingleFlight(final long maxAge, final TimeUnit unit) {
+        assert (maxAge > 0);
+        assert (unit != null);
+
+        this.inFlight = new ConcurrentHashMap<Key, Flight>();
+        this.maxAgeNanos = unit.toNanos(maxAge);
+    }
+
+    /**
+     * Returns a request that follows the request in flight for the same
+     * {@code uri} and {@code clazz}, the unsent {@code request} is sent and
+     * shared if there's none in flight.
+     */
+    @SuppressWarnings("unchecked")
+    <T> OrchestrateRequest<T> join(final String uri, final Class<?> clazz, final OrchestrateRequest<T> request) {
+        assert (uri != null);
+        assert (clazz != null);
+        assert (request != null);
+
+        final Key key = new Key(uri, clazz);
+        final Flight flight = new Flight(request, System.nanoTime());
+        while (true) {
+            final Flight leader = inFlight.putIfAbsent(key, flight);
+            if (leader == null) {
+                break;
+            }
+            if (flight.startedAt - leader.startedAt - maxAgeNanos < 0) {
+                return new OrchestrateRequest<T>((OrchestrateRequest<T>) leader.request);
+            }
+            // the shared request is too old to join, share this one instead
+            if (inFlight.replace(key, leader, flight)) {
+                break;
+            }
+        }
+
+        request.on(new ResponseListener<T>() {
+            @Override
+            public void onFailure(final Throwable error) {
+                inFlight.remove(key, flight);
+            }
+
+            @Override
+            public void onSuccess(final T object) {
+                inFlight.remove(key, flight);
+            }
+        });
+        final OrchestrateRequest<T> follower = new OrchestrateRequest<T>(request);
+        request.getAsync();
+        return follower;
+    }
+
+    /**
+     * Returns the number of shared requests in flight.
+     */
+    int size() {
+        return inFlight.size();
+    }
+
+    private static final class Flight {
+
+        private final OrchestrateRequest<?> request;
+        /** The time the request was sent, in nanoseconds. */
+        private final long startedAt;
+
+        Flight(final OrchestrateRequest<?> request, final long startedAt) {
+            this.request = request;
+            this.startedAt = startedAt;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String uri;
+        private final Class<?> clazz;
+
+        Key(final String uri, final Class<?> clazz) {
+            this.uri = uri;
+            this.clazz = clazz;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return uri.equals(other.uri) && clazz.equals(other.clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * uri.hashCode()) + clazz.hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import lombok.NonNull;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Method;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * The resource for exporting the KV objects of a collection, or the results of
+ * a search query, to a snapshot file on the local file system.
+ *
+ * <p>A snapshot is a file of newline delimited JSON, with one line per object:
+ * <pre>
+ * {"key":"someKey","ref":"someRef","value":{...}}
+ * </pre>
+ *
+ * <p>The results are split out of each page as it arrives and the bytes of
+ * their values are copied to the file as they were received, the values are
+ * never deserialized. The pages are requested one after another and written
+ * through a buffer to the channel of the file, so the export holds no more
+ * than a page of results in memory no matter the size of the collection.
+ *
+ * <p>The snapshot is written to a temporary file next to the target, which
+ * replaces the target once the export has succeeded, so an export that fails
+ * part way never leaves a truncated snapshot behind.
+ */
+public class SnapshotExporter extends BaseResource {
+
+    /** The default number of objects to request per page. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /** The size of the buffer of the records to write to the file. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte[] KEY = "{\"key\":".getBytes(UTF8);
+    private static final byte[] REF = ",\"ref\":".getBytes(UTF8);
+    private static final byte[] VALUE = ",\"value\":".getBytes(UTF8);
+    private static final byte[] END = "}\n".getBytes(UTF8);
+    private static final byte[] NULL = "null".getBytes(UTF8);
+    private static final byte[] QUOTE = "\"".getBytes(UTF8);
+
+    /** The collection to export. */
+    private final String collection;
+    /** The number of objects to request per page. */
+    private int limit;
+    /** The search query for the objects to export, or {@code null} for all. */
+    private @Nullable String luceneQuery;
+    /** Whether to compress the snapshot with gzip. */
+    private boolean gzip;
+
+    SnapshotExporter(final OrchestrateClient client, final JacksonMapper mapper, final String collection) {
+        super(client, mapper);
+        assert (collection != null);
+
+        this.collection = collection;
+        this.limit = DEFAULT_LIMIT;
+        this.luceneQuery = null;
+        this.gzip = false;
+    }
+
+    /**
+     * Whether to compress the snapshot with gzip, defaults to {@code false}.
+     *
+     * @param gzip If {@code true} the snapshot is compressed.
+     * @return This resource.
+     */
+    public SnapshotExporter gzip(final boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * The number of objects to request per page, this value cannot exceed 100.
+     *
+     * @param limit The number of objects per page.
+     * @return This resource.
+     */
+    public SnapshotExporter limit(final int limit) {
+        checkArgument(limit > 0, "'limit' must be greater than zero.");
+
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Export only the objects that match a search query, instead of every
+     * object in the collection.
+     *
+     * @param luceneQuery The lucene search query.
+     * @return This resource.
+     */
+    public SnapshotExporter query(final String luceneQuery) {
+        this.luceneQuery = checkNotNullOrEmpty(luceneQuery, "luceneQuery");
+        return this;
+    }
+
+    /**
+     * Write the snapshot to the {@code file}, replacing the file if it exists.
+     * The request completes with the number of objects written.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * long count =
+     *         client.exportSnapshot("someCollection")
+     *               .gzip(true)
+     *               .writeTo(Paths.get("someCollection.ndjson.gz"))
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param file The path of the snapshot file.
+     * @return The export request.
+     * @throws IOException If the snapshot file could not be created.
+     */
+    public CompositeRequest<Long> writeTo(final @NonNull Path file) throws IOException {
+        final Path absolute = file.toAbsolutePath();
+        final Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+
+        final WritableByteChannel channel;
+        try {
+            final FileChannel fileChannel = FileChannel.open(temp,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE))
+                    : fileChannel;
+        } catch (final IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        final String query;
+        if (luceneQuery != null) {
+            query = "query=".concat(client.encode(luceneQuery))
+                    .concat("&limit=").concat(Integer.toString(limit));
+        } else {
+            query = "limit=".concat(Integer.toString(limit)).concat("&values=true");
+        }
+
+        final Export export = new Export(channel, temp, absolute);
+        export.next(query);
+        return export.result;
+    }
+
+    /**
+     * Requests the pages of the export one after another and writes their
+     * results to the snapshot. Only one page is in flight at a time, so the
+     * records are written by one thread at a time.
+     */
+    private final class Export {
+
+        private final WritableByteChannel channel;
+        private final Path temp;
+        private final Path file;
+        private final String uri;
+        private final CompositeRequest<Long> result;
+        private final ByteBuffer buffer;
+        /** The number of records written, guarded by the order of the pages. */
+        private long count;
+        /** Whether the export has been aborted, guarded by this. */
+        private boolean aborted;
+
+        Export(final WritableByteChannel channel, final Path temp, final Path file) {
+            this.channel = channel;
+            this.temp = temp;
+            this.file = file;
+            this.uri = client.uri(collection);
+            this.result = new CompositeRequest<Long>();
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.count = 0;
+            this.aborted = false;
+            // the listeners of the result aren't told of a cancel, release the file here
+            result.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    abort();
+                }
+            });
+        }
+
+        void next(final String query) {
+            final HttpContent packet = HttpRequestPacket.builder()
+                    .method(Method.GET)
+                    .uri(uri)
+                    .query(query)
+                    .build()
+                    .httpContentBuilder()
+                    .build();
+
+            final ResultsSplitter splitter = new ResultsSplitter() {
+                @Override
+                void onResult(final byte[] json, final int length) throws IOException {
+                    write(json, length);
+                }
+            };
+
+            final OrchestrateRequest<String> request = new OrchestrateRequest<String>(client, packet,
+                    new ResponseConverter<String>() {
+                        @Override
+                        public String from(final HttpContent response) throws IOException {
+                            final int status = ((HttpResponsePacket) response.getHttpHeader()).getStatus();
+                            assert (status == 200);
+
+                            final ResponseConverterUtil.Page page =
+                                    ResponseConverterUtil.readEnvelope(codecs, splitter);
+                            // the query of the next page is sent as it was given, still encoded
+                            return (page.next != null) ? URI.create(page.next).getRawQuery() : null;
+                        }
+                    }, splitter, false);
+            if (!result.track(request)) {
+                abort();
+                return;
+            }
+            request.on(new ResponseListener<String>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                    abort();
+                }
+
+                @Override
+                public void onSuccess(final String nextQuery) {
+                    result.untrack(request);
+                    if (nextQuery != null) {
+                        next(nextQuery);
+                    } else {
+                        finish();
+                    }
+                }
+            }).getAsync();
+        }
+
+        /** Write a result, e.g. {"path":{"key":"aKey","ref":"someRef"},"value":{}}, as a record. */
+        private void write(final byte[] json, final int length) throws IOException {
+            String key = null;
+            String ref = null;
+            int valueStart = 0;
+            int valueEnd = 0;
+            byte[] scalar = NULL;
+
+            final JsonParser parser = codecs.getMapper().getFactory().createParser(json, 0, length);
+            try {
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    final JsonToken token = parser.nextToken();
+                    if ("path".equals(field) && token == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            final String pathField = parser.getCurrentName();
+                            parser.nextToken();
+                            if ("key".equals(pathField)) {
+                                key = parser.getValueAsString();
+                            } else if ("ref".equals(pathField)) {
+                                ref = parser.getValueAsString();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else if ("value".equals(field)) {
+                        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                            // the parser is just past the opening token of the value
+                            valueStart = (int) parser.getCurrentLocation().getByteOffset() - 1;
+                            parser.skipChildren();
+                            valueEnd = (int) parser.getCurrentLocation().getByteOffset();
+                        } else {
+                            scalar = codecs.getMapper().writeValueAsBytes(parser.readValueAsTree());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+            if (key == null) {
+                throw new IOException("Expected a key in the result.");
+            }
+
+            final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+            put(KEY);
+            putString(encoder.quoteAsUTF8(key));
+            put(REF);
+            if (ref != null) {
+                putString(encoder.quoteAsUTF8(ref));
+            } else {
+                put(NULL);
+            }
+            put(VALUE);
+            if (valueEnd > valueStart) {
+                put(json, valueStart, valueEnd - valueStart);
+            } else {
+                put(scalar);
+            }
+            put(END);
+            count++;
+        }
+
+        private void putString(final byte[] quoted) throws IOException {
+            put(QUOTE);
+            put(quoted);
+            put(QUOTE);
+        }
+
+        private void put(final byte[] bytes) throws IOException {
+            put(bytes, 0, bytes.length);
+        }
+
+        private void put(final byte[] bytes, final int offset, final int length) throws IOException {
+            int written = 0;
+            while (written < length) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                final int n = Math.min(buffer.remaining(), length - written);
+                buffer.put(bytes, offset + written, n);
+                written += n;
+            }
+        }
+
+        private synchronized void drain() throws IOException {
+            if (aborted) {
+                throw new IOException("The export was aborted.");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private synchronized void finish() {
+            if (aborted) {
+                return;
+            }
+            try {
+                drain();
+                channel.close();
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                result.fail(e);
+                abort();
+                return;
+            }
+            result.complete(count);
+        }
+
+        private synchronized void abort() {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            try {
+                channel.close();
+                Files.deleteIfExists(temp);
+            } catch (final IOException ignored) {
+                // the export has already failed
+            }
+        }
+
+    }
+
+}
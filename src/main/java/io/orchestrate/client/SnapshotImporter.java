@@ -0,0 +1,691 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+
+/**
+ * The resource for importing a snapshot file, as written by the {@link
+ * SnapshotExporter}, into a collection with a window of requests in flight at
+ * the same time.
+ *
+ * <p>The snapshot is read through a memory map of the file, or through a large
+ * buffer if the snapshot is compressed with gzip, and the bytes of each value
+ * are sent as they were read without being deserialized. The snapshot is read
+ * and the requests are sent on a thread of the import, the responses are
+ * handled by the threads of the client.
+ *
+ * <p>With a checkpoint file, the progress of the import is saved as it goes,
+ * and an import that is started again with the same checkpoint resumes from
+ * where the last one stopped instead of from the start of the snapshot. The
+ * checkpoint holds the offset in the snapshot before which every record has
+ * been imported, and the offsets of the records after it that have also been
+ * imported. A record that failed to be stored isn't counted as imported, so
+ * it's sent again when the import is resumed. The checkpoint is deleted once
+ * every record has been imported, and is kept if any record failed.
+ */
+public class SnapshotImporter extends BaseResource {
+
+    /** The default number of requests in flight at the same time. */
+    public static final int DEFAULT_WINDOW = 32;
+
+    /** The default number of records between checkpoints. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
+
+    /** The size of the regions of the snapshot to map at a time. */
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+
+    /** The size of the buffer to read a compressed snapshot with. */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** The requests to store the records with. */
+    private final PreparedRequest<Object> prepared;
+    /** The number of requests in flight at the same time. */
+    private int window;
+    /** Whether to only store the records for new keys. */
+    private boolean ifAbsent;
+    /** The file to save the progress of the import to, or {@code null}. */
+    private @Nullable Path checkpoint;
+    /** The number of records between checkpoints. */
+    private int checkpointInterval;
+
+    SnapshotImporter(final OrchestrateClient client, final JacksonMapper mapper, final String collection) {
+        super(client, mapper);
+        assert (collection != null);
+
+        this.prepared = new PreparedRequest<Object>(client, mapper, collection, Object.class);
+        this.window = DEFAULT_WINDOW;
+        this.ifAbsent = false;
+        this.checkpoint = null;
+        this.checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    }
+
+    /**
+     * Save the progress of the import to the {@code file}, and resume from it
+     * if it was left behind by an import that didn't finish.
+     *
+     * @param file The path of the checkpoint file.
+     * @return This resource.
+     */
+    public SnapshotImporter checkpoint(final @NonNull Path file) {
+        this.checkpoint = file.toAbsolutePath();
+        return this;
+    }
+
+    /**
+     * The number of records to send between two saves of the checkpoint,
+     * defaults to {@link #DEFAULT_CHECKPOINT_INTERVAL}.
+     *
+     * @param records The number of records between checkpoints.
+     * @return This resource.
+     */
+    public SnapshotImporter checkpointInterval(final int records) {
+        checkArgument(records > 0, "'records' must be greater than zero.");
+
+        this.checkpointInterval = records;
+        return this;
+    }
+
+    /**
+     * Equivalent to {@code this.ifAbsent(Boolean.TRUE)}.
+     *
+     * @return This resource.
+     * @see #ifAbsent(boolean)
+     */
+    public SnapshotImporter ifAbsent() {
+        return ifAbsent(Boolean.TRUE);
+    }
+
+    /**
+     * Whether to only store the records whose keys don't exist in the
+     * collection, the records for existing keys fail.
+     *
+     * @param ifAbsent If {@code true} only store the records for new keys.
+     * @return This resource.
+     */
+    public SnapshotImporter ifAbsent(final boolean ifAbsent) {
+        this.ifAbsent = ifAbsent;
+        return this;
+    }
+
+    /**
+     * The number of requests to have in flight at the same time, defaults to
+     * {@link #DEFAULT_WINDOW}.
+     *
+     * @param window The number of requests in flight at the same time.
+     * @return This resource.
+     */
+    public SnapshotImporter window(final int window) {
+        checkArgument(window > 0, "'window' must be greater than zero.");
+
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Equivalent to {@code this.readFrom(file, null)}.
+     *
+     * @param file The path of the snapshot file.
+     * @return The import request.
+     * @throws IOException If the snapshot or the checkpoint could not be read.
+     * @see #readFrom(Path, BulkListener)
+     */
+    public CompositeRequest<BulkMetrics> readFrom(final Path file) throws IOException {
+        return readFrom(file, null);
+    }
+
+    /**
+     * Import the records of the snapshot {@code file} into the collection. The
+     * request completes with the metrics of the import once every record has
+     * been sent, a failure to store a record doesn't stop the import.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * BulkMetrics metrics =
+     *         client.importSnapshot("someCollection")
+     *               .window(64)
+     *               .checkpoint(Paths.get("someCollection.checkpoint"))
+     *               .readFrom(Paths.get("someCollection.ndjson.gz"))
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param file The path of the snapshot file.
+     * @param listener The listener for the outcome of each record, may be
+     *                 {@code null}.
+     * @return The import request.
+     * @throws IOException If the snapshot or the checkpoint could not be read.
+     */
+    public CompositeRequest<BulkMetrics> readFrom(
+            final @NonNull Path file, @Nullable final BulkListener listener) throws IOException {
+        final long size = Files.size(file);
+        long start = 0;
+        final SortedSet<Long> done = new TreeSet<Long>();
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            final JsonParser parser = codecs.getMapper().getFactory().createParser(checkpoint.toFile());
+            try {
+                long checkpointSize = -1;
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("size".equals(field)) {
+                        checkpointSize = parser.getLongValue();
+                    } else if ("offset".equals(field)) {
+                        start = parser.getLongValue();
+                    } else if ("done".equals(field)) {
+                        while (parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                            done.add(parser.getLongValue());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (checkpointSize != size) {
+                    throw new IOException("The checkpoint '" + checkpoint + "' is for a different snapshot.");
+                }
+            } finally {
+                parser.close();
+            }
+        }
+
+        final Lines lines = open(file, start);
+        return new Import(lines, size, done, listener).start();
+    }
+
+    private static Lines open(final Path file, final long start) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final byte[] magic = new byte[2];
+            final int read = channel.read(ByteBuffer.wrap(magic), 0);
+            if (read == 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+                return new StreamLines(
+                        new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE), start);
+            }
+            return new MappedLines(channel, start);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The lines of a snapshot, with the offset of each line in the snapshot
+     * (before it was compressed).
+     */
+    private abstract static class Lines implements Closeable {
+
+        /** The bytes of the current line, without its line break. */
+        byte[] line = new byte[1024];
+        int length;
+        long offset;
+
+        /**
+         * Move to the next line that isn't blank.
+         *
+         * @return {@code false} if there are no more lines.
+         */
+        abstract boolean next() throws IOException;
+
+        void append(final byte b) {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+
+        boolean isBlank() {
+            while (length > 0 && (line[length - 1] == '\r' || line[length - 1] == ' ')) {
+                length--;
+            }
+            return (length == 0);
+        }
+
+    }
+
+    /** The lines of an uncompressed snapshot, read from a memory map of the file. */
+    private static final class MappedLines extends Lines {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer region;
+        /** The offset in the file of the start of the region. */
+        private long regionStart;
+
+        MappedLines(final FileChannel channel, final long start) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(start);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (true) {
+                final long lineStart = regionStart + region.position();
+                if (lineStart >= size) {
+                    return false;
+                }
+                length = 0;
+                offset = lineStart;
+                boolean ended = false;
+                while (region.hasRemaining()) {
+                    final byte b = region.get();
+                    if (b == '\n') {
+                        ended = true;
+                        break;
+                    }
+                    append(b);
+                }
+                if (!ended && regionStart + region.limit() < size) {
+                    if (lineStart == regionStart) {
+                        throw new IOException("The line at offset " + lineStart
+                                + " is longer than " + REGION_SIZE + " bytes.");
+                    }
+                    // the line runs past the end of the region, map the next
+                    // region from the start of the line and read it again
+                    map(lineStart);
+                    continue;
+                }
+                if (!isBlank()) {
+                    return true;
+                }
+            }
+        }
+
+        private void map(final long start) throws IOException {
+            regionStart = start;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+    /** The lines of a compressed snapshot, read through a buffer. */
+    private static final class StreamLines extends Lines {
+
+        private final InputStream in;
+        private final byte[] buffer;
+        private int position;
+        private int limit;
+        /** The offset in the snapshot of the next byte to read. */
+        private long next;
+
+        StreamLines(final InputStream in, final long start) throws IOException {
+            this.in = in;
+            this.buffer = new byte[BUFFER_SIZE];
+            while (next < start) {
+                final long skipped = in.skip(start - next);
+                if (skipped <= 0) {
+                    throw new IOException("The snapshot ends before the offset " + start + '.');
+                }
+                next += skipped;
+            }
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (true) {
+                length = 0;
+                offset = next;
+                boolean read = false;
+                while (true) {
+                    if (position == limit) {
+                        limit = Math.max(0, in.read(buffer));
+                        position = 0;
+                        if (limit == 0) {
+                            break;
+                        }
+                    }
+                    final byte b = buffer[position++];
+                    next++;
+                    read = true;
+                    if (b == '\n') {
+                        break;
+                    }
+                    append(b);
+                }
+                if (!read) {
+                    return false;
+                }
+                if (!isBlank()) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Sends the records of a snapshot on a thread of its own, with a bounded
+     * number of requests in flight, and keeps track of the records that have
+     * been imported for the checkpoints.
+     */
+    private final class Import implements Runnable {
+
+        private final Lines lines;
+        private final long size;
+        /** The offsets of the records imported before a restart. */
+        private final Set<Long> skip;
+        private final BulkListener listener;
+        private final boolean ifAbsent;
+        private final int window;
+        private final int checkpointInterval;
+        private final Path checkpoint;
+        private final CompositeRequest<BulkMetrics> result;
+        private final BulkMetrics metrics;
+        private final Semaphore permits;
+        /** The offsets of the records in flight, guarded by this. */
+        private final SortedSet<Long> inFlight;
+        /** The offsets of the records that failed to be stored, guarded by this. */
+        private final SortedSet<Long> failed;
+        /** The offsets of the records imported after the first in flight or failed, guarded by this. */
+        private final SortedSet<Long> doneAhead;
+        /** The offset after the last record sent, guarded by this. */
+        private long position;
+
+        Import(final Lines lines, final long size, final SortedSet<Long> done,
+               @Nullable final BulkListener listener) {
+            this.lines = lines;
+            this.size = size;
+            this.skip = done;
+            this.listener = listener;
+            this.ifAbsent = SnapshotImporter.this.ifAbsent;
+            this.window = SnapshotImporter.this.window;
+            this.checkpointInterval = SnapshotImporter.this.checkpointInterval;
+            this.checkpoint = SnapshotImporter.this.checkpoint;
+            this.result = new CompositeRequest<BulkMetrics>();
+            this.metrics = new BulkMetrics();
+            this.permits = new Semaphore(window);
+            this.inFlight = new TreeSet<Long>();
+            this.failed = new TreeSet<Long>();
+            this.doneAhead = new TreeSet<Long>(done);
+            this.position = 0;
+        }
+
+        CompositeRequest<BulkMetrics> start() {
+            final Thread thread = new Thread(this, "SnapshotImport-".concat(prepared.getCollection()));
+            thread.setDaemon(true);
+            thread.start();
+            return result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int sinceCheckpoint = 0;
+                while (!result.isDone() && lines.next()) {
+                    final long offset = lines.offset;
+                    if (skip.contains(offset)) {
+                        continue;
+                    }
+                    final String key;
+                    final byte[] content;
+                    final JsonParser parser = codecs.getMapper().getFactory()
+                            .createParser(lines.line, 0, lines.length);
+                    try {
+                        final Record record = readRecord(parser, lines.line);
+                        key = record.key;
+                        content = record.value;
+                    } catch (final IOException e) {
+                        throw new IOException("The record at offset " + offset + " could not be read.", e);
+                    } finally {
+                        parser.close();
+                    }
+
+                    if (!acquire(1)) {
+                        break;
+                    }
+                    synchronized (this) {
+                        inFlight.add(offset);
+                        position = lines.offset + lines.length;
+                    }
+                    send(offset, key, content);
+                    if (checkpoint != null && ++sinceCheckpoint >= checkpointInterval) {
+                        saveCheckpoint();
+                        sinceCheckpoint = 0;
+                    }
+                }
+                if (acquire(window) && !result.isDone()) {
+                    if (checkpoint != null) {
+                        if (hasFailed()) {
+                            // keep the failed records to be sent again on a resume
+                            saveCheckpoint();
+                        } else {
+                            Files.deleteIfExists(checkpoint);
+                        }
+                    }
+                    result.complete(metrics);
+                } else if (checkpoint != null) {
+                    saveCheckpoint();
+                }
+            } catch (final Exception e) {
+                result.fail(e);
+                if (checkpoint != null) {
+                    try {
+                        saveCheckpoint();
+                    } catch (final IOException ignored) {
+                        // the last checkpoint saved still holds
+                    }
+                }
+            } finally {
+                try {
+                    lines.close();
+                } catch (final IOException ignored) {
+                    // the snapshot was only read
+                }
+            }
+        }
+
+        /** Wait for the permits, or until the import has been cancelled. */
+        private boolean acquire(final int count) throws InterruptedException {
+            while (!permits.tryAcquire(count, 100, TimeUnit.MILLISECONDS)) {
+                if (result.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void send(final long offset, final String key, final byte[] content) {
+            final OrchestrateRequest<KvMetadata> request;
+            try {
+                request = prepared.put(key, content, null, ifAbsent);
+            } catch (final RuntimeException e) {
+                metrics.submitted(0);
+                done(offset, key, null, e);
+                return;
+            }
+            metrics.submitted(content.length);
+            if (!result.track(request)) {
+                permits.release();
+                return;
+            }
+            request.on(new ResponseListener<KvMetadata>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.untrack(request);
+                    done(offset, key, null, error);
+                }
+
+                @Override
+                public void onSuccess(final KvMetadata metadata) {
+                    result.untrack(request);
+                    done(offset, key, metadata,
+                            (metadata == null) ? new ClientException("The object was not stored.") : null);
+                }
+            });
+        }
+
+        private void done(final long offset, final String key,
+                          @Nullable final KvMetadata metadata, @Nullable final Throwable error) {
+            try {
+                if (error == null) {
+                    metrics.succeeded();
+                    if (listener != null) {
+                        listener.onSuccess(metadata);
+                    }
+                } else {
+                    metrics.failed();
+                    if (listener != null) {
+                        listener.onFailure(key, error);
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    inFlight.remove(offset);
+                    if (error == null) {
+                        doneAhead.add(offset);
+                    } else {
+                        failed.add(offset);
+                    }
+                    doneAhead.headSet(committed()).clear();
+                }
+                permits.release();
+            }
+        }
+
+        /** The offset before which every record has been imported, guarded by this. */
+        private long committed() {
+            long committed = position;
+            if (!inFlight.isEmpty()) {
+                committed = Math.min(committed, inFlight.first());
+            }
+            if (!failed.isEmpty()) {
+                committed = Math.min(committed, failed.first());
+            }
+            return committed;
+        }
+
+        private synchronized boolean hasFailed() {
+            return !failed.isEmpty();
+        }
+
+        private void saveCheckpoint() throws IOException {
+            final long offset;
+            final Long[] done;
+            synchronized (this) {
+                offset = committed();
+                done = doneAhead.toArray(new Long[doneAhead.size()]);
+            }
+
+            final Path temp = Files.createTempFile(
+                    checkpoint.getParent(), checkpoint.getFileName().toString(), ".tmp");
+            try {
+                final OutputStream out = Files.newOutputStream(temp);
+                final JsonGenerator generator = codecs.getMapper().getFactory().createGenerator(out);
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("size", size);
+                    generator.writeNumberField("offset", offset);
+                    generator.writeArrayFieldStart("done");
+                    for (final Long doneOffset : done) {
+                        generator.writeNumber(doneOffset);
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                } finally {
+                    generator.close();
+                    out.close();
+                }
+                Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /** Read a record, e.g. {"key":"someKey","ref":"someRef","value":{}}. */
+        private Record readRecord(final JsonParser parser, final byte[] json) throws IOException {
+            String key = null;
+            byte[] value = null;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object for the record.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if ("key".equals(field)) {
+                    key = parser.getValueAsString();
+                } else if ("value".equals(field)
+                        && (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)) {
+                    // the parser is just past the opening token of the value
+                    final int start = (int) parser.getCurrentLocation().getByteOffset() - 1;
+                    parser.skipChildren();
+                    final int end = (int) parser.getCurrentLocation().getByteOffset();
+                    value = Arrays.copyOfRange(json, start, end);
+                } else if ("value".equals(field)) {
+                    value = codecs.getMapper().writeValueAsBytes(parser.readValueAsTree());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (key == null || key.isEmpty() || value == null) {
+                throw new IOException("Expected a key and a value in the record.");
+            }
+            return new Record(key, value);
+        }
+
+    }
+
+    /** A record of a snapshot, with the bytes of its value. */
+    private static final class Record {
+
+        final String key;
+        final byte[] value;
+
+        Record(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+    }
+
+}
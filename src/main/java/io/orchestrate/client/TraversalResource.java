@@ -0,0 +1,318 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * The resource for walking the graph of relations from a key breadth-first,
+ * with one hop per relation kind.
+ *
+ * @param <T> The type to deserialize the related objects to.
+ */
+public class TraversalResource<T> {
+
+    /** The relation resource to make the requests with. */
+    private final RelationResource relations;
+    /** Type information for the related objects. */
+    private final Class<T> clazz;
+    /** The collection of the key to start from. */
+    private final String sourceCollection;
+    /** The key to start from. */
+    private final String sourceKey;
+    /** The number of related objects to request per page. */
+    private final int limit;
+    /** The fields of the values to read, or {@code null} to read all fields. */
+    private final @Nullable Projection projection;
+    /** The relation kinds to follow, one per hop. */
+    private final List<String> kinds;
+    /** The filters of the objects found in each hop, {@code null} for none. */
+    private final List<KvFilter<T>> filters;
+    /** The maximum number of related objects to find. */
+    private int maxNodes;
+    /** The number of requests to have in flight at the same time. */
+    private int parallelism;
+
+    TraversalResource(final RelationResource relations,
+                      final Class<T> clazz,
+                      final String sourceCollection,
+                      final String sourceKey,
+                      final int limit,
+                      @Nullable final Projection projection) {
+        assert (relations != null);
+        assert (clazz != null);
+        assert (sourceCollection != null);
+        assert (sourceKey != null);
+        assert (limit > 0);
+
+        this.relations = relations;
+        this.clazz = clazz;
+        this.sourceCollection = sourceCollection;
+        this.sourceKey = sourceKey;
+        this.limit = limit;
+        this.projection = projection;
+        this.kinds = new ArrayList<String>();
+        this.filters = new ArrayList<KvFilter<T>>();
+        this.maxNodes = Integer.MAX_VALUE;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Walk the graph and hand each related object found to the {@code
+     * listener}, the request completes with the number of objects found.
+     *
+     * <p>Each object is handed on once, the first time it's found, and the
+     * listener is called with one object at a time. The walk follows the
+     * relations of all the objects found in a hop (concurrently) before the
+     * next hop, and stops early once 'maxNodes' objects have been found.
+     *
+     * <p>Usage:</p>
+     * <pre>
+     * {@code
+     * int found =
+     *         client.relation("users", "someKey")
+     *               .traverse(String.class)
+     *               .hop("friends")
+     *               .hop("posts")
+     *               .maxNodes(1000)
+     *               .get(new ItemListener<KvObject<String>>() {
+     *                   public void onItem(KvObject<String> kvObject) {
+     *                       ...
+     *                   }
+     *               })
+     *               .get();
+     * }
+     * </pre>
+     *
+     * @param listener The listener for each related object found.
+     * @return The traversal request.
+     */
+    public CompositeRequest<Integer> get(final @NonNull ItemListener<KvObject<T>> listener) {
+        checkArgument(!kinds.isEmpty(), "A traversal requires at least one 'hop'.");
+
+        final Walk walk = new Walk(listener, new ArrayList<String>(kinds),
+                new ArrayList<KvFilter<T>>(filters), maxNodes, parallelism);
+        walk.start();
+        return walk.result;
+    }
+
+    /**
+     * {@link #hop(String, KvFilter)}.
+     */
+    public TraversalResource<T> hop(final String kind) {
+        checkNotNullOrEmpty(kind, "kind");
+
+        kinds.add(kind);
+        filters.add(null);
+        return this;
+    }
+
+    /**
+     * Add a hop to the traversal that follows the relations of the {@code kind}
+     * from each object found in the previous hop. The objects related by the
+     * hop that the {@code filter} doesn't accept are neither handed on nor
+     * followed by the next hop.
+     *
+     * @param kind The name of the relationship to follow.
+     * @param filter The filter for the objects found in the hop.
+     * @return This traversal resource.
+     */
+    public TraversalResource<T> hop(final String kind, final @NonNull KvFilter<T> filter) {
+        checkNotNullOrEmpty(kind, "kind");
+
+        kinds.add(kind);
+        filters.add(filter);
+        return this;
+    }
+
+    /**
+     * The maximum number of related objects to find, defaults to no limit.
+     *
+     * @param maxNodes The maximum number of related objects to find.
+     * @return This traversal resource.
+     */
+    public TraversalResource<T> maxNodes(final int maxNodes) {
+        checkArgument(maxNodes > 0, "'maxNodes' must be greater than zero.");
+
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * The number of requests to have in flight at the same time within a hop,
+     * defaults to {@link Runtime#availableProcessors()}.
+     *
+     * @param parallelism The number of requests in flight at the same time.
+     * @return This traversal resource.
+     */
+    public TraversalResource<T> parallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "'parallelism' must be greater than zero.");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * An object in the graph, by its collection and key.
+     */
+    private static final class Node {
+
+        final String collection;
+        final String key;
+
+        Node(final String collection, final String key) {
+            this.collection = collection;
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * The state of a breadth-first walk of the graph.
+     */
+    private final class Walk {
+
+        final CompositeRequest<Integer> result;
+        final ItemListener<KvObject<T>> listener;
+        final List<String> kinds;
+        final List<KvFilter<T>> filters;
+        final int maxNodes;
+        final int parallelism;
+        /** The collection/key pairs of the objects found so far. */
+        final Set<String> visited;
+        /** The objects of the current hop whose relations haven't been requested. */
+        Queue<Node> frontier;
+        /** The objects found in the current hop, to follow in the next hop. */
+        Queue<Node> found;
+        /** The index of the current hop. */
+        int hop;
+        /** The number of requests in flight. */
+        int inFlight;
+        /** The number of objects handed on. */
+        int count;
+
+        Walk(final ItemListener<KvObject<T>> listener, final List<String> kinds,
+             final List<KvFilter<T>> filters, final int maxNodes, final int parallelism) {
+            this.result = new CompositeRequest<Integer>();
+            this.listener = listener;
+            this.kinds = kinds;
+            this.filters = filters;
+            this.maxNodes = maxNodes;
+            this.parallelism = parallelism;
+            this.visited = new HashSet<String>();
+            this.frontier = new ArrayDeque<Node>();
+            this.found = new ArrayDeque<Node>();
+        }
+
+        synchronized void start() {
+            visited.add(id(sourceCollection, sourceKey));
+            frontier.add(new Node(sourceCollection, sourceKey));
+            hop = 0;
+            launch();
+        }
+
+        private void launch() {
+            while (inFlight < parallelism && !frontier.isEmpty()) {
+                final Node source = frontier.poll();
+                final String query = "limit=".concat(limit + "").concat("&offset=0");
+                fetch(relations.list(clazz, source.collection, source.key,
+                        query, projection, limit, kinds.get(hop)));
+            }
+
+            if (inFlight == 0 && frontier.isEmpty()) {
+                // the hop is complete, move on to the objects it found
+                if (++hop == kinds.size() || found.isEmpty()) {
+                    result.complete(count);
+                    return;
+                }
+                frontier = found;
+                found = new ArrayDeque<Node>();
+                launch();
+            }
+        }
+
+        private void fetch(final OrchestrateRequest<RelationList<T>> request) {
+            if (!result.track(request)) {
+                return;
+            }
+            inFlight++;
+            final int hop = this.hop;
+            request.on(new ResponseListener<RelationList<T>>() {
+                @Override
+                public void onFailure(final Throwable error) {
+                    result.fail(error);
+                }
+
+                @Override
+                public void onSuccess(final RelationList<T> page) {
+                    result.untrack(request);
+                    try {
+                        onPage(hop, page);
+                    } catch (final RuntimeException e) {
+                        result.fail(e);
+                    }
+                }
+            }).getAsync();
+        }
+
+        private synchronized void onPage(final int hop, @Nullable final RelationList<T> page) {
+            inFlight--;
+            if (result.isDone()) {
+                return;
+            }
+
+            if (page != null) {
+                final KvFilter<T> filter = filters.get(hop);
+                for (final KvObject<T> kvObject : page) {
+                    if (filter != null && !filter.accept(kvObject)) {
+                        continue;
+                    }
+                    if (!visited.add(id(kvObject.getCollection(), kvObject.getKey()))) {
+                        continue;
+                    }
+                    listener.onItem(kvObject);
+                    if (++count >= maxNodes) {
+                        result.complete(count);
+                        return;
+                    }
+                    found.add(new Node(kvObject.getCollection(), kvObject.getKey()));
+                }
+                if (page.hasNext()) {
+                    fetch(page.getNext());
+                }
+            }
+            launch();
+        }
+
+        private String id(final String collection, final String key) {
+            // a separator that can't appear in a collection name
+            return collection.concat("/").concat(key);
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client.dao;
+
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of a single flush of a {@link WriteBehindAsyncDao}.
+ */
+@ToString
+public final class FlushMetrics {
+
+    /** The number of saves absorbed into the flush. */
+    private final int saves;
+    /** The number of keys written, one request each. */
+    private final int writes;
+    /** The number of writes that failed. */
+    private final int failed;
+    /** The time the flush took, in nanoseconds. */
+    private final long elapsedNanos;
+
+    FlushMetrics(final int saves, final int writes, final int failed, final long elapsedNanos) {
+        assert (saves >= writes);
+        assert (writes >= failed);
+
+        this.saves = saves;
+        this.writes = writes;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of saves made since the previous flush.
+     *
+     * @return The number of saves absorbed into the flush.
+     */
+    public int getSaves() {
+        return saves;
+    }
+
+    /**
+     * Returns the number of keys written, each with a single request.
+     *
+     * @return The number of writes made.
+     */
+    public int getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns the number of saves that were overwritten by a later save to the
+     * same key before they were written.
+     *
+     * @return The number of saves not written.
+     */
+    public int getCoalesced() {
+        return saves - writes;
+    }
+
+    /**
+     * Returns the number of writes that failed.
+     *
+     * @return The number of failed writes.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the time the flush took, from its start until the last write
+     * completed.
+     *
+     * @param unit The unit of time to return.
+     * @return The elapsed time.
+     */
+    public long getElapsed(final TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,722 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client.dao;
+
+import io.orchestrate.client.BulkListener;
+import io.orchestrate.client.KvMetadata;
+import io.orchestrate.client.KvObject;
+import io.orchestrate.client.ResponseListener;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.orchestrate.client.Preconditions.checkArgument;
+import static io.orchestrate.client.Preconditions.checkNotNull;
+import static io.orchestrate.client.Preconditions.checkNotNullOrEmpty;
+
+/**
+ * A data access object that buffers saves and writes them behind the caller
+ * through another {@link AsyncDao}. Saves to a key that hasn't been written
+ * yet replace its pending value (the last write wins), so a key saved many
+ * times between flushes is written once.
+ *
+ * <p>The pending values are flushed when the number of pending keys reaches
+ * 'maxPending', every 'flushInterval', and on {@link #flush()} and
+ * {@link #close()}. A flush writes the keys with up to 'concurrency' requests
+ * in flight.
+ *
+ * <p>Unconditional saves are buffered, the synchronous {@link #save(String,
+ * Object)} returns {@code null} and the listeners given to the asynchronous
+ * form are fired once the key is written. Every other operation on a key
+ * first writes its pending value, so reads see the buffered saves and
+ * conditional writes and deletes are applied in order. Those operations wait
+ * for the pending write, and for a write of the key that a flush has already
+ * sent, and must not be used from a {@code ResponseListener}.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * {@code
+ * WriteBehindAsyncDao<DomainObject> dao =
+ *         WriteBehindAsyncDao.builder(new DomainObjectDao(client))
+ *                            .maxPending(1000)
+ *                            .flushInterval(1, TimeUnit.SECONDS)
+ *                            .build();
+ * dao.save("someKey", obj);
+ * ...
+ * dao.close();
+ * }
+ * </pre>
+ *
+ * @param <T> The type this object will control CRUD operations for.
+ */
+@Slf4j
+public final class WriteBehindAsyncDao<T> implements AsyncDao<T>, Closeable {
+
+    /** The number of locks the pending keys are striped over. */
+    private static final int LOCK_STRIPES = 64;
+
+    /** The data access object to write through. */
+    private final AsyncDao<T> delegate;
+    /** The number of pending keys that triggers a flush. */
+    private final int maxPending;
+    /** The number of writes in flight during a flush. */
+    private final int concurrency;
+    /** The listener for the outcome of each write, may be {@code null}. */
+    private final BulkListener listener;
+    /** The pending saves, by key. */
+    private final ConcurrentMap<String, Pending<T>> pending;
+    /** The saves being written, by key, at most one per key. */
+    private final ConcurrentMap<String, Pending<T>> writing;
+    /** The locks guarding the pending save of each key, by hash of the key. */
+    private final Object[] locks;
+    private final AtomicInteger pendingKeys;
+    /** Whether a flush has been triggered but not yet started. */
+    private final AtomicBoolean flushQueued;
+    /** Only one flush runs at a time. */
+    private final Object flushLock;
+    private final ScheduledExecutorService flusher;
+    private final Runnable flushTask;
+    private volatile FlushMetrics lastFlush;
+    private volatile boolean closed;
+
+    private WriteBehindAsyncDao(final Builder<T> builder) {
+        this.delegate = builder.delegate;
+        this.maxPending = builder.maxPending;
+        this.concurrency = builder.concurrency;
+        this.listener = builder.listener;
+        this.pending = new ConcurrentHashMap<String, Pending<T>>();
+        this.writing = new ConcurrentHashMap<String, Pending<T>>();
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.pendingKeys = new AtomicInteger();
+        this.flushQueued = new AtomicBoolean();
+        this.flushLock = new Object();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "WriteBehindAsyncDao");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushQueued.set(false);
+                try {
+                    flush();
+                } catch (final RuntimeException e) {
+                    log.warn("Write-behind flush failed.", e);
+                }
+            }
+        };
+        this.closed = false;
+
+        flusher.scheduleWithFixedDelay(flushTask, builder.flushInterval, builder.flushInterval, builder.unit);
+    }
+
+    /**
+     * Create a builder for a write-behind data access object that writes
+     * through the {@code delegate}.
+     *
+     * @param delegate The data access object to write through.
+     * @param <T> The type the data access object controls.
+     * @return A new {@code Builder}.
+     */
+    public static <T> Builder<T> builder(final AsyncDao<T> delegate) {
+        return new Builder<T>(delegate);
+    }
+
+    /**
+     * Write all of the pending saves and wait for the writes to complete.
+     *
+     * @return The metrics of the flush.
+     */
+    public FlushMetrics flush() {
+        synchronized (flushLock) {
+            final long start = System.nanoTime();
+            final Semaphore permits = new Semaphore(concurrency);
+            final AtomicInteger failed = new AtomicInteger();
+            int saves = 0;
+            int writes = 0;
+            for (final String key : pending.keySet()) {
+                final Pending<T> save = take(key);
+                if (save == null) {
+                    continue;
+                }
+                try {
+                    permits.acquire();
+                } catch (final InterruptedException e) {
+                    // the save hasn't been sent, leave it pending for the next flush
+                    restore(key, save);
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while writing pending saves.", e);
+                }
+                saves += save.saves;
+                writes++;
+                write(key, save, permits, failed);
+            }
+            acquire(permits, concurrency);
+            permits.release(concurrency);
+
+            final FlushMetrics metrics = new FlushMetrics(saves, writes, failed.get(), System.nanoTime() - start);
+            lastFlush = metrics;
+            return metrics;
+        }
+    }
+
+    /**
+     * Stop flushing on a timer and write all of the pending saves, the data
+     * access object can't be used once it's closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // wait for saves that were buffered as the object was closed
+        for (final Object lock : locks) {
+            synchronized (lock) {
+                // the pending saves are flushed below
+            }
+        }
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * Returns the number of keys with a save waiting to be written.
+     *
+     * @return The number of pending keys.
+     */
+    public int getPending() {
+        return pendingKeys.get();
+    }
+
+    /**
+     * Returns the metrics of the last flush to complete.
+     *
+     * @return The metrics of the last flush, or {@code null} if there's been
+     *         no flush yet.
+     */
+    @Nullable
+    public FlushMetrics getLastFlush() {
+        return lastFlush;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KvObject<T> findOne(final String key) {
+        flushKey(key);
+        return delegate.findOne(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void findOne(final String key, final Iterable<ResponseListener<KvObject<T>>> listeners) {
+        flushKey(key);
+        delegate.findOne(key, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KvObject<T> findOne(final String key, final KvMetadata metadata) {
+        return delegate.findOne(key, metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void findOne(
+            final String key,
+            final KvMetadata metadata,
+            final Iterable<ResponseListener<KvObject<T>>> listeners) {
+        delegate.findOne(key, metadata, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KvObject<T> findOne(final String key, final String ref) {
+        return delegate.findOne(key, ref);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void findOne(
+            final String key,
+            final String ref,
+            final Iterable<ResponseListener<KvObject<T>>> listeners) {
+        delegate.findOne(key, ref, listeners);
+    }
+
+    /**
+     * Buffer the {@code value} to be saved to the {@code key} on the next
+     * flush, replacing any value already pending for the key.
+     *
+     * @param key The key to save the specified {@code value} to.
+     * @param value The object to save.
+     * @return Always {@code null}, since the object is written later.
+     */
+    @Override
+    public KvMetadata save(final String key, final T value) {
+        buffer(key, value, null);
+        return null;
+    }
+
+    /**
+     * Buffer the {@code value} to be saved to the {@code key} on the next
+     * flush, replacing any value already pending for the key. The {@code
+     * listeners} are fired once the key is written, with the metadata of the
+     * last value saved to the key.
+     *
+     * @param key The key to save the specified {@code value} to.
+     * @param value The object to save.
+     * @param listeners The callbacks to fire once the key is written.
+     */
+    @Override
+    public void save(
+            final String key,
+            final T value,
+            final Iterable<ResponseListener<KvMetadata>> listeners) {
+        checkNotNull(listeners, "listeners");
+
+        buffer(key, value, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KvMetadata save(
+            final String key,
+            final T value,
+            final boolean ifAbsent) {
+        if (!ifAbsent) {
+            return save(key, value);
+        }
+        flushKey(key);
+        return delegate.save(key, value, ifAbsent);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void save(
+            final String key,
+            final T value,
+            final boolean ifAbsent,
+            final Iterable<ResponseListener<KvMetadata>> listeners) {
+        if (!ifAbsent) {
+            save(key, value, listeners);
+            return;
+        }
+        flushKey(key);
+        delegate.save(key, value, ifAbsent, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KvMetadata save(
+            final String key,
+            final T value,
+            final KvMetadata metadata) {
+        flushKey(key);
+        return delegate.save(key, value, metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void save(
+            final String key,
+            final T value,
+            final KvMetadata metadata,
+            final Iterable<ResponseListener<KvMetadata>> listeners) {
+        flushKey(key);
+        delegate.save(key, value, metadata, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KvMetadata save(
+            final String key,
+            final T value,
+            final String currentRef) {
+        flushKey(key);
+        return delegate.save(key, value, currentRef);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void save(
+            final String key,
+            final T value,
+            final String currentRef,
+            final Iterable<ResponseListener<KvMetadata>> listeners) {
+        flushKey(key);
+        delegate.save(key, value, currentRef, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean delete(final String key) {
+        flushKey(key);
+        return delegate.delete(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void delete(
+            final String key,
+            final Iterable<ResponseListener<Boolean>> listeners) {
+        flushKey(key);
+        delegate.delete(key, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean delete(final String key, final KvMetadata metadata) {
+        flushKey(key);
+        return delegate.delete(key, metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void delete(
+            final String key,
+            final KvMetadata metadata,
+            final Iterable<ResponseListener<Boolean>> listeners) {
+        flushKey(key);
+        delegate.delete(key, metadata, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean delete(final String key, final String currentRef) {
+        flushKey(key);
+        return delegate.delete(key, currentRef);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void delete(
+            final String key,
+            final String currentRef,
+            final Iterable<ResponseListener<Boolean>> listeners) {
+        flushKey(key);
+        delegate.delete(key, currentRef, listeners);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean deleteCollection() {
+        flush();
+        return delegate.deleteCollection();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteCollection(final Iterable<ResponseListener<Boolean>> listeners) {
+        flush();
+        delegate.deleteCollection(listeners);
+    }
+
+    private void buffer(
+            final String key,
+            final T value,
+            @Nullable final Iterable<ResponseListener<KvMetadata>> listeners) {
+        checkNotNullOrEmpty(key, "key");
+        checkNotNull(value, "value");
+
+        boolean full = false;
+        synchronized (lockOf(key)) {
+            if (closed) {
+                throw new IllegalStateException("The data access object has been closed.");
+            }
+            Pending<T> save = pending.get(key);
+            if (save == null) {
+                save = new Pending<T>();
+                pending.put(key, save);
+                full = (pendingKeys.incrementAndGet() >= maxPending);
+            }
+            save.value = value;
+            save.saves++;
+            if (listeners != null) {
+                for (final ResponseListener<KvMetadata> l : listeners) {
+                    save.listeners.add(l);
+                }
+            }
+        }
+
+        if (full && flushQueued.compareAndSet(false, true)) {
+            try {
+                flusher.execute(flushTask);
+            } catch (final RejectedExecutionException e) {
+                // closed after the save was buffered, close() writes it
+            }
+        }
+    }
+
+    /**
+     * Take the pending save of the {@code key} to be written, once any write
+     * of the key already in flight has completed, so that the writes of a key
+     * are made one at a time and in order.
+     *
+     * @return The save to write, which is marked as being written, or {@code
+     *         null} if there's none pending.
+     */
+    @Nullable
+    private Pending<T> take(final String key) {
+        while (true) {
+            final Pending<T> inFlight = writing.get(key);
+            if (inFlight != null) {
+                await(inFlight);
+            }
+            synchronized (lockOf(key)) {
+                if (writing.containsKey(key)) {
+                    // another write of the key was started in the meantime
+                    continue;
+                }
+                final Pending<T> save = pending.remove(key);
+                if (save != null) {
+                    pendingKeys.decrementAndGet();
+                    writing.put(key, save);
+                }
+                return save;
+            }
+        }
+    }
+
+    /**
+     * Put back a save that was taken but not sent, ahead of any save made to
+     * the key since.
+     */
+    private void restore(final String key, final Pending<T> save) {
+        synchronized (lockOf(key)) {
+            final Pending<T> newer = pending.get(key);
+            if (newer == null) {
+                pending.put(key, save);
+                pendingKeys.incrementAndGet();
+            } else {
+                newer.saves += save.saves;
+                newer.listeners.addAll(0, save.listeners);
+            }
+            written(key, save);
+        }
+    }
+
+    /** Mark the {@code save} of the {@code key} as no longer being written. */
+    private void written(final String key, final Pending<T> save) {
+        writing.remove(key, save);
+        save.done.countDown();
+    }
+
+    private void flushKey(final String key) {
+        checkNotNullOrEmpty(key, "key");
+
+        final Pending<T> save = take(key);
+        if (save != null) {
+            write(key, save, new Semaphore(0), new AtomicInteger());
+            await(save);
+        }
+    }
+
+    private void write(final String key, final Pending<T> save, final Semaphore done, final AtomicInteger failed) {
+        final ResponseListener<KvMetadata> written = new ResponseListener<KvMetadata>() {
+            @Override
+            public void onFailure(final Throwable error) {
+                failed.incrementAndGet();
+                written(key, save);
+                try {
+                    for (final ResponseListener<KvMetadata> l : save.listeners) {
+                        l.onFailure(error);
+                    }
+                    if (listener != null) {
+                        listener.onFailure(key, error);
+                    }
+                } finally {
+                    done.release();
+                }
+            }
+
+            @Override
+            public void onSuccess(final KvMetadata metadata) {
+                if (metadata == null) {
+                    onFailure(new IllegalStateException("The object was not stored."));
+                    return;
+                }
+                written(key, save);
+                try {
+                    for (final ResponseListener<KvMetadata> l : save.listeners) {
+                        l.onSuccess(metadata);
+                    }
+                    if (listener != null) {
+                        listener.onSuccess(metadata);
+                    }
+                } finally {
+                    done.release();
+                }
+            }
+        };
+
+        try {
+            delegate.save(key, save.value, Collections.singletonList(written));
+        } catch (final RuntimeException e) {
+            written.onFailure(e);
+        }
+    }
+
+    private Object lockOf(final String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private static void await(final Pending<?> save) {
+        try {
+            save.done.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing pending saves.", e);
+        }
+    }
+
+    private static void acquire(final Semaphore semaphore, final int permits) {
+        try {
+            semaphore.acquire(permits);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing pending saves.", e);
+        }
+    }
+
+    /**
+     * The pending save of a key, guarded by the lock of the key until it's
+     * taken to be written.
+     */
+    private static final class Pending<T> {
+
+        /** The last value saved to the key. */
+        T value;
+        /** The number of saves made to the key. */
+        int saves;
+        /** The listeners of every save made to the key. */
+        final List<ResponseListener<KvMetadata>> listeners = new ArrayList<ResponseListener<KvMetadata>>(1);
+        /** Released once the save has been written or has failed. */
+        final CountDownLatch done = new CountDownLatch(1);
+
+    }
+
+    /**
+     * A builder for a {@link WriteBehindAsyncDao}.
+     *
+     * @param <T> The type the data access object controls.
+     */
+    public static final class Builder<T> {
+
+        /** The default number of pending keys that triggers a flush. */
+        public static final int DEFAULT_MAX_PENDING = 1000;
+        /** The default time between flushes, in milliseconds. */
+        public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+        /** The default number of writes in flight during a flush. */
+        public static final int DEFAULT_CONCURRENCY = 16;
+
+        private final AsyncDao<T> delegate;
+        private int maxPending;
+        private long flushInterval;
+        private TimeUnit unit;
+        private int concurrency;
+        private BulkListener listener;
+
+        private Builder(final AsyncDao<T> delegate) {
+            this.delegate = checkNotNull(delegate, "delegate");
+            this.maxPending = DEFAULT_MAX_PENDING;
+            this.flushInterval = DEFAULT_FLUSH_INTERVAL;
+            this.unit = TimeUnit.MILLISECONDS;
+            this.concurrency = DEFAULT_CONCURRENCY;
+            this.listener = null;
+        }
+
+        /**
+         * The number of keys with pending saves that triggers a flush,
+         * defaults to {@link #DEFAULT_MAX_PENDING}.
+         *
+         * @param maxPending The number of pending keys.
+         * @return This builder.
+         */
+        public Builder<T> maxPending(final int maxPending) {
+            checkArgument(maxPending > 0, "'maxPending' must be greater than zero.");
+
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        /**
+         * The time between timed flushes, defaults to {@link
+         * #DEFAULT_FLUSH_INTERVAL} milliseconds.
+         *
+         * @param flushInterval The time between flushes.
+         * @param unit The unit of the time.
+         * @return This builder.
+         */
+        public Builder<T> flushInterval(final long flushInterval, final TimeUnit unit) {
+            checkArgument(flushInterval > 0, "'flushInterval' must be greater than zero.");
+
+            this.flushInterval = flushInterval;
+            this.unit = checkNotNull(unit, "unit");
+            return this;
+        }
+
+        /**
+         * The number of writes in flight at the same time during a flush,
+         * defaults to {@link #DEFAULT_CONCURRENCY}.
+         *
+         * @param concurrency The number of writes in flight.
+         * @return This builder.
+         */
+        public Builder<T> concurrency(final int concurrency) {
+            checkArgument(concurrency > 0, "'concurrency' must be greater than zero.");
+
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * The listener told when each key is durably written, or fails to be.
+         *
+         * @param listener The listener for the outcome of each write.
+         * @return This builder.
+         */
+        public Builder<T> listener(final BulkListener listener) {
+            this.listener = checkNotNull(listener, "listener");
+            return this;
+        }
+
+        public WriteBehindAsyncDao<T> build() {
+            return new WriteBehindAsyncDao<T>(this);
+        }
+
+    }
+
+}
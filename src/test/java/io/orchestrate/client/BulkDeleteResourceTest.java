@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BulkDeleteResource}.
+ */
+public final class BulkDeleteResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void deletesEveryObject() throws Exception {
+        store(250);
+        final DeleteResult result = client.bulkDelete("c").all().get();
+
+        assertTrue(result.isSuccess());
+        assertEquals(250, result.getDeleted());
+        assertEquals(0, service.size("c"));
+    }
+
+    @Test
+    public void deletesTheObjectsMatchingAFilter() throws Exception {
+        store(30);
+        final DeleteResult result = client.bulkDelete("c")
+                .matching(Value.class, new KvFilter<Value>() {
+                    @Override
+                    public boolean accept(final KvObject<Value> kvObject) {
+                        return kvObject.getValue().n % 2 == 0;
+                    }
+                })
+                .get();
+
+        assertEquals(15, result.getDeleted());
+        assertEquals(15, service.size("c"));
+        for (int i = 0; i < 30; i++) {
+            if (i % 2 == 0) {
+                assertNull(service.get("c", key(i)));
+            } else {
+                assertNotNull(service.get("c", key(i)));
+            }
+        }
+    }
+
+    @Test
+    public void deletesTheResultsOfASearch() throws Exception {
+        store(5);
+        for (int i = 0; i < 120; i++) {
+            service.put("c", "expired" + i, "{\"status\":\"expired\"}");
+        }
+        final DeleteResult result = client.bulkDelete("c").search("expired").get();
+
+        assertEquals(120, result.getDeleted());
+        assertEquals(5, service.size("c"));
+    }
+
+    @Test(timeout = 30000)
+    public void windowBoundsTheRequestsInFlight() throws Exception {
+        store(10);
+        final CountDownLatch held = service.hold("DELETE", "/v0/c/");
+        final CompositeRequest<DeleteResult> request = client.bulkDelete("c").window(3).all();
+
+        awaitDeletes(3);
+        Thread.sleep(100);
+        assertEquals(3, deletes());
+
+        held.countDown();
+        assertEquals(10, request.get().getDeleted());
+        assertEquals(10, deletes());
+    }
+
+    @Test
+    public void rateLimitSpacesOutTheRequests() throws Exception {
+        store(11);
+        final long start = System.nanoTime();
+        final DeleteResult result = client.bulkDelete("c").rateLimit(50).all().get();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(11, result.getDeleted());
+        // ten intervals of 20 milliseconds between the eleven requests
+        assertTrue(elapsed + "ms", elapsed >= 190);
+    }
+
+    @Test
+    public void failedDeletesDontStopTheOthers() throws Exception {
+        store(10);
+        service.put("c", "bad", "{\"n\":-1}");
+        service.fail("/v0/c/bad", 500);
+        final DeleteResult result = client.bulkDelete("c").window(2).all().get();
+
+        assertEquals(10, result.getDeleted());
+        assertEquals(1, result.getFailed().size());
+        assertTrue(result.getFailed().containsKey("bad"));
+        assertEquals(1, service.size("c"));
+    }
+
+    private void store(final int count) {
+        for (int i = 0; i < count; i++) {
+            service.put("c", key(i), "{\"n\":" + i + "}");
+        }
+    }
+
+    private void awaitDeletes(final int count) throws InterruptedException {
+        while (deletes() < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    private int deletes() {
+        int deletes = 0;
+        for (final String request : service.getRequests()) {
+            if (request.startsWith("DELETE ")) {
+                deletes++;
+            }
+        }
+        return deletes;
+    }
+
+    private static String key(final int i) {
+        return String.format("key%03d", i);
+    }
+
+    /** The value of a stored object. */
+    public static final class Value {
+        public int n;
+    }
+
+}
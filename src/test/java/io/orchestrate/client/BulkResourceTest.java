@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BulkResource}.
+ */
+public final class BulkResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void putAllWithInvalidAndValidItems() {
+        final Map<String, Object> items = new LinkedHashMap<String, Object>();
+        items.put("a", null);
+        items.put("b", "{}");
+        items.put("c", null);
+        items.put("d", "{\"n\":1}");
+
+        final BulkResult result = client.bulk("bulk").window(2).putAll(items).get();
+
+        assertEquals(2, result.getSucceeded().size());
+        assertEquals(2, result.getFailed().size());
+        assertTrue(result.getFailed().containsKey("a"));
+        assertTrue(result.getFailed().containsKey("c"));
+        assertEquals("{\"n\":1}", service.get("bulk", "d"));
+    }
+
+    @Test
+    public void putAllWithInvalidItemFirst() {
+        final Map<String, Object> items = new LinkedHashMap<String, Object>();
+        items.put("a", null);
+        items.put("b", "{}");
+
+        final BulkResult result = client.bulk("bulk").putAll(items).get();
+
+        assertEquals(1, result.getSucceeded().size());
+        assertTrue(result.getFailed().containsKey("a"));
+    }
+
+    @Test
+    public void putAllWithOnlyInvalidItems() {
+        final Map<String, Object> items = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 5000; i++) {
+            items.put("k" + i, null);
+        }
+
+        final BulkResult result = client.bulk("bulk").window(4).putAll(items).get();
+
+        assertEquals(0, result.getSucceeded().size());
+        assertEquals(5000, result.getFailed().size());
+        assertEquals(0, service.getRequestCount());
+    }
+
+    @Test
+    public void putAllWritesEachItemOnce() {
+        final Map<String, Object> items = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 500; i++) {
+            items.put("k" + i, (i % 7 == 0) ? null : "{\"n\":" + i + "}");
+        }
+
+        final BulkResult result = client.bulk("bulk").window(16).putAll(items).get();
+
+        assertEquals(428, result.getSucceeded().size());
+        assertEquals(72, result.getFailed().size());
+        assertEquals(428, service.getRequestCount());
+        assertEquals(428, service.size("bulk"));
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link CollectionMirror}.
+ */
+public final class CollectionMirrorTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void firstRefreshFetchesEveryObject() throws Exception {
+        store(150);
+        final CollectionMirror<String> mirror = client.mirror("c", String.class);
+        final RefreshResult result = mirror.refresh().get();
+
+        assertEquals(150, result.getAdded());
+        assertEquals(150, mirror.size());
+        assertEquals("{\"n\":7}", mirror.get(key(7)).getValue());
+    }
+
+    @Test
+    public void refreshFetchesOnlyTheChangedObjects() throws Exception {
+        store(150);
+        final CollectionMirror<String> mirror = client.mirror("c", String.class);
+        mirror.refresh().get();
+        final KvObject<String> unchanged = mirror.get(key(0));
+
+        service.put("c", key(1), "{\"n\":-1}");
+        service.put("c", key(2), "{\"n\":-2}");
+        client.kv("c", key(3)).delete().get();
+        service.put("c", "new", "{\"n\":150}");
+        final int before = service.getRequestCount();
+        final RefreshResult result = mirror.refresh().get();
+
+        assertEquals(1, result.getAdded());
+        assertEquals(2, result.getChanged());
+        assertEquals(1, result.getRemoved());
+        assertEquals(147, result.getUnchanged());
+        // two pages of the listing, and a get for each of the three objects
+        assertEquals(5, service.getRequestCount() - before);
+
+        assertEquals(150, mirror.size());
+        assertSame(unchanged, mirror.get(key(0)));
+        assertEquals("{\"n\":-1}", mirror.get(key(1)).getValue());
+        assertNull(mirror.get(key(3)));
+        assertEquals("{\"n\":150}", mirror.get("new").getValue());
+    }
+
+    @Test(timeout = 30000)
+    public void readsSeeTheLastRefreshUntilTheNextCompletes() throws Exception {
+        store(3);
+        final CollectionMirror<String> mirror = client.mirror("c", String.class);
+        mirror.refresh().get();
+
+        service.put("c", key(1), "{\"n\":-1}");
+        final CountDownLatch held = service.hold("GET", "/v0/c/");
+        final CompositeRequest<RefreshResult> refresh = mirror.refresh();
+        while (service.getRequestCount() < 6) {
+            Thread.sleep(10);
+        }
+        // a refresh in progress is shared
+        assertSame(refresh, mirror.refresh());
+        assertEquals("{\"n\":1}", mirror.get(key(1)).getValue());
+
+        held.countDown();
+        assertEquals(1, refresh.get().getChanged());
+        assertEquals("{\"n\":-1}", mirror.get(key(1)).getValue());
+    }
+
+    @Test(timeout = 30000)
+    public void refreshPagesPastKeysThatNeedEncoding() throws Exception {
+        final String[] keys = new String[250];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = String.format("k%03d%s", i, (i % 3 == 0) ? " x" : (i % 3 == 1) ? "&x" : "+x");
+            service.put("c", keys[i], "{\"n\":" + i + "}");
+        }
+        final CollectionMirror<String> mirror = client.mirror("c", String.class);
+
+        assertEquals(250, mirror.refresh().get().getAdded());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals("{\"n\":" + i + "}", mirror.get(keys[i]).getValue());
+        }
+    }
+
+    private void store(final int count) {
+        for (int i = 0; i < count; i++) {
+            service.put("c", key(i), "{\"n\":" + i + "}");
+        }
+    }
+
+    private static String key(final int i) {
+        return String.format("key%03d", i);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link CollectionSearchResource}.
+ */
+public final class CollectionSearchResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        for (int i = 0; i < 7; i++) {
+            service.put("s", "k" + i, "{\"n\":" + i + "}");
+        }
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void getAllFetchesEveryPage() throws Exception {
+        final SearchResults<String> results = client.searchCollection("s")
+                .limit(2)
+                .getAll(String.class, "*")
+                .get();
+
+        assertEquals(7, results.getTotalCount());
+        int count = 0;
+        for (final Result<String> ignored : results) {
+            count++;
+        }
+        assertEquals(7, count);
+        assertEquals(4, service.getRequestCount());
+    }
+
+    @Test
+    public void getAllKeepsSettingsItWasStartedWith() throws Exception {
+        final CountDownLatch held = service.hold("/v0/s");
+        final CollectionSearchResource resource = client.searchCollection("s")
+                .limit(2)
+                .withValues(true);
+
+        final CompositeRequest<SearchResults<String>> request = resource.getAll(String.class, "*");
+        // the resource is reused while the first page is in flight
+        resource.limit(5).withValues(false).sort("value.n:desc");
+        held.countDown();
+
+        request.get();
+        assertEquals(4, service.getRequestCount());
+        for (final String sent : service.getRequests()) {
+            assertTrue(sent, sent.contains("limit=2&"));
+            assertTrue(sent, sent.contains("values=true"));
+            assertTrue(sent, !sent.contains("sort="));
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DiskCache}.
+ */
+public final class DiskCacheTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SCOPE = "https://api.orchestrate.io/someKey";
+    private static final int CAPACITY = 64 * 1024;
+    /** The offset of the first record, after the header of the log. */
+    private static final int FIRST_RECORD = 24;
+
+    private Path dir;
+    private Path copy;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("cache");
+        copy = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(dir);
+        delete(copy);
+    }
+
+    @Test
+    public void reopensWithStoredObjects() throws Exception {
+        final DiskCache cache = DiskCache.open(dir, CAPACITY, SCOPE);
+        cache.put("/v0/c/a", object("a", "1"));
+        cache.put("/v0/c/b", object("b", "2"));
+        cache.remove("/v0/c/b");
+        cache.close();
+
+        final DiskCache reopened = DiskCache.open(dir, CAPACITY, SCOPE);
+        try {
+            assertEquals(1, reopened.size());
+            assertRecord(reopened.get("/v0/c/a"), "a", "1");
+            assertNull(reopened.get("/v0/c/b"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void replaysLogAfterCrash() throws Exception {
+        final DiskCache cache = DiskCache.open(dir, CAPACITY, SCOPE);
+        try {
+            cache.put("/v0/c/a", object("a", "1"));
+            cache.put("/v0/c/b", object("b", "2"));
+            cache.put("/v0/c/c", object("c", "3"));
+            cache.remove("/v0/c/c");
+            // the files as they're left by a process that stopped without closing the store
+            copyFiles(dir, copy);
+        } finally {
+            cache.close();
+        }
+
+        final DiskCache recovered = DiskCache.open(copy, CAPACITY, SCOPE);
+        try {
+            assertEquals(2, recovered.size());
+            assertRecord(recovered.get("/v0/c/a"), "a", "1");
+            assertRecord(recovered.get("/v0/c/b"), "b", "2");
+            assertNull(recovered.get("/v0/c/c"));
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void replayStopsAtDamagedRecord() throws Exception {
+        final DiskCache cache = DiskCache.open(dir, CAPACITY, SCOPE);
+        try {
+            cache.put("/v0/c/a", object("a", "1"));
+            cache.put("/v0/c/b", object("b", "2"));
+            cache.put("/v0/c/c", object("c", "3"));
+            copyFiles(dir, copy);
+        } finally {
+            cache.close();
+        }
+
+        // damage a byte of the body of the second record, as a write cut short would
+        final Path log = onlyLog(copy);
+        final FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, FIRST_RECORD);
+            final int second = FIRST_RECORD + 8 + length.getInt(0);
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), second + 8 + 10);
+        } finally {
+            channel.close();
+        }
+
+        final DiskCache recovered = DiskCache.open(copy, CAPACITY, SCOPE);
+        try {
+            assertEquals(1, recovered.size());
+            assertRecord(recovered.get("/v0/c/a"), "a", "1");
+            assertNull(recovered.get("/v0/c/b"));
+            assertNull(recovered.get("/v0/c/c"));
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void compactsFullLogKeepingNewestObjects() throws Exception {
+        final int capacity = 4096;
+        final DiskCache cache = DiskCache.open(dir, capacity, SCOPE);
+        try {
+            for (int i = 0; i < 100; i++) {
+                cache.put("/v0/c/" + i, object(Integer.toString(i), "value-" + i));
+            }
+            assertTrue(cache.size() < 100);
+            assertRecord(cache.get("/v0/c/99"), "99", "value-99");
+            assertNull(cache.get("/v0/c/0"));
+            assertEquals(1, logs(dir).size());
+        } finally {
+            cache.close();
+        }
+
+        final DiskCache reopened = DiskCache.open(dir, capacity, SCOPE);
+        try {
+            assertRecord(reopened.get("/v0/c/99"), "99", "value-99");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void discardsLogOfAnotherScope() throws Exception {
+        final DiskCache cache = DiskCache.open(dir, CAPACITY, SCOPE);
+        cache.put("/v0/c/a", object("a", "1"));
+        cache.close();
+
+        final DiskCache other = DiskCache.open(dir, CAPACITY, "https://api.orchestrate.io/otherKey");
+        try {
+            assertEquals(0, other.size());
+            assertNull(other.get("/v0/c/a"));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void directoryIsLockedByOneStore() throws Exception {
+        final DiskCache cache = DiskCache.open(dir, CAPACITY, SCOPE);
+        try {
+            DiskCache.open(dir, CAPACITY, SCOPE);
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static KvObject<String> object(final String key, final String text) {
+        final String json = "{\"text\":\"" + text + "\"}";
+        return new KvObject<String>("c", key, "ref-" + text, json, json);
+    }
+
+    private static void assertRecord(final DiskCache.Record record, final String key, final String text) {
+        assertNotNull(record);
+        assertEquals("c", record.getCollection());
+        assertEquals(key, record.getKey());
+        assertEquals("ref-" + text, record.getRef());
+        assertEquals("{\"text\":\"" + text + "\"}", new String(record.getRawValue(), UTF8));
+    }
+
+    private static void copyFiles(final Path from, final Path to) throws IOException {
+        for (final Path file : list(from)) {
+            if (!file.getFileName().toString().equals("cache.lock")) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static Path onlyLog(final Path dir) throws IOException {
+        final List<Path> logs = logs(dir);
+        assertEquals(1, logs.size());
+        return logs.get(0);
+    }
+
+    private static List<Path> logs(final Path dir) throws IOException {
+        final List<Path> logs = new ArrayList<Path>();
+        for (final Path file : list(dir)) {
+            if (file.getFileName().toString().endsWith(".log")) {
+                logs.add(file);
+            }
+        }
+        return logs;
+    }
+
+    private static List<Path> list(final Path dir) throws IOException {
+        final List<Path> files = new ArrayList<Path>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static void delete(final Path dir) throws IOException {
+        for (final Path file : list(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link EventIngester}.
+ */
+public final class EventIngesterTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+    private Listener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+        listener = new Listener();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void storesEachLaneInOrder() throws Exception {
+        final EventIngester ingester = client.ingestEvents().parallelism(4).start(listener);
+        for (int i = 0; i < 20; i++) {
+            for (int k = 0; k < 3; k++) {
+                ingester.put("c", "key" + k, "type", Collections.singletonMap("n", i), 1000L);
+            }
+        }
+        ingester.close();
+
+        assertEquals(60, listener.stored.size());
+        assertTrue(listener.failed.isEmpty());
+        for (int k = 0; k < 3; k++) {
+            // events with the same timestamp are listed newest first
+            final List<JsonNode> events = service.events("c", "key" + k, "type");
+            assertEquals(20, events.size());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(19 - i, events.get(i).get("n").asInt());
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void boundsTheLanesInFlight() throws Exception {
+        final CountDownLatch held = service.hold("/v0/c/");
+        final EventIngester ingester = client.ingestEvents().parallelism(2).start(listener);
+        for (int k = 0; k < 5; k++) {
+            ingester.put("c", "key" + k, "type", Collections.singletonMap("n", k));
+        }
+        awaitRequests(2);
+        Thread.sleep(100);
+        assertEquals(2, service.getRequestCount());
+        assertEquals(5, ingester.getBuffered());
+
+        held.countDown();
+        ingester.close();
+        assertEquals(5, listener.stored.size());
+        assertEquals(0, ingester.getBuffered());
+    }
+
+    @Test(timeout = 30000)
+    public void sendsOneEventOfALaneAtATime() throws Exception {
+        final CountDownLatch held = service.hold("/v0/c/");
+        final EventIngester ingester = client.ingestEvents().parallelism(4).start(listener);
+        for (int i = 0; i < 3; i++) {
+            ingester.put("c", "key", "type", Collections.singletonMap("n", i));
+        }
+        awaitRequests(1);
+        Thread.sleep(100);
+        assertEquals(1, service.getRequestCount());
+
+        held.countDown();
+        ingester.close();
+        assertEquals(3, service.getRequestCount());
+        assertEquals(3, service.events("c", "key", "type").size());
+    }
+
+    @Test(timeout = 30000)
+    public void offerWaitsForRoomInTheBuffer() throws Exception {
+        final CountDownLatch held = service.hold("/v0/c/");
+        final EventIngester ingester = client.ingestEvents().capacity(2).start(listener);
+        assertTrue(ingester.offer("c", "a", "type", Collections.singletonMap("n", 1), null, 0, TimeUnit.SECONDS));
+        assertTrue(ingester.offer("c", "b", "type", Collections.singletonMap("n", 2), null, 0, TimeUnit.SECONDS));
+        assertFalse(ingester.offer("c", "c", "type", Collections.singletonMap("n", 3), null, 50,
+                TimeUnit.MILLISECONDS));
+        assertEquals(2, ingester.getBuffered());
+
+        held.countDown();
+        assertTrue(ingester.offer("c", "c", "type", Collections.singletonMap("n", 3), null, 10, TimeUnit.SECONDS));
+        ingester.close();
+        assertEquals(3, listener.stored.size());
+    }
+
+    @Test
+    public void failedEventsDontStopTheOthers() throws Exception {
+        service.fail("/v0/c/bad/", 500);
+        final EventIngester ingester = client.ingestEvents().start(listener);
+        for (int i = 0; i < 3; i++) {
+            ingester.put("c", "bad", "type", Collections.singletonMap("n", i));
+            ingester.put("c", "good", "type", Collections.singletonMap("n", i));
+        }
+        ingester.close();
+
+        assertEquals(3, listener.failed.size());
+        for (final QueuedEvent event : listener.failed) {
+            assertEquals("bad", event.getKey());
+        }
+        assertEquals(3, listener.stored.size());
+        assertEquals(3, service.events("c", "good", "type").size());
+    }
+
+    @Test
+    public void closedIngesterRejectsEvents() {
+        final EventIngester ingester = client.ingestEvents().start(listener);
+        ingester.close();
+        try {
+            ingester.put("c", "a", "type", Collections.singletonMap("n", 1));
+            fail();
+        } catch (final IllegalStateException ignored) {
+        }
+    }
+
+    private void awaitRequests(final int count) throws InterruptedException {
+        while (service.getRequestCount() < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    /** Records the events stored and failed. */
+    private static final class Listener implements EventIngestListener {
+
+        private final List<QueuedEvent> stored = new CopyOnWriteArrayList<QueuedEvent>();
+        private final List<QueuedEvent> failed = new CopyOnWriteArrayList<QueuedEvent>();
+
+        @Override
+        public void onSuccess(final QueuedEvent event) {
+            stored.add(event);
+        }
+
+        @Override
+        public void onFailure(final QueuedEvent event, final Throwable error) {
+            failed.add(event);
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link EventRangeResource}.
+ */
+public final class EventRangeResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void readsEveryEventNewestFirst() throws Exception {
+        for (long timestamp = 0; timestamp < 10000; timestamp += 250) {
+            add(timestamp);
+        }
+        // a burst that makes the windows around it split
+        for (long timestamp = 5000; timestamp < 5060; timestamp++) {
+            add(timestamp);
+        }
+
+        final List<Event<String>> events = read(range().limit(4).parallelism(2).window(2000));
+
+        assertEquals(40 + 60, events.size());
+        assertNewestFirst(events);
+    }
+
+    @Test
+    public void readsFullTimestampWithLargestLimit() throws Exception {
+        add(100);
+        for (int i = 0; i < 5; i++) {
+            add(500);
+        }
+        add(900);
+
+        final List<Event<String>> events = read(range().limit(2).window(100));
+
+        assertEquals(7, events.size());
+        assertNewestFirst(events);
+    }
+
+    @Test
+    public void failsWhenTimestampHasMoreThanMaxLimit() throws Exception {
+        for (int i = 0; i <= EventRangeResource.MAX_LIMIT; i++) {
+            add(500);
+        }
+
+        try {
+            read(range().limit(10));
+            fail("The read of a timestamp with too many events completed.");
+        } catch (final ClientException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("timestamp 500"));
+        }
+    }
+
+    private void add(final long timestamp) throws Exception {
+        service.addEvent("e", "k", "t", timestamp, "{\"at\":" + timestamp + "}");
+    }
+
+    private EventRangeResource range() {
+        return client.event("e", "k").type("t").start(0).end(10000).range();
+    }
+
+    private static List<Event<String>> read(final EventRangeResource range) {
+        final List<Event<String>> events = new ArrayList<Event<String>>();
+        range.get(String.class, new ItemListener<Event<String>>() {
+            @Override
+            public void onItem(final Event<String> event) {
+                events.add(event);
+            }
+        }).get();
+        return events;
+    }
+
+    private static void assertNewestFirst(final List<Event<String>> events) {
+        final Set<String> seen = new HashSet<String>();
+        long previous = Long.MAX_VALUE;
+        for (final Event<String> event : events) {
+            assertTrue(event.getTimestamp() <= previous);
+            assertTrue(seen.add(event.getTimestamp() + "/" + event.getOrdinal()));
+            previous = event.getTimestamp();
+        }
+    }
+
+}
@@ -0,0 +1,628 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory stand-in for the Orchestrate service, for the tests of the
+ * client that need responses to their requests.
+ *
+ * <p>It serves the KV, list, search, event and relation endpoints with just
+ * enough of their behaviour for the tests, records the requests it receives,
+ * and can delay, hold or fail the requests to chosen paths.
+ */
+public final class FakeService implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    /** The objects by collection and key, guarded by itself. */
+    private final Map<String, NavigableMap<String, String>> objects;
+    /** The values of the objects by collection, key and ref, guarded by the objects. */
+    private final Map<String, String> history;
+    /** The events by collection, key and type, guarded by the objects. */
+    private final Map<String, List<ObjectNode>> events;
+    /** The related keys by collection, key and kind, guarded by the objects. */
+    private final Map<String, List<String[]>> relations;
+    /** The method and raw path with query of each request received. */
+    private final List<String> requests;
+    /** The requests received that were answered. */
+    private final AtomicInteger answered;
+    /** The latches the requests to a path prefix wait for, by method and prefix. */
+    private final Map<String, CountDownLatch> holds;
+    /** The status to answer the requests to a path prefix with, by method and prefix. */
+    private final Map<String, Integer> failures;
+    private volatile long delayMillis;
+
+    public FakeService() throws IOException {
+        this.objects = new HashMap<String, NavigableMap<String, String>>();
+        this.history = new HashMap<String, String>();
+        this.events = new HashMap<String, List<ObjectNode>>();
+        this.relations = new HashMap<String, List<String[]>>();
+        this.requests = new CopyOnWriteArrayList<String>();
+        this.answered = new AtomicInteger();
+        this.holds = new ConcurrentHashMap<String, CountDownLatch>();
+        this.failures = new ConcurrentHashMap<String, Integer>();
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } catch (final Exception e) {
+                    reply(exchange, 500, "{\"message\":\"" + e + "\"}", null);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns a builder for a client of this service.
+     */
+    public OrchestrateClient.Builder builder() {
+        return OrchestrateClient.builder("key")
+                .host("http://127.0.0.1")
+                .port(server.getAddress().getPort())
+                .useSSL(false);
+    }
+
+    /** Store an object without a request, and return its ref. */
+    public String put(final String collection, final String key, final String json) {
+        synchronized (objects) {
+            return store(collection, key, json);
+        }
+    }
+
+    /** Returns the value of an object, or {@code null}. */
+    public String get(final String collection, final String key) {
+        synchronized (objects) {
+            final NavigableMap<String, String> values = objects.get(collection);
+            return (values != null) ? values.get(key) : null;
+        }
+    }
+
+    /** Returns the number of objects in a collection. */
+    public int size(final String collection) {
+        synchronized (objects) {
+            final NavigableMap<String, String> values = objects.get(collection);
+            return (values != null) ? values.size() : 0;
+        }
+    }
+
+    /** Returns the event values of a key and type, newest first. */
+    public List<JsonNode> events(final String collection, final String key, final String type) {
+        synchronized (objects) {
+            final List<JsonNode> values = new ArrayList<JsonNode>();
+            final List<ObjectNode> list = events.get(collection + '/' + key + '/' + type);
+            if (list != null) {
+                for (final ObjectNode event : sortedEvents(list)) {
+                    values.add(event.get("value"));
+                }
+            }
+            return values;
+        }
+    }
+
+    /** Add an event without a request. */
+    public void addEvent(final String collection, final String key, final String type,
+                  final long timestamp, final String json) throws IOException {
+        synchronized (objects) {
+            event(collection, key, type, timestamp, json);
+        }
+    }
+
+    /** Returns the requests received, as the method and the raw path with query. */
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    /** Returns the number of requests received. */
+    public int getRequestCount() {
+        return requests.size();
+    }
+
+    /** Returns the number of requests answered. */
+    public int getAnsweredCount() {
+        return answered.get();
+    }
+
+    /** Delay every answer by the {@code millis}. */
+    public void delay(final long millis) {
+        this.delayMillis = millis;
+    }
+
+    /**
+     * Hold the requests to the paths that start with the {@code prefix} until
+     * the returned latch is released.
+     */
+    public CountDownLatch hold(final String prefix) {
+        return hold("*", prefix);
+    }
+
+    /**
+     * Hold the requests with the {@code method} to the paths that start with
+     * the {@code prefix} until the returned latch is released.
+     */
+    public CountDownLatch hold(final String method, final String prefix) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        holds.put(method + ' ' + prefix, latch);
+        return latch;
+    }
+
+    /** Answer the writes to the paths that start with the {@code prefix} with the {@code status}. */
+    public void fail(final String prefix, final int status) {
+        fail("*", prefix, status);
+    }
+
+    /**
+     * Answer the requests with the {@code method} to the paths that start with
+     * the {@code prefix} with the {@code status}, a method of {@code *} is any
+     * write.
+     */
+    public void fail(final String method, final String prefix, final int status) {
+        failures.put(method + ' ' + prefix, status);
+    }
+
+    @Override
+    public void close() {
+        for (final CountDownLatch latch : holds.values()) {
+            latch.countDown();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(final HttpExchange exchange) throws Exception {
+        final String method = exchange.getRequestMethod();
+        final String rawPath = exchange.getRequestURI().getRawPath();
+        final String rawQuery = exchange.getRequestURI().getRawQuery();
+        requests.add(method + ' ' + rawPath + ((rawQuery != null) ? '?' + rawQuery : ""));
+        final byte[] body = read(exchange.getRequestBody());
+
+        for (final Map.Entry<String, CountDownLatch> hold : holds.entrySet()) {
+            final String[] held = hold.getKey().split(" ", 2);
+            if ((held[0].equals("*") || held[0].equals(method)) && rawPath.startsWith(held[1])) {
+                hold.getValue().await(30, TimeUnit.SECONDS);
+            }
+        }
+        if (delayMillis > 0) {
+            Thread.sleep(delayMillis);
+        }
+        answered.incrementAndGet();
+        for (final Map.Entry<String, Integer> failure : failures.entrySet()) {
+            final String[] failed = failure.getKey().split(" ", 2);
+            final boolean matches = failed[0].equals("*") ? !method.equals("GET") : failed[0].equals(method);
+            if (matches && rawPath.startsWith(failed[1])) {
+                reply(exchange, failure.getValue(), "{\"message\":\"failed\"}", null);
+                return;
+            }
+        }
+
+        final List<String> segments = new ArrayList<String>();
+        for (final String segment : rawPath.substring("/v0/".length()).split("/")) {
+            segments.add(URLDecoder.decode(segment, "UTF-8"));
+        }
+        final Map<String, String> query = parse(rawQuery);
+        synchronized (objects) {
+            if (method.equals("GET")) {
+                get(exchange, segments, query);
+            } else if (method.equals("PUT")) {
+                put(exchange, segments, query, new String(body, UTF8));
+            } else if (method.equals("DELETE")) {
+                delete(exchange, segments);
+            } else {
+                reply(exchange, 405, "{}", null);
+            }
+        }
+    }
+
+    private void get(final HttpExchange exchange, final List<String> segments, final Map<String, String> query)
+            throws IOException {
+        final String collection = segments.get(0);
+        final NavigableMap<String, String> values = collection(collection);
+        if (segments.size() == 1 && query.containsKey("query")) {
+            search(exchange, collection, values, query);
+        } else if (segments.size() == 1) {
+            list(exchange, collection, values, query);
+        } else if (segments.size() == 2) {
+            final String value = values.get(segments.get(1));
+            if (value == null) {
+                reply(exchange, 404, "{\"message\":\"not found\"}", null);
+                return;
+            }
+            final String ref = ref(value);
+            final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null && ifNoneMatch.replace("\"", "").equals(ref)) {
+                reply(exchange, 304, null, ref);
+            } else {
+                reply(exchange, 200, value, ref);
+            }
+        } else if (segments.size() == 4 && segments.get(2).equals("refs")) {
+            final String value = history.get(collection + '/' + segments.get(1) + '/' + segments.get(3));
+            if (value == null) {
+                reply(exchange, 404, "{\"message\":\"not found\"}", null);
+            } else {
+                reply(exchange, 200, value, segments.get(3));
+            }
+        } else if (segments.size() == 4 && segments.get(2).equals("events")) {
+            readEvents(exchange, collection + '/' + segments.get(1) + '/' + segments.get(3), query);
+        } else if (segments.size() >= 4 && segments.get(2).equals("relations")) {
+            final int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10;
+            final int offset = query.containsKey("offset") ? Integer.parseInt(query.get("offset")) : 0;
+            final List<String[]> found = new ArrayList<String[]>();
+            for (final String[] related : relations(collection, segments.get(1), segments.subList(3, segments.size()))) {
+                if (collection(related[0]).containsKey(related[1])) {
+                    found.add(related);
+                }
+            }
+            final ArrayNode results = MAPPER.createArrayNode();
+            for (final String[] related
+                    : found.subList(Math.min(offset, found.size()), Math.min(offset + limit, found.size()))) {
+                results.add(result(related[0], related[1], collection(related[0]).get(related[1]), true));
+            }
+            final ObjectNode envelope = MAPPER.createObjectNode();
+            envelope.put("count", results.size());
+            envelope.set("results", results);
+            if (offset + limit < found.size()) {
+                envelope.put("next", exchange.getRequestURI().getRawPath()
+                        + "?limit=" + limit + "&offset=" + (offset + limit));
+            }
+            reply(exchange, 200, envelope.toString(), null);
+        } else {
+            reply(exchange, 404, "{\"message\":\"no route\"}", null);
+        }
+    }
+
+    private void list(final HttpExchange exchange, final String collection,
+                      final NavigableMap<String, String> values, final Map<String, String> query)
+            throws IOException {
+        final int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10;
+        final boolean withValues = !"false".equals(query.get("values"));
+        NavigableMap<String, String> range = values;
+        if (query.containsKey("startKey")) {
+            range = range.tailMap(query.get("startKey"), true);
+        }
+        if (query.containsKey("afterKey")) {
+            range = range.tailMap(query.get("afterKey"), false);
+        }
+        if (query.containsKey("beforeKey")) {
+            range = range.headMap(query.get("beforeKey"), false);
+        }
+        if (query.containsKey("endKey")) {
+            range = range.headMap(query.get("endKey"), true);
+        }
+
+        final ArrayNode results = MAPPER.createArrayNode();
+        String last = null;
+        for (final Map.Entry<String, String> entry : range.entrySet()) {
+            if (results.size() == limit) {
+                break;
+            }
+            results.add(result(collection, entry.getKey(), entry.getValue(), withValues));
+            last = entry.getKey();
+        }
+        final ObjectNode envelope = MAPPER.createObjectNode();
+        envelope.put("count", results.size());
+        envelope.set("results", results);
+        if (last != null && range.higherKey(last) != null) {
+            final StringBuilder next = new StringBuilder("/v0/").append(encode(collection))
+                    .append("?limit=").append(limit)
+                    .append("&afterKey=").append(encode(last));
+            if (query.containsKey("beforeKey")) {
+                next.append("&beforeKey=").append(encode(query.get("beforeKey")));
+            }
+            if (query.containsKey("endKey")) {
+                next.append("&endKey=").append(encode(query.get("endKey")));
+            }
+            if (!withValues) {
+                next.append("&values=false");
+            }
+            envelope.put("next", next.toString());
+        }
+        reply(exchange, 200, envelope.toString(), null);
+    }
+
+    /**
+     * Answer a search, a query of {@code *} matches every object, any other
+     * query matches the objects whose JSON contains the text of the query.
+     */
+    private void search(final HttpExchange exchange, final String collection,
+                        final NavigableMap<String, String> values, final Map<String, String> query)
+            throws IOException {
+        final String text = query.get("query");
+        final int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10;
+        final int offset = query.containsKey("offset") ? Integer.parseInt(query.get("offset")) : 0;
+        final boolean withValues = !"false".equals(query.get("values"));
+        final List<Map.Entry<String, String>> matches = new ArrayList<Map.Entry<String, String>>();
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            if (text.equals("*") || entry.getValue().contains(text)) {
+                matches.add(entry);
+            }
+        }
+
+        final ArrayNode results = MAPPER.createArrayNode();
+        for (final Map.Entry<String, String> entry
+                : matches.subList(Math.min(offset, matches.size()), Math.min(offset + limit, matches.size()))) {
+            results.add(result(collection, entry.getKey(), entry.getValue(), withValues).put("score", 1.0));
+        }
+        final ObjectNode envelope = MAPPER.createObjectNode();
+        envelope.put("count", results.size());
+        envelope.put("total_count", matches.size());
+        envelope.set("results", results);
+        if (offset + limit < matches.size()) {
+            envelope.put("next", "/v0/" + encode(collection) + "?query=" + encode(text)
+                    + "&limit=" + limit + "&offset=" + (offset + limit));
+        }
+        reply(exchange, 200, envelope.toString(), null);
+    }
+
+    private void readEvents(final HttpExchange exchange, final String id, final Map<String, String> query)
+            throws IOException {
+        final long start = query.containsKey("start") ? Long.parseLong(query.get("start")) : Long.MIN_VALUE;
+        final long end = query.containsKey("end") ? Long.parseLong(query.get("end")) : Long.MAX_VALUE;
+        final int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10;
+        final ArrayNode results = MAPPER.createArrayNode();
+        final List<ObjectNode> list = events.get(id);
+        if (list != null) {
+            for (final ObjectNode event : sortedEvents(list)) {
+                final long timestamp = event.get("timestamp").asLong();
+                if (timestamp >= start && timestamp < end && results.size() < limit) {
+                    results.add(event);
+                }
+            }
+        }
+        final ObjectNode envelope = MAPPER.createObjectNode();
+        envelope.put("count", results.size());
+        envelope.set("results", results);
+        reply(exchange, 200, envelope.toString(), null);
+    }
+
+    private void put(final HttpExchange exchange, final List<String> segments,
+                     final Map<String, String> query, final String body) throws IOException {
+        final String collection = segments.get(0);
+        if (segments.size() == 2) {
+            final String key = segments.get(1);
+            final String current = collection(collection).get(key);
+            final String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+            final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifMatch != null && (current == null || !ref(current).equals(ifMatch.replace("\"", "")))) {
+                reply(exchange, 412, "{\"message\":\"ref mismatch\"}", null);
+                return;
+            }
+            if ("\"*\"".equals(ifNoneMatch) && current != null) {
+                reply(exchange, 412, "{\"message\":\"exists\"}", null);
+                return;
+            }
+            final String ref = store(collection, key, body);
+            exchange.getResponseHeaders().add("Location", "/v0/" + collection + '/' + key + "/refs/" + ref);
+            reply(exchange, 201, null, ref);
+        } else if (segments.size() == 4 && segments.get(2).equals("events")) {
+            final long timestamp = query.containsKey("timestamp")
+                    ? Long.parseLong(query.get("timestamp"))
+                    : System.currentTimeMillis();
+            event(collection, segments.get(1), segments.get(3), timestamp, body);
+            reply(exchange, 204, null, null);
+        } else if (segments.size() == 6 && segments.get(2).equals("relation")) {
+            relationsOf(collection, segments.get(1), segments.get(3))
+                    .add(new String[] { segments.get(4), segments.get(5) });
+            reply(exchange, 204, null, null);
+        } else {
+            reply(exchange, 404, "{\"message\":\"no route\"}", null);
+        }
+    }
+
+    private void delete(final HttpExchange exchange, final List<String> segments) throws IOException {
+        final String collection = segments.get(0);
+        if (segments.size() == 1) {
+            objects.remove(collection);
+        } else if (segments.size() == 2) {
+            collection(collection).remove(segments.get(1));
+        } else if (segments.size() == 6 && segments.get(2).equals("relation")) {
+            final List<String[]> related = relationsOf(collection, segments.get(1), segments.get(3));
+            for (int i = 0; i < related.size(); i++) {
+                if (related.get(i)[0].equals(segments.get(4)) && related.get(i)[1].equals(segments.get(5))) {
+                    related.remove(i);
+                    break;
+                }
+            }
+        } else {
+            reply(exchange, 404, "{\"message\":\"no route\"}", null);
+            return;
+        }
+        reply(exchange, 204, null, null);
+    }
+
+    private String store(final String collection, final String key, final String json) {
+        collection(collection).put(key, json);
+        final String ref = ref(json);
+        history.put(collection + '/' + key + '/' + ref, json);
+        return ref;
+    }
+
+    private void event(final String collection, final String key, final String type,
+                       final long timestamp, final String json) throws IOException {
+        final String id = collection + '/' + key + '/' + type;
+        List<ObjectNode> list = events.get(id);
+        if (list == null) {
+            list = new ArrayList<ObjectNode>();
+            events.put(id, list);
+        }
+        final ObjectNode event = MAPPER.createObjectNode();
+        event.put("timestamp", timestamp);
+        event.put("ordinal", Integer.toString(list.size()));
+        event.set("value", MAPPER.readTree(json));
+        list.add(event);
+    }
+
+    private NavigableMap<String, String> collection(final String collection) {
+        NavigableMap<String, String> values = objects.get(collection);
+        if (values == null) {
+            values = new TreeMap<String, String>();
+            objects.put(collection, values);
+        }
+        return values;
+    }
+
+    private List<String[]> relationsOf(final String collection, final String key, final String kind) {
+        final String id = collection + '/' + key + '/' + kind;
+        List<String[]> related = relations.get(id);
+        if (related == null) {
+            related = new ArrayList<String[]>();
+            relations.put(id, related);
+        }
+        return related;
+    }
+
+    private List<String[]> relations(final String collection, final String key, final List<String> kinds) {
+        List<String[]> frontier = Collections.singletonList(new String[] { collection, key });
+        for (final String kind : kinds) {
+            final List<String[]> next = new ArrayList<String[]>();
+            for (final String[] item : frontier) {
+                final List<String[]> related = relations.get(item[0] + '/' + item[1] + '/' + kind);
+                if (related != null) {
+                    next.addAll(related);
+                }
+            }
+            frontier = next;
+        }
+        return frontier;
+    }
+
+    private static List<ObjectNode> sortedEvents(final List<ObjectNode> list) {
+        final TreeMap<String, ObjectNode> sorted = new TreeMap<String, ObjectNode>(Collections.reverseOrder());
+        for (final ObjectNode event : list) {
+            sorted.put(String.format("%020d/%010d", event.get("timestamp").asLong(),
+                    Integer.parseInt(event.get("ordinal").asText())), event);
+        }
+        return new ArrayList<ObjectNode>(sorted.values());
+    }
+
+    private static ObjectNode result(final String collection, final String key, final String value,
+                                     final boolean withValue) throws IOException {
+        final ObjectNode path = MAPPER.createObjectNode();
+        path.put("collection", collection);
+        path.put("key", key);
+        path.put("ref", ref(value));
+        final ObjectNode result = MAPPER.createObjectNode();
+        result.set("path", path);
+        if (withValue) {
+            result.set("value", MAPPER.readTree(value));
+        }
+        return result;
+    }
+
+    private static void reply(final HttpExchange exchange, final int status, final String body, final String ref)
+            throws IOException {
+        if (ref != null) {
+            exchange.getResponseHeaders().add("ETag", '"' + ref + '"');
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Orchestrate-Req-Id", "fake");
+        final byte[] bytes = (body != null) ? body.getBytes(UTF8) : new byte[0];
+        exchange.sendResponseHeaders(status, (bytes.length > 0) ? bytes.length : -1);
+        if (bytes.length > 0) {
+            final OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+    private static String ref(final String value) {
+        return String.format("%016x", fnv(value.getBytes(UTF8)));
+    }
+
+    private static long fnv(final byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parse(final String rawQuery) throws UnsupportedEncodingException {
+        final Map<String, String> query = new LinkedHashMap<String, String>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (final String pair : rawQuery.split("&")) {
+            final int eq = pair.indexOf('=');
+            final String name = (eq < 0) ? pair : pair.substring(0, eq);
+            final String value = (eq < 0) ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return query;
+    }
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
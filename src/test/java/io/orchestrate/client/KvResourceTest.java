@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link KvResource}.
+ */
+public final class KvResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void getDecodesValue() throws Exception {
+        service.put("kv", "a", "{\"n\":1}");
+
+        final KvObject<ObjectNode> object = client.kv("kv", "a").get(ObjectNode.class).get();
+
+        assertNotNull(object);
+        assertEquals("a", object.getKey());
+        assertEquals(1, object.getValue().get("n").asInt());
+        assertEquals("{\"n\":1}", object.getRawValue());
+    }
+
+    @Test
+    public void getOfEmptyBodyHasNoValue() throws Exception {
+        service.put("kv", "empty", "");
+
+        final KvObject<ObjectNode> object = client.kv("kv", "empty").get(ObjectNode.class).get();
+
+        assertNotNull(object);
+        assertEquals("empty", object.getKey());
+        assertNull(object.getValue());
+        assertNull(object.getRawValue());
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link KvScanResource}.
+ */
+public final class KvScanResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+    private final List<String> expected = new ArrayList<String>();
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        for (int i = 0; i < 20; i++) {
+            put(String.format("a%02d", i));
+        }
+        for (char c = 'b'; c <= 'k'; c++) {
+            put(String.valueOf(c));
+        }
+        Collections.sort(expected);
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void unorderedScanReadsEveryObject() throws Exception {
+        final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+        final long count = scan(false, keys);
+
+        assertEquals(expected.size(), count);
+        Collections.sort(keys);
+        assertEquals(expected, keys);
+    }
+
+    @Test
+    public void orderedScanReadsObjectsInKeyOrder() throws Exception {
+        final List<String> keys = new ArrayList<String>();
+        final long count = scan(true, keys);
+
+        assertEquals(expected.size(), count);
+        assertEquals(expected, keys);
+    }
+
+    @Test
+    public void orderedScanStartsRangesWithinParallelismOfHead() throws Exception {
+        scan(true, new ArrayList<String>());
+
+        // the range from "c" is only started once the range before "b" has been handed on
+        final List<String> requests = service.getRequests();
+        int lastPageOfFirst = -1;
+        int startOfThird = -1;
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i).contains("afterKey=a")) {
+                lastPageOfFirst = i;
+            }
+            if (requests.get(i).contains("startKey=c")) {
+                startOfThird = i;
+            }
+        }
+        assertTrue(requests.toString(), lastPageOfFirst >= 0 && startOfThird > lastPageOfFirst);
+    }
+
+    @Test(timeout = 30000)
+    public void samplingProbesWithinParallelism() throws Exception {
+        final CountDownLatch held = service.hold("GET", "/v0/scan");
+        final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+        final CompositeRequest<Long> request = client.listCollection("scan")
+                .limit(5)
+                .scan()
+                .sample(4)
+                .parallelism(3)
+                .get(String.class, new ItemListener<KvObject<String>>() {
+                    @Override
+                    public void onItem(final KvObject<String> kvObject) {
+                        keys.add(kvObject.getKey());
+                    }
+                });
+
+        while (service.getRequestCount() < 3) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(3, service.getRequestCount());
+
+        held.countDown();
+        assertEquals(expected.size(), (long) request.get());
+        Collections.sort(keys);
+        assertEquals(expected, keys);
+    }
+
+    private long scan(final boolean ordered, final List<String> keys) {
+        return client.listCollection("scan")
+                .limit(2)
+                .scan()
+                .splitPoints("b", "c", "d", "e", "f", "g", "h", "i", "j", "k")
+                .parallelism(2)
+                .ordered(ordered)
+                .get(String.class, new ItemListener<KvObject<String>>() {
+                    @Override
+                    public void onItem(final KvObject<String> kvObject) {
+                        keys.add(kvObject.getKey());
+                    }
+                })
+                .get();
+    }
+
+    private void put(final String key) throws Exception {
+        service.put("scan", key, "{}");
+        expected.add(key);
+    }
+
+}
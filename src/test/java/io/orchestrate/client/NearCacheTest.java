@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.Method;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link NearCache}.
+ */
+public final class NearCacheTest {
+
+    private static final String SCOPE = "https://api.orchestrate.io/someKey";
+    private static final int CAPACITY = 64 * 1024;
+    private static final long TTL = TimeUnit.SECONDS.toNanos(30);
+    private static final String URI = "/v0/c/a";
+
+    private FakeService service;
+    private OrchestrateClient client;
+    private CodecRegistry codecs;
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+        codecs = JacksonMapper.builder().build().getCodecs();
+        dir = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void diskWritesDontHoldUpReads() throws Exception {
+        final DiskCache disk = DiskCache.open(dir, CAPACITY, SCOPE);
+        final NearCache cache = new NearCache(10, TTL, 0, disk, codecs);
+        final Loader loader = new Loader(object("1"));
+        try {
+            assertEquals("{\"n\":1}", get(cache, loader).getValue());
+
+            // a compaction of the log holds the disk tier for as long as it takes
+            final Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    cache.invalidating("/v0/c/b", completed(Boolean.TRUE));
+                    get(cache, loader);
+                }
+            });
+            synchronized (disk) {
+                reader.start();
+                reader.join(5000);
+                assertFalse(reader.isAlive());
+            }
+            assertEquals(1, loader.loads.size());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void restartedCacheServesFromDiskAndRevalidates() throws Exception {
+        final NearCache first = new NearCache(10, TTL, 0, DiskCache.open(dir, CAPACITY, SCOPE), codecs);
+        get(first, new Loader(object("1")));
+        first.close();
+
+        final NearCache second = new NearCache(10, TTL, 0, DiskCache.open(dir, CAPACITY, SCOPE), codecs);
+        final Loader loader = new Loader(object("2"));
+        try {
+            final KvObject<String> stored = get(second, loader);
+            assertEquals("{\"n\":1}", stored.getValue());
+            assertEquals("ref-1", stored.getRef());
+            // revalidated in the background with the object from disk
+            assertEquals(1, loader.loads.size());
+            assertEquals("ref-1", loader.loads.get(0).getRef());
+            assertEquals("{\"n\":2}", get(second, loader).getValue());
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    public void writeIsNotShadowedByDisk() throws Exception {
+        final DiskCache disk = DiskCache.open(dir, CAPACITY, SCOPE);
+        final NearCache cache = new NearCache(10, TTL, 0, disk, codecs);
+        try {
+            get(cache, new Loader(object("1")));
+            final Loader loader = new Loader(object("2"));
+            synchronized (disk) {
+                // the removal from disk is still queued, the disk tier isn't read
+                cache.invalidating(URI, completed(Boolean.TRUE));
+                assertEquals("{\"n\":2}", get(cache, loader).getValue());
+                assertNull(loader.loads.get(0));
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void expiredObjectIsRevalidatedWithItsRef() throws Exception {
+        final OrchestrateClient cached = service.builder()
+                .nearCache(10, 1, TimeUnit.SECONDS)
+                .build();
+        try {
+            service.put("c", "a", "{\"n\":1}");
+            final KvObject<String> first = cached.kv("c", "a").get(String.class).get();
+            assertSame(first, cached.kv("c", "a").get(String.class).get());
+            assertEquals(1, service.getRequestCount());
+
+            // the service answers "304 Not Modified" and the cached object is served
+            Thread.sleep(1200);
+            assertSame(first, cached.kv("c", "a").get(String.class).get());
+            assertEquals(2, service.getRequestCount());
+            assertSame(first, cached.kv("c", "a").get(String.class).get());
+            assertEquals(2, service.getRequestCount());
+
+            // a changed object is transferred again
+            service.put("c", "a", "{\"n\":2}");
+            Thread.sleep(1200);
+            final KvObject<String> changed = cached.kv("c", "a").get(String.class).get();
+            assertNotSame(first, changed);
+            assertEquals("{\"n\":2}", changed.getValue());
+            assertEquals(3, service.getRequestCount());
+        } finally {
+            cached.close();
+        }
+    }
+
+    private KvObject<String> get(final NearCache cache, final Loader loader) {
+        return cache.get(client, URI, packet(), String.class, loader).get();
+    }
+
+    private <T> OrchestrateRequest<T> completed(final T result) {
+        return new OrchestrateRequest<T>(client, packet(), result);
+    }
+
+    private static KvObject<String> object(final String n) {
+        final String json = "{\"n\":" + n + "}";
+        return new KvObject<String>("c", "a", "ref-" + n, json, json);
+    }
+
+    private static HttpContent packet() {
+        return HttpRequestPacket.builder()
+                .method(Method.GET)
+                .uri(URI)
+                .build()
+                .httpContentBuilder()
+                .build();
+    }
+
+    /** Answers every load with the same object, and records the stale objects. */
+    private final class Loader implements NearCache.Loader<String> {
+
+        private final KvObject<String> object;
+        private final List<KvObject<String>> loads;
+
+        Loader(final KvObject<String> object) {
+            this.object = object;
+            this.loads = new ArrayList<KvObject<String>>();
+        }
+
+        @Override
+        public OrchestrateRequest<KvObject<String>> load(@Nullable final KvObject<String> stale) {
+            loads.add(stale);
+            return completed(object);
+        }
+
+    }
+
+}
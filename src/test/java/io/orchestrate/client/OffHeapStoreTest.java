@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link OffHeapStore}.
+ */
+public final class OffHeapStoreTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /** Two segments of 150 bytes, each holding three 50 byte records. */
+    private static final int MAX_BYTES = 300;
+    /** The size of a value that makes a record of a two byte key 50 bytes. */
+    private static final int VALUE_SIZE = 40;
+    /** The size of the index of a new store. */
+    private static final int INDEX_SIZE = 16;
+
+    @Test
+    public void storesReplacesAndRemoves() {
+        final OffHeapStore store = new OffHeapStore(MAX_BYTES, new CacheMetrics());
+        assertNull(store.get("k0"));
+
+        assertTrue(store.put("k0", value(1)));
+        assertArrayEquals(value(1), store.get("k0"));
+
+        assertTrue(store.put("k0", value(2)));
+        assertArrayEquals(value(2), store.get("k0"));
+
+        store.remove("k0");
+        assertNull(store.get("k0"));
+    }
+
+    @Test
+    public void evictsTheOldestSegment() {
+        final CacheMetrics metrics = new CacheMetrics();
+        final OffHeapStore store = new OffHeapStore(MAX_BYTES, metrics);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(store.put("k" + i, value(i)));
+        }
+        assertEquals(0, metrics.getEvictions());
+        assertEquals(MAX_BYTES, metrics.getOffHeapBytes());
+
+        // the ring wraps around to the first segment and empties it
+        assertTrue(store.put("k6", value(6)));
+        for (int i = 0; i < 3; i++) {
+            assertNull(store.get("k" + i));
+        }
+        for (int i = 3; i < 7; i++) {
+            assertArrayEquals(value(i), store.get("k" + i));
+        }
+        assertEquals(3, metrics.getEvictions());
+        assertEquals(4 * 50, metrics.getOffHeapBytes());
+    }
+
+    @Test
+    public void evictionKeepsKeysStoredAgain() {
+        final CacheMetrics metrics = new CacheMetrics();
+        final OffHeapStore store = new OffHeapStore(MAX_BYTES, metrics);
+        for (int i = 0; i < 3; i++) {
+            store.put("k" + i, value(i));
+        }
+        // "k1" is stored again in the second segment, "k2" is removed
+        store.put("k1", value(10));
+        store.remove("k2");
+        store.put("k3", value(3));
+        store.put("k4", value(4));
+
+        store.put("k5", value(5));
+        assertNull(store.get("k0"));
+        assertArrayEquals(value(10), store.get("k1"));
+        assertNull(store.get("k2"));
+        assertArrayEquals(value(5), store.get("k5"));
+        assertEquals(1, metrics.getEvictions());
+    }
+
+    @Test
+    public void doesntStoreRecordsLargerThanASegment() {
+        final OffHeapStore store = new OffHeapStore(MAX_BYTES, new CacheMetrics());
+        store.put("k0", value(0));
+
+        assertFalse(store.put("k0", new byte[MAX_BYTES]));
+        assertNull(store.get("k0"));
+    }
+
+    @Test
+    public void deleteShiftsBackCollidingKeys() {
+        // keys that all start at the last slot of the index and wrap around
+        final List<String> colliding = keysWithHome(INDEX_SIZE - 1, 3);
+        final String other = keysWithHome(0, 1).get(0);
+
+        final OffHeapStore store = new OffHeapStore(64 * 1024, new CacheMetrics());
+        for (final String key : colliding) {
+            store.put(key, key.getBytes(UTF8));
+        }
+        // lands after the wrapped keys, past its home slot
+        store.put(other, other.getBytes(UTF8));
+
+        store.remove(colliding.get(0));
+        assertNull(store.get(colliding.get(0)));
+        for (final String key : colliding.subList(1, colliding.size())) {
+            assertArrayEquals(key.getBytes(UTF8), store.get(key));
+        }
+        assertArrayEquals(other.getBytes(UTF8), store.get(other));
+
+        store.remove(colliding.get(1));
+        assertArrayEquals(colliding.get(2).getBytes(UTF8), store.get(colliding.get(2)));
+        assertArrayEquals(other.getBytes(UTF8), store.get(other));
+    }
+
+    @Test
+    public void resizesTheIndexAndRemovesFromIt() {
+        final OffHeapStore store = new OffHeapStore(1024 * 1024, new CacheMetrics());
+        final Map<String, byte[]> expected = new HashMap<String, byte[]>();
+        for (int i = 0; i < 2000; i++) {
+            final String key = "key" + i;
+            store.put(key, key.getBytes(UTF8));
+            expected.put(key, key.getBytes(UTF8));
+        }
+        // remove every third key, so that deletes happen in the middle of runs
+        final Iterator<String> keys = expected.keySet().iterator();
+        for (int i = 0; keys.hasNext(); i++) {
+            final String key = keys.next();
+            if (i % 3 == 0) {
+                store.remove(key);
+                keys.remove();
+            }
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            final String key = "key" + i;
+            final byte[] value = expected.get(key);
+            if (value == null) {
+                assertNull(store.get(key));
+            } else {
+                assertArrayEquals(value, store.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        final CacheMetrics metrics = new CacheMetrics();
+        final OffHeapStore store = new OffHeapStore(MAX_BYTES, metrics);
+        for (int i = 0; i < 4; i++) {
+            store.put("k" + i, value(i));
+        }
+        store.clear();
+
+        for (int i = 0; i < 4; i++) {
+            assertNull(store.get("k" + i));
+        }
+        assertEquals(0, metrics.getOffHeapBytes());
+        assertTrue(store.put("k0", value(0)));
+        assertArrayEquals(value(0), store.get("k0"));
+    }
+
+    private static byte[] value(final int n) {
+        final byte[] value = new byte[VALUE_SIZE];
+        Arrays.fill(value, (byte) n);
+        return value;
+    }
+
+    /** Returns {@code count} keys whose home is the {@code slot} of a new index. */
+    private static List<String> keysWithHome(final int slot, final int count) {
+        final List<String> keys = new ArrayList<String>(count);
+        for (int i = 0; keys.size() < count; i++) {
+            final String key = "key" + i;
+            final long hash = OffHeapStore.hash(key.getBytes(UTF8));
+            if (((int) (hash ^ (hash >>> 32)) & (INDEX_SIZE - 1)) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.Method;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Paginator} and {@link PagedIterator}.
+ */
+public final class PaginatorTest {
+
+    private static final int PAGES = 6;
+
+    private FakeService service;
+    private OrchestrateClient client;
+    /** The requests for the pages after the first, in order. */
+    private final List<OrchestrateRequest<List<String>>> requests =
+            new CopyOnWriteArrayList<OrchestrateRequest<List<String>>>();
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        for (int i = 0; i < PAGES; i++) {
+            service.put("pg", "p" + i, "{}");
+        }
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void pagesArriveInOrder() throws Exception {
+        final Paginator<List<String>> pages = paginator(2);
+        final List<String> seen = new ArrayList<String>();
+        while (pages.hasNext()) {
+            seen.addAll(pages.next());
+        }
+
+        assertEquals(PAGES, seen.size());
+        for (int i = 0; i < PAGES; i++) {
+            assertEquals("p" + i, seen.get(i));
+        }
+    }
+
+    @Test
+    public void keepsPrefetchPagesAhead() throws Exception {
+        final Paginator<List<String>> pages = paginator(2);
+        // the first page and the one after it are held, the next isn't sent
+        awaitAnswered(1);
+        Thread.sleep(200);
+        assertEquals(1, service.getRequestCount());
+
+        pages.next();
+        awaitAnswered(2);
+        Thread.sleep(200);
+        assertEquals(2, service.getRequestCount());
+        pages.close();
+    }
+
+    @Test
+    public void closeCancelsPagesInFlight() throws Exception {
+        service.hold("/v0/pg");
+        final Paginator<List<String>> pages = paginator(1);
+        pages.next();
+        assertEquals(1, requests.size());
+
+        pages.close();
+        assertTrue(requests.get(0).isCancelled());
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    public void closedIteratorCancelsPagesInFlight() throws Exception {
+        service.hold("/v0/pg");
+        final PagedIterator<String> items = new PagedIterator<String>(paginator(1));
+        assertEquals("p0", items.next());
+
+        items.close();
+        assertTrue(requests.get(0).isCancelled());
+        assertFalse(items.hasNext());
+    }
+
+    @Test
+    public void streamReadsEveryObject() throws Exception {
+        int count = 0;
+        for (final KvObject<String> ignored : client.listCollection("pg").limit(2).stream(String.class)) {
+            count++;
+        }
+        assertEquals(PAGES, count);
+
+        final PagedIterator<KvObject<String>> objects =
+                client.listCollection("pg").limit(2).stream(String.class).iterator();
+        try {
+            assertEquals("p0", objects.next().getKey());
+        } finally {
+            objects.close();
+        }
+        assertFalse(objects.hasNext());
+    }
+
+    @Test(timeout = 30000)
+    public void streamFollowsPagesAfterKeysThatNeedEncoding() throws Exception {
+        final List<String> stored = new ArrayList<String>();
+        for (final String key : new String[] { "k 0", "k&1", "k+2", "k 3&", "k+4" }) {
+            service.put("enc", key, "{}");
+            stored.add(key);
+        }
+        Collections.sort(stored);
+
+        final List<String> keys = new ArrayList<String>();
+        for (final KvObject<String> kvObject : client.listCollection("enc").limit(2).stream(String.class)) {
+            keys.add(kvObject.getKey());
+        }
+        assertEquals(stored, keys);
+    }
+
+    /** A paginator whose first page has arrived, and whose later pages are read from the service. */
+    private Paginator<List<String>> paginator(final int prefetch) {
+        final OrchestrateRequest<List<String>> first =
+                new OrchestrateRequest<List<String>>(client, packet("p0"), Collections.singletonList("p0"));
+        return new Paginator<List<String>>(first, prefetch) {
+            @Nullable
+            @Override
+            OrchestrateRequest<List<String>> nextOf(final List<String> page) {
+                final int index = Integer.parseInt(page.get(0).substring(1)) + 1;
+                if (index >= PAGES) {
+                    return null;
+                }
+                final String name = "p" + index;
+                final OrchestrateRequest<List<String>> request = new OrchestrateRequest<List<String>>(
+                        client, packet(name), new ResponseConverter<List<String>>() {
+                            @Override
+                            public List<String> from(final HttpContent response) throws IOException {
+                                return Collections.singletonList(name);
+                            }
+                        }, false);
+                requests.add(request);
+                return request;
+            }
+        };
+    }
+
+    private void awaitAnswered(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (service.getAnsweredCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, service.getAnsweredCount());
+    }
+
+    private static HttpContent packet(final String key) {
+        return HttpRequestPacket.builder()
+                .method(Method.GET)
+                .uri("/v0/pg/" + key)
+                .build()
+                .httpContentBuilder()
+                .build();
+    }
+
+}
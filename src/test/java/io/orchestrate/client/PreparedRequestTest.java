@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PreparedRequest}.
+ */
+public final class PreparedRequestTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+        for (int i = 0; i < 10; i++) {
+            service.put("c", "k" + i, "{\"n\":" + i + "}");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void multiGetFetchesDuplicateKeysOnce() throws Exception {
+        final MultiGetResult<String> result =
+                client.multiGet("c", Arrays.asList("k2", "k1", "k2", "k2", "k3"), String.class).get();
+
+        assertEquals(3, service.getRequestCount());
+        assertEquals(Arrays.asList("k2", "k1", "k3"), new ArrayList<String>(result.getObjects().keySet()));
+        assertEquals("{\"n\":2}", result.get("k2").getValue());
+        assertTrue(result.getMissing().isEmpty());
+    }
+
+    @Test
+    public void multiGetReportsMissingKeys() throws Exception {
+        final MultiGetResult<String> result =
+                client.multiGet("c", Arrays.asList("k1", "none", "k2", "gone"), String.class).get();
+
+        assertEquals(2, result.getObjects().size());
+        assertEquals(Arrays.asList("none", "gone"), new ArrayList<String>(result.getMissing()));
+        assertNull(result.get("none"));
+    }
+
+    @Test
+    public void multiGetOfNoKeysCompletes() throws Exception {
+        final MultiGetResult<String> result =
+                client.multiGet("c", Collections.<String>emptyList(), String.class).get();
+
+        assertTrue(result.getObjects().isEmpty());
+        assertEquals(0, service.getRequestCount());
+    }
+
+    @Test(timeout = 30000)
+    public void windowBoundsTheRequestsInFlight() throws Exception {
+        final CountDownLatch held = service.hold("GET", "/v0/c/");
+        final CompositeRequest<MultiGetResult<String>> request =
+                client.prepare("c", String.class).getAll(keys(10), 3);
+
+        awaitRequests(3);
+        Thread.sleep(100);
+        assertEquals(3, service.getRequestCount());
+
+        held.countDown();
+        assertEquals(10, request.get().getObjects().size());
+        assertEquals(10, service.getRequestCount());
+    }
+
+    @Test(timeout = 30000)
+    public void failureFailsTheWholeRequest() throws Exception {
+        service.put("c", "bad", "{}");
+        service.fail("GET", "/v0/c/bad", 500);
+        final CountDownLatch held = service.hold("GET", "/v0/c/k");
+        final List<String> keys = new ArrayList<String>();
+        keys.add("bad");
+        keys.addAll(keys(10));
+        final CompositeRequest<MultiGetResult<String>> request = client.prepare("c", String.class).getAll(keys, 3);
+
+        // fails while the other requests in flight are still held
+        try {
+            request.get();
+            fail();
+        } catch (final ClientException ignored) {
+        }
+        held.countDown();
+        Thread.sleep(200);
+        // the keys after the requests in flight were never requested
+        assertEquals(3, service.getRequestCount());
+    }
+
+    private void awaitRequests(final int count) throws InterruptedException {
+        while (service.getRequestCount() < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<String> keys(final int count) {
+        final List<String> keys = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add("k" + i);
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link RefCache}.
+ */
+public final class RefCacheTest {
+
+    private static final String SCOPE = "https://api.orchestrate.io/someKey";
+    private static final String URI = "/v0/c/a/refs/0123456789abcdef";
+
+    private final RefCache cache = RefCache.getInstance();
+    private CodecRegistry codecs;
+
+    @Before
+    public void setUp() {
+        codecs = JacksonMapper.builder().build().getCodecs();
+        cache.clear();
+        cache.setMaxWeight(RefCache.DEFAULT_MAX_WEIGHT);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        cache.setMaxWeight(RefCache.DEFAULT_MAX_WEIGHT);
+    }
+
+    @Test
+    public void eachHitIsObjectOfItsOwn() throws Exception {
+        cache.put(SCOPE, URI, object("{\"n\":1}"));
+
+        final KvObject<ObjectNode> first = cache.get(SCOPE, URI, ObjectNode.class, codecs);
+        first.getValue().put("n", 2);
+        final KvObject<ObjectNode> second = cache.get(SCOPE, URI, ObjectNode.class, codecs);
+
+        assertNotSame(first.getValue(), second.getValue());
+        assertEquals(1, second.getValue().get("n").asInt());
+        assertEquals("c", second.getCollection());
+        assertEquals("a", second.getKey());
+        assertEquals("0123456789abcdef", second.getRef());
+    }
+
+    @Test
+    public void objectReadByRefIsCachedBeforeTheCallerSeesIt() throws Exception {
+        final FakeService service = new FakeService();
+        final OrchestrateClient client = service.builder().cacheRefs(true).build();
+        try {
+            for (int i = 0; i < 20; i++) {
+                final String ref = service.put("c", "k" + i, "{\"n\":" + i + "}");
+                client.kv("c", "k" + i).get(String.class, ref).get();
+                assertEquals("{\"n\":" + i + "}", client.kv("c", "k" + i).get(String.class, ref).get().getValue());
+                assertEquals(i + 1, service.getRequestCount());
+            }
+        } finally {
+            client.close();
+            service.close();
+        }
+    }
+
+    @Test
+    public void objectIsReadAsTypeOfHit() throws Exception {
+        cache.put(SCOPE, URI, object("{\"n\":1}"));
+
+        assertEquals("{\"n\":1}", cache.get(SCOPE, URI, String.class, codecs).getValue());
+        assertEquals(1, cache.get(SCOPE, URI, ObjectNode.class, codecs).getValue().get("n").asInt());
+        // a value that can't be read as the type is a miss
+        assertNull(cache.get(SCOPE, URI, Integer.class, codecs));
+    }
+
+    @Test
+    public void objectsAreCachedByScope() throws Exception {
+        cache.put(SCOPE, URI, object("{}"));
+
+        assertNull(cache.get("https://api.orchestrate.io/otherKey", URI, String.class, codecs));
+    }
+
+    @Test
+    public void weightIsBytesOfObject() throws Exception {
+        cache.put(SCOPE, URI, object("{\"text\":\"é\"}"));
+        final long weight = cache.getWeight();
+
+        cache.put(SCOPE, URI + "0", object("{\"text\":\"éé\"}"));
+        // one more character of the uri, and two more bytes of the raw value
+        assertEquals(2 * weight + 2 + 2, cache.getWeight());
+    }
+
+    @Test
+    public void leastRecentlyUsedObjectsAreEvicted() throws Exception {
+        cache.put(SCOPE, "/v0/c/a/refs/1", object("{}"));
+        final long weight = cache.getWeight();
+        cache.setMaxWeight(2 * weight);
+        cache.put(SCOPE, "/v0/c/a/refs/2", object("{}"));
+        cache.get(SCOPE, "/v0/c/a/refs/1", String.class, codecs);
+        cache.put(SCOPE, "/v0/c/a/refs/3", object("{}"));
+
+        assertEquals(2, cache.getSize());
+        assertNull(cache.get(SCOPE, "/v0/c/a/refs/2", String.class, codecs));
+        assertEquals("{}", cache.get(SCOPE, "/v0/c/a/refs/1", String.class, codecs).getValue());
+    }
+
+    private static KvObject<String> object(final String json) {
+        return new KvObject<String>("c", "a", "0123456789abcdef", json, json);
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RelationBulkResource}.
+ */
+public final class RelationBulkResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void putsEdgesAndTheirInverses() throws Exception {
+        final EdgeResult result = client.bulkRelations()
+                .inverse(true)
+                .putAll(edges("a", 5))
+                .get();
+
+        assertTrue(result.isSuccess());
+        assertEquals(10, result.getSucceeded());
+        assertEquals(10, service.getRequestCount());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.getRequests().contains("PUT /v0/u/a" + i + "/relation/follows/u/b" + i));
+            assertTrue(service.getRequests().contains("PUT /v0/u/b" + i + "/relation/follows/u/a" + i));
+        }
+    }
+
+    @Test
+    public void purgesEdges() throws Exception {
+        client.bulkRelations().putAll(edges("a", 3)).get();
+        final EdgeResult result = client.bulkRelations().purgeAll(edges("a", 3)).get();
+
+        assertEquals(3, result.getSucceeded());
+        for (int i = 0; i < 3; i++) {
+            final String path = "/v0/u/a" + i + "/relation/follows/u/b" + i;
+            assertTrue(service.getRequests().contains("DELETE " + path + "?purge=true"));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void windowBoundsTheRequestsInFlight() throws Exception {
+        final CountDownLatch held = service.hold("PUT", "/v0/u/");
+        final CountingIterable edges = new CountingIterable(edges("a", 10));
+        final CompositeRequest<EdgeResult> request = client.bulkRelations()
+                .window(3)
+                .putAll(edges);
+
+        awaitRequests(3);
+        Thread.sleep(100);
+        assertEquals(3, service.getRequestCount());
+        // the edges are read as they're sent
+        assertEquals(3, edges.read.get());
+
+        held.countDown();
+        assertEquals(10, request.get().getSucceeded());
+        assertEquals(10, service.getRequestCount());
+    }
+
+    @Test
+    public void failedEdgesDontStopTheOthers() throws Exception {
+        service.fail("/v0/u/bad", 500);
+        final List<Edge> edges = new ArrayList<Edge>(edges("good", 4));
+        edges.addAll(edges("bad", 2));
+        final EdgeResult result = client.bulkRelations().window(2).putAll(edges).get();
+
+        assertEquals(4, result.getSucceeded());
+        assertEquals(2, result.getFailed().size());
+        for (final Edge edge : result.getFailed().keySet()) {
+            assertTrue(edge.getSourceKey().startsWith("bad"));
+        }
+    }
+
+    private void awaitRequests(final int count) throws InterruptedException {
+        while (service.getRequestCount() < count) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<Edge> edges(final String prefix, final int count) {
+        final List<Edge> edges = new ArrayList<Edge>(count);
+        for (int i = 0; i < count; i++) {
+            edges.add(new Edge("u", prefix + i, "follows", "u", "b" + i));
+        }
+        return edges;
+    }
+
+    /** Counts the edges read from its iterator. */
+    private static final class CountingIterable implements Iterable<Edge> {
+
+        private final List<Edge> edges;
+        private final AtomicInteger read;
+
+        CountingIterable(final List<Edge> edges) {
+            this.edges = edges;
+            this.read = new AtomicInteger();
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            final Iterator<Edge> iterator = edges.iterator();
+            return new Iterator<Edge>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Edge next() {
+                    read.incrementAndGet();
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link ResultsSplitter}.
+ */
+public final class ResultsSplitterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** A page whose results have escaped quotes, braces and brackets inside strings. */
+    private static final String PAGE = "{\"count\":3,\"results\":["
+            + "{\"path\":{\"key\":\"a\\\"}\"},\"value\":{\"s\":\"[{\\\\\\\"]\"}},"
+            + "{\"path\":{\"key\":\"b\"},\"value\":{\"list\":[1,{\"x\":\"]}\"},[]]}},"
+            + "{\"path\":{\"key\":\"c\"},\"value\":\"}]\\\\\"}"
+            + "],\"next\":\"/v0/c?limit=3&afterKey=c\"}";
+    private static final List<String> RESULTS = Arrays.asList(
+            "{\"path\":{\"key\":\"a\\\"}\"},\"value\":{\"s\":\"[{\\\\\\\"]\"}}",
+            "{\"path\":{\"key\":\"b\"},\"value\":{\"list\":[1,{\"x\":\"]}\"},[]]}}",
+            "{\"path\":{\"key\":\"c\"},\"value\":\"}]\\\\\"}");
+    private static final String ENVELOPE = "{\"count\":3,\"results\":[],\"next\":\"/v0/c?limit=3&afterKey=c\"}";
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    public void splitsPageInOneChunk() throws Exception {
+        final Splitter splitter = new Splitter();
+        feed(splitter, PAGE.getBytes(UTF8), PAGE.length());
+
+        assertEquals(RESULTS, splitter.results);
+        assertEquals(ENVELOPE, splitter.envelope());
+    }
+
+    @Test
+    public void splitsPageAtEveryChunkBoundary() throws Exception {
+        final byte[] page = PAGE.getBytes(UTF8);
+        for (int split = 0; split <= page.length; split++) {
+            final Splitter splitter = new Splitter();
+            feed(splitter, page, split);
+
+            assertEquals("split at " + split, RESULTS, splitter.results);
+            assertEquals("split at " + split, ENVELOPE, splitter.envelope());
+        }
+    }
+
+    @Test
+    public void splitsPageFedByteByByte() throws Exception {
+        final Splitter splitter = new Splitter();
+        for (final byte b : PAGE.getBytes(UTF8)) {
+            splitter.onContent(Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, new byte[] {b}));
+        }
+
+        assertEquals(RESULTS, splitter.results);
+        assertEquals(ENVELOPE, splitter.envelope());
+    }
+
+    @Test
+    public void fieldNamedLikeResultsInsideResultIsNotSplit() throws Exception {
+        final String result = "{\"value\":{\"results\":[{\"a\":1},{\"b\":2}]}}";
+        final Splitter splitter = new Splitter();
+        feed(splitter, ("{\"results\":[" + result + "],\"count\":1}").getBytes(UTF8), 20);
+
+        assertEquals(Collections.singletonList(result), splitter.results);
+        assertEquals("{\"results\":[],\"count\":1}", splitter.envelope());
+    }
+
+    @Test
+    public void listenerSeesResultsOfPageReadInChunks() throws Exception {
+        service = new FakeService();
+        final StringBuilder large = new StringBuilder("\"");
+        for (int i = 0; i < 4096; i++) {
+            large.append("{[\\\"]}");
+        }
+        large.append('"');
+        for (int i = 0; i < 50; i++) {
+            service.put("split", String.format("k%02d", i), "{\"i\":" + i + ",\"s\":" + large + "}");
+        }
+        client = service.builder().build();
+
+        final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+        final KvList<String> page = client.listCollection("split")
+                .limit(50)
+                .get(String.class, new ItemListener<KvObject<String>>() {
+                    @Override
+                    public void onItem(final KvObject<String> kvObject) {
+                        keys.add(kvObject.getKey());
+                        assertEquals(service.get("split", kvObject.getKey()), kvObject.getRawValue());
+                    }
+                })
+                .get();
+
+        assertEquals(50, keys.size());
+        assertEquals("k00", keys.get(0));
+        assertEquals("k49", keys.get(49));
+        assertEquals(null, page.getNext());
+    }
+
+    @Test(timeout = 30000)
+    public void listenerFollowsPagesAfterKeysThatNeedEncoding() throws Exception {
+        service = new FakeService();
+        final List<String> stored = Arrays.asList("k 0", "k&1", "k+2", "k 3&", "k+4");
+        for (final String key : stored) {
+            service.put("split", key, "{}");
+        }
+        client = service.builder().build();
+
+        final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+        final ItemListener<KvObject<String>> listener = new ItemListener<KvObject<String>>() {
+            @Override
+            public void onItem(final KvObject<String> kvObject) {
+                keys.add(kvObject.getKey());
+            }
+        };
+        KvList<String> page = client.listCollection("split").limit(2).get(String.class, listener).get();
+        while (page.getNext() != null) {
+            page = page.getNext().get();
+        }
+
+        final List<String> expected = new ArrayList<String>(stored);
+        Collections.sort(expected);
+        assertEquals(expected, keys);
+        assertEquals(3, service.getRequestCount());
+    }
+
+    /** Feed the {@code page} as two chunks, split at the {@code split}. */
+    private static void feed(final ResultsSplitter splitter, final byte[] page, final int split) throws IOException {
+        splitter.onContent(Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, page, 0, split));
+        splitter.onContent(Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, page, split, page.length - split));
+    }
+
+    private static final class Splitter extends ResultsSplitter {
+
+        private final List<String> results = new ArrayList<String>();
+
+        @Override
+        void onResult(final byte[] json, final int length) throws IOException {
+            results.add(new String(json, 0, length, UTF8));
+        }
+
+        String envelope() {
+            return new String(getEnvelope(), 0, getEnvelopeLength(), UTF8);
+        }
+
+    }
+
+}
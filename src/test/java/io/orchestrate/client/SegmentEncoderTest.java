@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.util.UEncoder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link SegmentEncoder}.
+ */
+public final class SegmentEncoderTest {
+
+    private static final String[] SEGMENTS = {
+            "plain", "with space", "a/b", "100%", "q?x=1&y=2", "caf\u00e9", "\u65e5\u672c", "#hash", "a+b", ""
+    };
+
+    @Test
+    public void safeSegmentsAreNotEncoded() {
+        final String segment = "Az09!$'()*,-._";
+        assertSame(segment, SegmentEncoder.encode(segment));
+    }
+
+    @Test
+    public void encodesLikeTheEncoder() {
+        final UEncoder encoder = new UEncoder();
+        for (final String segment : SEGMENTS) {
+            assertEquals(segment, encoder.encodeURL(segment), SegmentEncoder.encode(segment));
+        }
+    }
+
+    @Test
+    public void cachedSegmentsAreEncodedOnce() {
+        final SegmentEncoder encoder = new SegmentEncoder(10);
+        final String key = encoder.encodeKey("with space");
+        assertEquals("with%20space", key);
+        assertSame(key, encoder.encodeKey("with space"));
+
+        final String collection = encoder.encodeCollection("some collection");
+        assertSame(collection, encoder.encodeCollection("some collection"));
+    }
+
+    @Test
+    public void fullCachesStillEncode() {
+        final SegmentEncoder encoder = new SegmentEncoder(3);
+        for (int i = 0; i < 10; i++) {
+            for (final String segment : SEGMENTS) {
+                final String expected = SegmentEncoder.encode(segment);
+                assertEquals(expected, encoder.encodeKey(segment + i).substring(0, expected.length()));
+            }
+        }
+        for (int i = 0; i < SegmentEncoder.COLLECTION_CACHE_SIZE * 2; i++) {
+            assertEquals("c%20" + i, encoder.encodeCollection("c " + i));
+        }
+    }
+
+    @Test
+    public void keysAreEncodedWithoutACache() {
+        final SegmentEncoder encoder = new SegmentEncoder(0);
+        for (final String segment : SEGMENTS) {
+            assertEquals(SegmentEncoder.encode(segment), encoder.encodeKey(segment));
+        }
+    }
+
+    @Test
+    public void encodedKeysReachTheService() throws Exception {
+        final FakeService service = new FakeService();
+        final OrchestrateClient client = service.builder().keyCacheSize(10).build();
+        try {
+            for (final String segment : SEGMENTS) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                final String json = "{\"key\":\"" + segment + "\"}";
+                client.kv("some collection", segment).put(json).get();
+                assertEquals(json, service.get("some collection", segment));
+                assertEquals(json, client.kv("some collection", segment).get(String.class).get().getValue());
+            }
+        } finally {
+            client.close();
+            service.close();
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Method;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link SingleFlight}.
+ */
+public final class SingleFlightTest {
+
+    private static final ResponseConverter<Integer> STATUS = new ResponseConverter<Integer>() {
+        @Override
+        public Integer from(final HttpContent response) throws IOException {
+            return ((HttpResponsePacket) response.getHttpHeader()).getStatus();
+        }
+    };
+
+    private FakeService service;
+    private OrchestrateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        service.put("sf", "a", "{}");
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void joinsRequestInFlight() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight(10, TimeUnit.SECONDS);
+        final CountDownLatch held = service.hold("/v0/sf/a");
+
+        final OrchestrateRequest<Integer> first = singleFlight.join("/v0/sf/a", Integer.class, request());
+        final OrchestrateRequest<Integer> second = singleFlight.join("/v0/sf/a", Integer.class, request());
+        held.countDown();
+
+        assertEquals(200, (int) first.get());
+        assertEquals(200, (int) second.get());
+        assertEquals(1, service.getRequestCount());
+        awaitEmpty(singleFlight);
+    }
+
+    @Test
+    public void hungRequestIsNotJoinedPastMaxAge() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight(100, TimeUnit.MILLISECONDS);
+        final CountDownLatch held = service.hold("/v0/sf/a");
+
+        final OrchestrateRequest<Integer> hung = singleFlight.join("/v0/sf/a", Integer.class, request());
+        try {
+            hung.get(200, TimeUnit.MILLISECONDS);
+            fail("The held request completed.");
+        } catch (final ClientException expected) {
+            // timed out
+        }
+
+        // the hung request is too old to join, so a new request is sent
+        final OrchestrateRequest<Integer> later = singleFlight.join("/v0/sf/a", Integer.class, request());
+        awaitRequests(2);
+        held.countDown();
+
+        assertEquals(200, (int) later.get());
+        awaitEmpty(singleFlight);
+    }
+
+    private OrchestrateRequest<Integer> request() {
+        final HttpContent packet = HttpRequestPacket.builder()
+                .method(Method.GET)
+                .uri("/v0/sf/a")
+                .build()
+                .httpContentBuilder()
+                .build();
+        return new OrchestrateRequest<Integer>(client, packet, STATUS, false);
+    }
+
+    private void awaitRequests(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (service.getRequestCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, service.getRequestCount());
+    }
+
+    private static void awaitEmpty(final SingleFlight singleFlight) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (singleFlight.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, singleFlight.size());
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SnapshotExporter}.
+ */
+public final class SnapshotExporterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private FakeService service;
+    private OrchestrateClient client;
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+        dir = Files.createTempDirectory("snapshot");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void exportsEveryPageOfSearchWithEncodedQuery() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            service.put("snap", "match" + i, "{\"text\":\"x&y \\\"z\\\"\"}");
+            service.put("snap", "other" + i, "{\"text\":\"x\"}");
+        }
+        final Path file = dir.resolve("snap.ndjson");
+
+        final long count = client.exportSnapshot("snap")
+                .query("x&y \\\"z\\\"")
+                .limit(2)
+                .writeTo(file)
+                .get();
+
+        assertEquals(5, count);
+        final List<String> lines = Files.readAllLines(file, UTF8);
+        assertEquals(5, lines.size());
+        for (final String line : lines) {
+            assertTrue(line, line.startsWith("{\"key\":\"match"));
+        }
+    }
+
+    @Test
+    public void cancelRemovesTempFile() throws Exception {
+        service.put("snap", "a", "{}");
+        final CountDownLatch held = service.hold("/v0/snap");
+        final Path file = dir.resolve("snap.ndjson");
+
+        final CompositeRequest<Long> export = client.exportSnapshot("snap").writeTo(file);
+        assertEquals(1, count(dir));
+        export.cancel(true);
+        held.countDown();
+
+        assertEquals(0, count(dir));
+        assertFalse(Files.exists(file));
+    }
+
+    private static int count(final Path dir) throws IOException {
+        int count = 0;
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
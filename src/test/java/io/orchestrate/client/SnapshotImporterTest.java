@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link SnapshotImporter}.
+ */
+public final class SnapshotImporterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private FakeService service;
+    private OrchestrateClient client;
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+        dir = Files.createTempDirectory("snapshot");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void importsEveryRecord() throws Exception {
+        final Path snapshot = write(false, "a", "b", "c");
+        final Path checkpoint = dir.resolve("imp.checkpoint");
+
+        final BulkMetrics metrics = client.importSnapshot("imp")
+                .checkpoint(checkpoint)
+                .readFrom(snapshot)
+                .get();
+
+        assertEquals(3, metrics.getSucceeded());
+        assertEquals("{\"n\":\"b\"}", service.get("imp", "b"));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    public void resumeSendsOnlyFailedRecords() throws Exception {
+        resumeSendsOnlyFailedRecords(false);
+    }
+
+    @Test
+    public void resumeSendsOnlyFailedRecordsOfCompressedSnapshot() throws Exception {
+        resumeSendsOnlyFailedRecords(true);
+    }
+
+    private void resumeSendsOnlyFailedRecords(final boolean gzip) throws Exception {
+        final Path snapshot = write(gzip, "a", "b", "c", "d", "e");
+        final Path checkpoint = dir.resolve("imp.checkpoint");
+        service.fail("/v0/imp/b", 500);
+
+        final BulkMetrics first = client.importSnapshot("imp")
+                .checkpoint(checkpoint)
+                .checkpointInterval(1)
+                .window(2)
+                .readFrom(snapshot)
+                .get();
+        assertEquals(4, first.getSucceeded());
+        assertEquals(1, first.getFailed());
+        assertTrue(Files.exists(checkpoint));
+
+        final int sent = service.getRequestCount();
+        final BulkMetrics second = client.importSnapshot("imp")
+                .checkpoint(checkpoint)
+                .readFrom(snapshot)
+                .get();
+        assertEquals(1, second.getFailed());
+        assertEquals(0, second.getSucceeded());
+        assertEquals(Arrays.asList("PUT /v0/imp/b"),
+                service.getRequests().subList(sent, service.getRequestCount()));
+    }
+
+    @Test(timeout = 30000)
+    public void lineLongerThanRegionFails() throws Exception {
+        final Path snapshot = dir.resolve("imp.ndjson");
+        final OutputStream out = Files.newOutputStream(snapshot);
+        try {
+            out.write("{\"key\":\"a\",\"value\":{\"n\":\"".getBytes(UTF8));
+            final byte[] chunk = new byte[1024 * 1024];
+            Arrays.fill(chunk, (byte) 'x');
+            for (int i = 0; i < 65; i++) {
+                out.write(chunk);
+            }
+            out.write("\"}}\n{\"key\":\"b\",\"value\":{}}\n".getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+
+        try {
+            client.importSnapshot("imp").readFrom(snapshot).get();
+            fail("The import of an over long line completed.");
+        } catch (final ClientException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private Path write(final boolean gzip, final String... keys) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        for (final String key : keys) {
+            lines.add("{\"key\":\"" + key + "\",\"ref\":\"0\",\"value\":{\"n\":\"" + key + "\"}}");
+        }
+        final Path snapshot = dir.resolve(gzip ? "imp.ndjson.gz" : "imp.ndjson");
+        final OutputStream out = gzip
+                ? new GZIPOutputStream(Files.newOutputStream(snapshot))
+                : Files.newOutputStream(snapshot);
+        try {
+            for (final String line : lines) {
+                out.write(line.concat("\n").getBytes(UTF8));
+            }
+        } finally {
+            out.close();
+        }
+        return snapshot;
+    }
+
+}
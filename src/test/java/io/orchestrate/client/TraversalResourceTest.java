@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TraversalResource}.
+ */
+public final class TraversalResourceTest {
+
+    private FakeService service;
+    private OrchestrateClient client;
+    private List<String> keys;
+    private ItemListener<KvObject<String>> listener;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+        for (final String key : new String[] { "a", "b", "c", "d", "e", "f", "g" }) {
+            service.put("u", key, "{\"name\":\"" + key + "\"}");
+        }
+        // a knows three, so its relations take two pages of two
+        relate("a", "b", "c", "d");
+        // back to the start, and to an object found in the same hop
+        relate("b", "a", "c", "e");
+        relate("c", "e");
+        relate("d", "f");
+        // only reached in a third hop
+        relate("e", "g");
+
+        keys = Collections.synchronizedList(new ArrayList<String>());
+        listener = new ItemListener<KvObject<String>>() {
+            @Override
+            public void onItem(final KvObject<String> kvObject) {
+                keys.add(kvObject.getKey());
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void findsEachObjectOnceWithinTheHops() throws Exception {
+        final int found = traverse()
+                .hop("knows")
+                .hop("knows")
+                .get(listener)
+                .get();
+
+        assertEquals(5, found);
+        assertEquals(5, keys.size());
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c", "d", "e", "f")), new HashSet<String>(keys));
+        // the first hop is handed on before the second
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c", "d")), new HashSet<String>(keys.subList(0, 3)));
+        assertTrue(service.getRequests().contains("GET /v0/u/a/relations/knows?limit=2&offset=2"));
+    }
+
+    @Test
+    public void stopsAfterTheLastHop() throws Exception {
+        assertEquals(3, (int) traverse().hop("knows").get(listener).get());
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c", "d")), new HashSet<String>(keys));
+
+        keys.clear();
+        assertEquals(6, (int) traverse().hop("knows").hop("knows").hop("knows").get(listener).get());
+        assertTrue(keys.contains("g"));
+    }
+
+    @Test
+    public void filteredObjectsAreNeitherHandedOnNorFollowed() throws Exception {
+        final int found = traverse()
+                .hop("knows", new KvFilter<String>() {
+                    @Override
+                    public boolean accept(final KvObject<String> kvObject) {
+                        return !kvObject.getKey().equals("d");
+                    }
+                })
+                .hop("knows")
+                .get(listener)
+                .get();
+
+        // "f" is only related to "d"
+        assertEquals(3, found);
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c", "e")), new HashSet<String>(keys));
+    }
+
+    @Test
+    public void stopsAtMaxNodes() throws Exception {
+        final int found = traverse()
+                .hop("knows")
+                .hop("knows")
+                .maxNodes(2)
+                .get(listener)
+                .get();
+
+        assertEquals(2, found);
+        assertEquals(2, keys.size());
+    }
+
+    private TraversalResource<String> traverse() {
+        return client.relation("u", "a")
+                .limit(2)
+                .traverse(String.class)
+                .parallelism(2);
+    }
+
+    private void relate(final String from, final String... to) throws Exception {
+        for (final String key : to) {
+            client.relation("u", from).to("u", key).put("knows").get();
+        }
+    }
+
+}
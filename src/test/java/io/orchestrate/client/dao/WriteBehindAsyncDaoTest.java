@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.orchestrate.client.dao;
+
+import io.orchestrate.client.BulkListener;
+import io.orchestrate.client.Client;
+import io.orchestrate.client.FakeService;
+import io.orchestrate.client.KvMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link WriteBehindAsyncDao}.
+ */
+public final class WriteBehindAsyncDaoTest {
+
+    private FakeService service;
+    private Client client;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new FakeService();
+        client = service.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void deleteWaitsForWriteSentByFlush() throws Exception {
+        final WriteBehindAsyncDao<String> dao = dao(1, null);
+        final CountDownLatch held = service.hold("/v0/wb/a");
+        dao.save("a", "{\"n\":1}");
+
+        final Thread flush = start(new Runnable() {
+            @Override
+            public void run() {
+                dao.flush();
+            }
+        });
+        awaitRequests(1);
+        final Thread delete = start(new Runnable() {
+            @Override
+            public void run() {
+                dao.delete("a");
+            }
+        });
+        Thread.sleep(200);
+        assertEquals(1, service.getRequestCount());
+
+        held.countDown();
+        flush.join(5000);
+        delete.join(5000);
+        final List<String> requests = service.getRequests();
+        assertEquals("PUT /v0/wb/a", requests.get(0));
+        assertEquals("DELETE /v0/wb/a", requests.get(1));
+        assertNull(service.get("wb", "a"));
+        dao.close();
+    }
+
+    @Test
+    public void findOneWaitsForWriteSentByFlush() throws Exception {
+        final WriteBehindAsyncDao<String> dao = dao(1, null);
+        final CountDownLatch held = service.hold("PUT", "/v0/wb/a");
+        dao.save("a", "{\"n\":2}");
+
+        final Thread flush = start(new Runnable() {
+            @Override
+            public void run() {
+                dao.flush();
+            }
+        });
+        awaitRequests(1);
+        start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (final InterruptedException ignored) {
+                }
+                held.countDown();
+            }
+        });
+
+        assertEquals("{\"n\":2}", dao.findOne("a").getValue());
+        flush.join(5000);
+        dao.close();
+    }
+
+    @Test
+    public void missingMetadataIsFailure() throws Exception {
+        final AtomicInteger failures = new AtomicInteger();
+        final WriteBehindAsyncDao<String> dao = dao(1, new BulkListener() {
+            @Override
+            public void onSuccess(final KvMetadata metadata) {
+            }
+
+            @Override
+            public void onFailure(final String key, final Throwable error) {
+                failures.incrementAndGet();
+            }
+        });
+        // a response other than "201 Created" has no metadata
+        service.fail("/v0/wb/", 200);
+        dao.save("a", "{}");
+
+        final FlushMetrics metrics = dao.flush();
+
+        assertEquals(1, metrics.getFailed());
+        assertEquals(1, failures.get());
+        dao.close();
+    }
+
+    @Test
+    public void interruptedFlushKeepsSavesPending() throws Exception {
+        final WriteBehindAsyncDao<String> dao = dao(1, null);
+        final CountDownLatch held = service.hold("/v0/wb/");
+        for (int i = 0; i < 5; i++) {
+            dao.save("k" + i, "{\"n\":" + i + "}");
+        }
+
+        final Thread flush = start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dao.flush();
+                } catch (final IllegalStateException expected) {
+                    // interrupted
+                }
+            }
+        });
+        awaitRequests(1);
+        flush.interrupt();
+        flush.join(5000);
+        held.countDown();
+
+        assertEquals(4, dao.getPending());
+        dao.close();
+        assertEquals(0, dao.getPending());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("{\"n\":" + i + "}", service.get("wb", "k" + i));
+        }
+    }
+
+    private WriteBehindAsyncDao<String> dao(final int concurrency, final BulkListener listener) {
+        final WriteBehindAsyncDao.Builder<String> builder =
+                WriteBehindAsyncDao.builder((AsyncDao<String>) new StringDao(client))
+                                   .concurrency(concurrency)
+                                   .flushInterval(1, TimeUnit.HOURS);
+        if (listener != null) {
+            builder.listener(listener);
+        }
+        return builder.build();
+    }
+
+    private void awaitRequests(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (service.getRequestCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(service.getRequestCount() >= count);
+    }
+
+    private static Thread start(final Runnable task) {
+        final Thread thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    private static final class StringDao extends GenericAsyncDao<String> {
+
+        StringDao(final Client client) {
+            super(client, "wb", String.class);
+        }
+
+    }
+
+}